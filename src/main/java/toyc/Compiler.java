@@ -3,8 +3,7 @@ package toyc;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import toyc.algorithm.AlgorithmManager;
-import toyc.algorithm.analysis.graph.callgraph.CallGraph;
-import toyc.algorithm.analysis.graph.callgraph.CallGraphBuilder;
+import toyc.algorithm.analysis.graph.callgraph.CallGraphs;
 import toyc.codegen.RISCV32Generator;
 import toyc.config.*;
 import toyc.frontend.cache.CachedWorldBuilder;
@@ -90,16 +89,7 @@ public class Compiler {
 
     private static void printIR() {
         System.out.println("\n========== IR Output ==========");
-        Scope scope = World.get().getOptions().getScope();
-        List<Function> functionScope = switch (scope) {
-            case ALL -> World.get().getProgram().allFunctions().toList();
-            case REACHABLE -> {
-                CallGraph<?, Function> callGraph =
-                        World.get().getResult(CallGraphBuilder.ID);
-                yield callGraph.reachableFunctions().toList();
-            }
-        };
-        for (Function function : functionScope) {
+        for (Function function : getOutputFunctions()) {
             IR ir = function.getIR();
             IRPrinter.print(ir, System.out);
             System.out.println();
@@ -107,21 +97,27 @@ public class Compiler {
         System.out.println("========== End IR Output ==========");
     }
 
+    /**
+     * @return the functions to print and to generate code for. For the
+     * reachable scope, the call graph is built again, as optimizations
+     * may add functions and redirect calls to them, e.g., func-spec and
+     * partial-inline, after the last run of cg in the plan.
+     */
+    private static List<Function> getOutputFunctions() {
+        Scope scope = World.get().getOptions().getScope();
+        return switch (scope) {
+            case ALL -> World.get().getProgram().allFunctions().toList();
+            case REACHABLE -> CallGraphs.getReachableFunctions();
+        };
+    }
+
     private static void generateAssembly() {
         Timer.runAndCount(() -> {
             logger.info("Generating RISC-V assembly...");
             
             // Get functions to generate code for
-            Scope scope = World.get().getOptions().getScope();
-            List<Function> functionScope = switch (scope) {
-                case ALL -> World.get().getProgram().allFunctions().toList();
-                case REACHABLE -> {
-                    CallGraph<?, Function> callGraph =
-                            World.get().getResult(CallGraphBuilder.ID);
-                    yield callGraph.reachableFunctions().toList();
-                }
-            };
-            
+            List<Function> functionScope = getOutputFunctions();
+
             try {
                 RISCV32Generator generator = new RISCV32Generator();
                 String assembly = generator.generateProgramAssembly(functionScope);
@@ -2,11 +2,15 @@ package toyc.algorithm.analysis.dataflow.analysis;
 
 import toyc.algorithm.analysis.FunctionAnalysis;
 import toyc.algorithm.analysis.dataflow.fact.DataflowResult;
+import toyc.algorithm.analysis.dataflow.fact.LeanDataflowResult;
 import toyc.algorithm.analysis.dataflow.solver.Solver;
 import toyc.algorithm.analysis.graph.cfg.CFG;
 import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
 import toyc.config.AlgorithmConfig;
 import toyc.ir.IR;
+import toyc.ir.IRChangeSet;
+
+import java.util.Collection;
 
 /**
  * Driver for performing a specific kind of data-flow analysis for a method.
@@ -23,7 +27,26 @@ public abstract class AnalysisDriver<Node, Fact>
         CFG<Node> cfg = ir.getResult(CFGBuilder.ID);
         DataflowAnalysis<Node, Fact> analysis = makeAnalysis(cfg);
         Solver<Node, Fact> solver = Solver.getSolver();
-        return solver.solve(analysis);
+        DataflowResult<Node, Fact> result;
+        IRChangeSet changes = isEnabled("incremental")
+                ? IRChangeSet.since(ir, getId()) : null;
+        if (changes != null) {
+            // update the result of the previous IR
+            DataflowResult<Node, Fact> previous =
+                    changes.getBase().getResult(getId());
+            @SuppressWarnings("unchecked")
+            Collection<Node> changedNodes =
+                    (Collection<Node>) (Collection<?>) changes.getAffectedStmts();
+            result = solver.solve(analysis, previous, changedNodes);
+        } else {
+            result = solver.solve(analysis);
+        }
+        return isEnabled("lean-result")
+                ? new LeanDataflowResult<>(analysis, result) : result;
+    }
+
+    private boolean isEnabled(String option) {
+        return getOptions().has(option) && getOptions().getBoolean(option);
     }
 
     /**
@@ -59,6 +59,16 @@ public interface DataflowAnalysis<Node, Fact> {
      */
     Fact transferEdge(CFGEdge<Node> edge, Fact nodeFact);
 
+    /**
+     * Converts a fact computed on any previous version of the CFG into an
+     * equal fact which is valid on the CFG of this analysis. Analyses
+     * whose facts depend on the indexes of the IR must override this.
+     * Note that this function should NOT modify {@code fact}.
+     */
+    default Fact adaptFact(Fact fact) {
+        return fact;
+    }
+
     /**
      * @return the control-flow graph that this analysis works on.
      */
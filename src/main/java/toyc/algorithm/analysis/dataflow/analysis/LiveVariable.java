@@ -9,6 +9,8 @@ import toyc.ir.stmt.Stmt;
 import toyc.util.Indexer;
 import toyc.util.collection.IndexerBitSet;
 
+import java.util.List;
+
 /**
  * Implementation of live variable analysis.
  */
@@ -58,6 +60,21 @@ public class LiveVariable extends AnalysisDriver<Stmt, SetFact<Var>> {
             return new SetFact<>(new IndexerBitSet<>(varIndexer, false));
         }
 
+        @Override
+        public SetFact<Var> adaptFact(SetFact<Var> fact) {
+            // variables are re-indexed in new IR, thus the bit set
+            // is rebuilt, and the variables no longer in the IR are dropped
+            List<Var> vars = cfg.getIR().getVars();
+            SetFact<Var> result = newInitialFact();
+            fact.forEach(var -> {
+                int i = var.getIndex();
+                if (i >= 0 && i < vars.size() && vars.get(i) == var) {
+                    result.add(var);
+                }
+            });
+            return result;
+        }
+
         @Override
         public void meetInto(SetFact<Var> fact, SetFact<Var> target) {
             target.union(fact);
@@ -11,6 +11,7 @@ import toyc.util.Indexer;
 import toyc.util.collection.IndexMap;
 import toyc.util.collection.IndexerBitSet;
 
+import java.util.List;
 import java.util.Map;
 
 public class ReachingDefinition extends AnalysisDriver<Stmt, SetFact<Stmt>> {
@@ -79,6 +80,21 @@ public class ReachingDefinition extends AnalysisDriver<Stmt, SetFact<Stmt>> {
             return new SetFact<>(new IndexerBitSet<>(stmtIndexer, false));
         }
 
+        @Override
+        public SetFact<Stmt> adaptFact(SetFact<Stmt> fact) {
+            // statements are re-indexed in new IR, thus the bit set
+            // is rebuilt, and the removed statements are dropped
+            List<Stmt> stmts = cfg.getIR().getStmts();
+            SetFact<Stmt> result = newInitialFact();
+            fact.forEach(stmt -> {
+                int i = stmt.getIndex();
+                if (i >= 0 && i < stmts.size() && stmts.get(i) == stmt) {
+                    result.add(stmt);
+                }
+            });
+            return result;
+        }
+
         @Override
         public void meetInto(SetFact<Stmt> fact, SetFact<Stmt> target) {
             target.union(fact);
@@ -1,71 +1,108 @@
 package toyc.algorithm.analysis.dataflow.analysis.csd;
 
-import toyc.algorithm.analysis.dataflow.fact.MapFact;
-import toyc.ir.exp.*;
+import toyc.ir.exp.Exp;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Stmt;
+import toyc.util.collection.RegularBitSet;
+
+import java.util.StringJoiner;
+import java.util.function.Consumer;
 
-import java.util.Collections;
-import java.util.Map;
-import java.util.Iterator;
-import java.util.List;
 /**
- * Represents data facts of common subexpression elimination, 
+ * Represents data facts of common subexpression detection,
  * which contains a set of available expressions.
+ * <p>
+ * The set is a bit set over the expression ids of the function,
+ * so that meet, gen and kill are word-parallel operations.
  */
-public class CSEFact extends MapFact<Exp, Integer> {
+public class CSEFact {
 
-    public CSEFact() {
-        this(Collections.emptyMap());
-    }
-    
-    /**
-     * Copy constructor
-     */
-    public CSEFact(Map<Exp, Integer> map) {
-        super(map);
+    private final ExpUniverse universe;
+
+    private final RegularBitSet exps;
+
+    CSEFact(ExpUniverse universe, RegularBitSet exps) {
+        this.universe = universe;
+        this.exps = exps;
     }
 
-    @Override
     public CSEFact copy() {
-        return new CSEFact(this.map);
+        return new CSEFact(universe, exps.copy());
     }
 
     public boolean isEmpty() {
-        return map.isEmpty();
+        return exps.isEmpty();
     }
 
+    /**
+     * @return {@code true} if given expression is available.
+     */
     public boolean contains(Exp exp) {
-        return map.containsKey(exp);
+        int id = universe.getId(exp);
+        return id >= 0 && exps.get(id);
     }
 
-    public boolean eliminate(Var lvalue) {
-        boolean changed = false;
-        Iterator<Map.Entry<Exp, Integer>> iterator = map.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<Exp, Integer> entry = iterator.next();
-            Exp exp = entry.getKey();
-            if (exp instanceof BinaryExp) {
-                BinaryExp binaryExp = (BinaryExp) exp;
-                if (binaryExp.getOperand1().equals(lvalue) || binaryExp.getOperand2().equals(lvalue)) {
-                    iterator.remove();  // Remove the expression if it contains the lvalue
-                    changed = true;
-                }
-            }
-            else if (exp instanceof UnaryExp) {
-                UnaryExp unaryExp = (UnaryExp) exp;
-                if (unaryExp.getOperand().equals(lvalue)) {
-                    iterator.remove();  // Remove the expression if it contains the lvalue
-                    changed = true;
-                }
-            }
-            else if (exp instanceof CallExp) {
-                CallExp callExp = (CallExp) exp;
-                List<Var> args = callExp.getArgs();
-                if (args.contains(lvalue)) {
-                    iterator.remove();
-                    changed = true;  // Remove the expression if it contains the lvalue
-                }
-            }
+    /**
+     * Performs the given action for each available expression.
+     */
+    public void forEach(Consumer<Exp> action) {
+        for (int id = exps.nextSetBit(0); id >= 0; id = exps.nextSetBit(id + 1)) {
+            action.accept(universe.getExp(id));
         }
-        return changed;
     }
-}
\ No newline at end of file
+
+    /**
+     * Intersects this fact with other fact.
+     *
+     * @return {@code true} if this fact changed.
+     */
+    boolean intersect(CSEFact other) {
+        return exps.and(other.exps);
+    }
+
+    /**
+     * Sets the content of this fact to the same as other fact.
+     */
+    void set(CSEFact other) {
+        exps.setTo(other.exps);
+    }
+
+    /**
+     * Adds the expressions computed by given statement.
+     */
+    void gen(Stmt stmt) {
+        for (int id : universe.getGenIds(stmt)) {
+            exps.set(id);
+        }
+    }
+
+    /**
+     * Removes the expressions using given variable.
+     */
+    void kill(Var var) {
+        RegularBitSet killed = universe.getKillIds(var);
+        if (killed != null) {
+            exps.andNot(killed);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        return obj instanceof CSEFact that && exps.equals(that.exps);
+    }
+
+    @Override
+    public int hashCode() {
+        return exps.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        forEach(exp -> joiner.add(exp.toString()));
+        return joiner.toString();
+    }
+}
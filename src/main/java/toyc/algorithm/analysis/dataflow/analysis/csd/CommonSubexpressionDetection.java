@@ -4,18 +4,16 @@ import toyc.algorithm.analysis.dataflow.analysis.AbstractDataflowAnalysis;
 import toyc.algorithm.analysis.dataflow.analysis.AnalysisDriver;
 import toyc.algorithm.analysis.graph.cfg.CFG;
 import toyc.config.AlgorithmConfig;
-import toyc.ir.exp.Exp;
 import toyc.ir.exp.Var;
 import toyc.ir.stmt.Stmt;
-
-import java.util.Set;
+import toyc.util.collection.RegularBitSet;
 
 /**
  * implementation of common subexpression elimination analysis (global).
  */
 public class CommonSubexpressionDetection extends AnalysisDriver<Stmt, CSEFact> {
 
-    public static final String ID = "common-subexp-detection";
+    public static final String ID = "csd";
 
     public CommonSubexpressionDetection(AlgorithmConfig config) {
         super(config);
@@ -28,8 +26,11 @@ public class CommonSubexpressionDetection extends AnalysisDriver<Stmt, CSEFact>
 
     public static class Analysis extends AbstractDataflowAnalysis<Stmt, CSEFact> {
 
+        private final ExpUniverse universe;
+
         public Analysis(CFG<Stmt> cfg) {
             super(cfg);
+            universe = new ExpUniverse(cfg.getIR());
         }
 
         @Override
@@ -39,54 +40,31 @@ public class CommonSubexpressionDetection extends AnalysisDriver<Stmt, CSEFact>
 
         @Override
         public CSEFact newBoundaryFact() {
-            return newInitialFact();
+            // no expressions are available at entry
+            return new CSEFact(universe, new RegularBitSet());
         }
 
         @Override
         public CSEFact newInitialFact() {
-            return new CSEFact();
+            return new CSEFact(universe, universe.newFullSet());
         }
 
         @Override
         public void meetInto(CSEFact fact, CSEFact target) {
-            if (target.isEmpty()) {
-                target.copyFrom(fact);
-                return ;
-            }
-
-            CSEFact intersection = new CSEFact();
-            fact.forEach((exp, id)-> {
-                if (target.contains(exp)) {
-                    intersection.update(exp, id);
-                }
-            });
-            target.copyFrom(intersection);
+            target.intersect(fact);
         }
 
         @Override
         public boolean transferNode(Stmt stmt, CSEFact in, CSEFact out) {
-            boolean changed = false;
-            changed |= out.copyFrom(in);
-
-            // Gen
-            Set<Exp> subexpressions = RExpExtractor.extract(stmt);
-            if (!subexpressions.isEmpty()) {
-                for (Exp exp : subexpressions) {
-                    if (in.contains(exp)) {
-                        continue;
-                    }
-                    // Add the new subexpression to the out fact
-                    changed |= out.update(exp, stmt.getIndex());
-                }
-            }
-
-            // Kill
+            CSEFact oldOut = out.copy();
+            out.set(in);
+            // gen before kill, e.g., x = x + 1 does not make x + 1 available
+            out.gen(stmt);
             Var lvalue = LExpExtractor.extract(stmt);
             if (lvalue != null) {
-                changed |= out.eliminate(lvalue);
+                out.kill(lvalue);
             }
-            return changed;
+            return !out.equals(oldOut);
         }
-
     }
-}
\ No newline at end of file
+}
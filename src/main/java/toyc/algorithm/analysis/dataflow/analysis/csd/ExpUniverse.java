@@ -0,0 +1,111 @@
+package toyc.algorithm.analysis.dataflow.analysis.csd;
+
+import toyc.ir.IR;
+import toyc.ir.exp.BinaryExp;
+import toyc.ir.exp.CallExp;
+import toyc.ir.exp.Exp;
+import toyc.ir.exp.UnaryExp;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Stmt;
+import toyc.util.collection.Maps;
+import toyc.util.collection.RegularBitSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The expressions of a function which are candidates of common
+ * subexpressions. Equal expressions are hash-consed into a unique id,
+ * so that sets of expressions can be represented by bit sets.
+ * <p>
+ * Call expressions are excluded, as calls may have side effects.
+ */
+class ExpUniverse {
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final List<Exp> exps = new ArrayList<>();
+
+    private final Map<Exp, Integer> ids = Maps.newMap();
+
+    /**
+     * Ids of the expressions computed by each statement.
+     */
+    private final Map<Stmt, int[]> genIds = Maps.newMap();
+
+    /**
+     * Map from each variable to the ids of the expressions using it,
+     * i.e., the expressions killed by the definitions of the variable.
+     */
+    private final Map<Var, RegularBitSet> killIds = Maps.newMap();
+
+    private final RegularBitSet all = new RegularBitSet();
+
+    ExpUniverse(IR ir) {
+        for (Stmt stmt : ir) {
+            int[] stmtIds = RExpExtractor.extract(stmt)
+                    .stream()
+                    .filter(exp -> !(exp instanceof CallExp))
+                    .mapToInt(this::addExp)
+                    .toArray();
+            if (stmtIds.length > 0) {
+                genIds.put(stmt, stmtIds);
+            }
+        }
+    }
+
+    private int addExp(Exp exp) {
+        Integer id = ids.get(exp);
+        if (id == null) {
+            id = exps.size();
+            exps.add(exp);
+            ids.put(exp, id);
+            all.set(id);
+            for (Var operand : getOperands(exp)) {
+                killIds.computeIfAbsent(operand, __ -> new RegularBitSet())
+                        .set(id);
+            }
+        }
+        return id;
+    }
+
+    private static List<Var> getOperands(Exp exp) {
+        if (exp instanceof BinaryExp binaryExp) {
+            return List.of(binaryExp.getOperand1(), binaryExp.getOperand2());
+        } else if (exp instanceof UnaryExp unaryExp) {
+            return List.of(unaryExp.getOperand());
+        }
+        return List.of();
+    }
+
+    /**
+     * @return the id of given expression, or -1 if it is not in this universe.
+     */
+    int getId(Exp exp) {
+        return ids.getOrDefault(exp, -1);
+    }
+
+    Exp getExp(int id) {
+        return exps.get(id);
+    }
+
+    int[] getGenIds(Stmt stmt) {
+        return genIds.getOrDefault(stmt, NO_IDS);
+    }
+
+    /**
+     * @return ids of the expressions killed by the definitions of given
+     * variable, or {@code null} if no such expressions.
+     */
+    RegularBitSet getKillIds(Var var) {
+        return killIds.get(var);
+    }
+
+    /**
+     * @return a new bit set containing all expressions in this universe.
+     */
+    RegularBitSet newFullSet() {
+        return all.copy();
+    }
+}
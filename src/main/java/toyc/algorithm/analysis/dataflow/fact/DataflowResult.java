@@ -2,6 +2,7 @@ package toyc.algorithm.analysis.dataflow.fact;
 
 import toyc.util.collection.Maps;
 
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -54,4 +55,18 @@ public class DataflowResult<Node, Fact> implements NodeResult<Node, Fact> {
     public void setOutFact(Node node, Fact fact) {
         outFacts.put(node, fact);
     }
+
+    /**
+     * @return an unmodifiable view of the flowing-in facts of all nodes.
+     */
+    public Map<Node, Fact> getInFacts() {
+        return Collections.unmodifiableMap(inFacts);
+    }
+
+    /**
+     * @return an unmodifiable view of the flowing-out facts of all nodes.
+     */
+    public Map<Node, Fact> getOutFacts() {
+        return Collections.unmodifiableMap(outFacts);
+    }
 }
@@ -0,0 +1,224 @@
+package toyc.algorithm.analysis.dataflow.fact;
+
+import toyc.algorithm.analysis.dataflow.analysis.DataflowAnalysis;
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGEdge;
+import toyc.util.collection.CollectionUtils;
+import toyc.util.collection.Maps;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Memory-lean {@link DataflowResult}, which only keeps the incoming facts
+ * (in the direction of the analysis) of the first nodes of basic blocks.
+ * The facts of other nodes are recomputed on demand by applying the
+ * transfer functions of the analysis through the blocks, and the facts
+ * of recently queried blocks are cached.
+ * <p>
+ * This result is read-only.
+ *
+ * @param <Node> type of nodes
+ * @param <Fact> type of data-flow facts
+ */
+public class LeanDataflowResult<Node, Fact> extends DataflowResult<Node, Fact> {
+
+    /**
+     * Max number of blocks whose facts are cached.
+     */
+    private static final int CACHE_SIZE = 32;
+
+    private final DataflowAnalysis<Node, Fact> analysis;
+
+    private final CFG<Node> cfg;
+
+    private final boolean forward;
+
+    /**
+     * Map from each node to the first node of its block.
+     */
+    private final Map<Node, Node> leaders = Maps.newMap();
+
+    /**
+     * Incoming facts of the first nodes of blocks.
+     */
+    private final Map<Node, Fact> leaderFacts = Maps.newMap();
+
+    private final Map<Node, Block<Node, Fact>> cache = Maps.newLRUMap(CACHE_SIZE);
+
+    /**
+     * Creates a lean result which holds the same facts as {@code result}
+     * solved for {@code analysis}.
+     */
+    public LeanDataflowResult(DataflowAnalysis<Node, Fact> analysis,
+                              DataflowResult<Node, Fact> result) {
+        super(Map.of(), Map.of());
+        this.analysis = analysis;
+        this.cfg = analysis.getCFG();
+        this.forward = analysis.isForward();
+        cfg.forEach(node -> {
+            if (isLeader(node)) {
+                addBlock(node, result);
+            }
+        });
+        // blocks on cycles without any leader, which are unreachable
+        cfg.forEach(node -> {
+            if (!leaders.containsKey(node)) {
+                addBlock(node, result);
+            }
+        });
+    }
+
+    private boolean isLeader(Node node) {
+        if (isBoundary(node)) {
+            return true;
+        }
+        Set<Node> preds = getPredsOf(node);
+        if (preds.size() != 1) {
+            return true;
+        }
+        Node pred = CollectionUtils.getOne(preds);
+        return isBoundary(pred) || getSuccsOf(pred).size() != 1;
+    }
+
+    private void addBlock(Node leader, DataflowResult<Node, Fact> result) {
+        leaderFacts.put(leader, forward
+                ? result.getInFact(leader) : result.getOutFact(leader));
+        for (Node node = leader; node != null; node = getNextInBlock(node, leader)) {
+            leaders.put(node, leader);
+        }
+    }
+
+    /**
+     * @return the node following {@code node} in the block of
+     * {@code leader}, or {@code null} if {@code node} ends the block.
+     */
+    private Node getNextInBlock(Node node, Node leader) {
+        if (isBoundary(node)) {
+            return null;
+        }
+        Set<Node> succs = getSuccsOf(node);
+        if (succs.size() != 1) {
+            return null;
+        }
+        Node succ = CollectionUtils.getOne(succs);
+        return succ == leader || leaders.containsKey(succ) || isLeader(succ)
+                ? null : succ;
+    }
+
+    @Override
+    public Fact getInFact(Node node) {
+        Block<Node, Fact> block = getBlock(node);
+        if (block == null) {
+            return null;
+        }
+        return forward ? block.inputs().get(node) : block.outputs().get(node);
+    }
+
+    @Override
+    public Fact getOutFact(Node node) {
+        Block<Node, Fact> block = getBlock(node);
+        if (block == null) {
+            return null;
+        }
+        return forward ? block.outputs().get(node) : block.inputs().get(node);
+    }
+
+    @Override
+    public void setInFact(Node node, Fact fact) {
+        throw new UnsupportedOperationException(
+                "LeanDataflowResult is read-only");
+    }
+
+    @Override
+    public void setOutFact(Node node, Fact fact) {
+        throw new UnsupportedOperationException(
+                "LeanDataflowResult is read-only");
+    }
+
+    /**
+     * Recomputes the flowing-in facts of all nodes.
+     */
+    @Override
+    public Map<Node, Fact> getInFacts() {
+        Map<Node, Fact> inFacts = Maps.newMap(leaders.size());
+        leaders.keySet().forEach(node -> inFacts.put(node, getInFact(node)));
+        return Collections.unmodifiableMap(inFacts);
+    }
+
+    /**
+     * Recomputes the flowing-out facts of all nodes.
+     */
+    @Override
+    public Map<Node, Fact> getOutFacts() {
+        Map<Node, Fact> outFacts = Maps.newMap(leaders.size());
+        leaders.keySet().forEach(node -> outFacts.put(node, getOutFact(node)));
+        return Collections.unmodifiableMap(outFacts);
+    }
+
+    private Block<Node, Fact> getBlock(Node node) {
+        Node leader = leaders.get(node);
+        return leader == null ? null
+                : cache.computeIfAbsent(leader, this::computeBlock);
+    }
+
+    /**
+     * Recomputes the facts of the block starting from {@code leader}.
+     */
+    private Block<Node, Fact> computeBlock(Node leader) {
+        Block<Node, Fact> block = new Block<>(
+                Maps.newHybridMap(), Maps.newHybridMap());
+        Fact input = leaderFacts.get(leader);
+        Node node = leader;
+        while (true) {
+            Fact output;
+            if (isBoundary(node)) {
+                output = input;
+            } else {
+                output = analysis.newInitialFact();
+                if (forward) {
+                    analysis.transferNode(node, input, output);
+                } else {
+                    analysis.transferNode(node, output, input);
+                }
+            }
+            block.inputs().put(node, input);
+            block.outputs().put(node, output);
+            Set<CFGEdge<Node>> edges = forward
+                    ? cfg.getOutEdgesOf(node) : cfg.getInEdgesOf(node);
+            if (edges.size() != 1) {
+                break;
+            }
+            CFGEdge<Node> edge = CollectionUtils.getOne(edges);
+            Node next = forward ? edge.target() : edge.source();
+            if (next == leader || leaders.get(next) != leader) {
+                break;
+            }
+            input = analysis.needTransferEdge(edge)
+                    ? analysis.transferEdge(edge, output) : output;
+            node = next;
+        }
+        return block;
+    }
+
+    private boolean isBoundary(Node node) {
+        return forward ? cfg.isEntry(node) : cfg.isExit(node);
+    }
+
+    private Set<Node> getPredsOf(Node node) {
+        return forward ? cfg.getPredsOf(node) : cfg.getSuccsOf(node);
+    }
+
+    private Set<Node> getSuccsOf(Node node) {
+        return forward ? cfg.getSuccsOf(node) : cfg.getPredsOf(node);
+    }
+
+    /**
+     * Facts of the nodes in a block. The input (output) facts are the
+     * in (out) facts for forward analysis, and vice versa.
+     */
+    private record Block<Node, Fact>(Map<Node, Fact> inputs,
+                                     Map<Node, Fact> outputs) {
+    }
+}
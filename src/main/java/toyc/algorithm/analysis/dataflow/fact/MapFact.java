@@ -2,6 +2,7 @@ package toyc.algorithm.analysis.dataflow.fact;
 
 import toyc.util.Copyable;
 import toyc.util.collection.Maps;
+import toyc.util.collection.PersistentHashMap;
 
 import java.util.*;
 import java.util.function.BiConsumer;
@@ -10,6 +11,10 @@ import java.util.stream.Stream;
 
 /**
  * Represents map-like data-flow facts.
+ * <p>
+ * The mappings are held in a {@link PersistentHashMap}, so copying a fact
+ * takes O(1) time and the copy shares structure with the original fact
+ * until either of them is updated.
  *
  * @param <K> type of keys
  * @param <V> type of values
@@ -23,11 +28,12 @@ public class MapFact<K, V> implements Copyable<MapFact<K, V>> {
 
     /**
      * Constructs a new MapFact with the same mappings as specified Map.
+     * This takes O(1) time if the given map is the one of another MapFact.
      *
      * @param map the map whose mappings are to be placed in this map.
      */
     public MapFact(Map<K, V> map) {
-        this.map = Maps.newHybridMap(map);
+        this.map = Maps.newPersistentMap(map);
     }
 
     /**
@@ -63,6 +69,14 @@ public class MapFact<K, V> implements Copyable<MapFact<K, V>> {
      * @return true if this fact changed as a result of the call, otherwise false.
      */
     public boolean copyFrom(MapFact<K, V> fact) {
+        if (map.isEmpty() && getClass() == fact.getClass()
+                && map instanceof PersistentHashMap<K, V> m
+                && fact.map instanceof PersistentHashMap<K, V> other) {
+            // facts of the same class hold the same invariants on their
+            // mappings, thus we can share other's mappings directly
+            m.setTo(other);
+            return !m.isEmpty();
+        }
         boolean changed = false;
         for (Map.Entry<K, V> entry : fact.map.entrySet()) {
             changed |= update(entry.getKey(), entry.getValue());
@@ -3,6 +3,7 @@ package toyc.algorithm.analysis.dataflow.fact;
 import toyc.util.Copyable;
 import toyc.util.collection.CollectionUtils;
 import toyc.util.collection.GenericBitSet;
+import toyc.util.collection.PersistentHashSet;
 import toyc.util.collection.Sets;
 
 import java.util.Collection;
@@ -15,6 +16,10 @@ import java.util.stream.Stream;
 
 /**
  * Represents set-like data-flow facts.
+ * <p>
+ * Facts created from a {@link GenericBitSet} keep using a bit set;
+ * other facts are held in a {@link PersistentHashSet}, so copying them
+ * takes O(1) time and copies share structure until updated.
  *
  * @param <E> type of elements
  */
@@ -26,7 +31,7 @@ public class SetFact<E> implements Copyable<SetFact<E>>, Iterable<E> {
         if (c instanceof GenericBitSet<E> s) {
             set = s.copy();
         } else {
-            set = Sets.newHybridSet(c);
+            set = Sets.newPersistentSet(c);
         }
     }
 
@@ -120,6 +125,9 @@ public class SetFact<E> implements Copyable<SetFact<E>>, Iterable<E> {
     public void set(SetFact<E> other) {
         if (set instanceof GenericBitSet<E> s) {
             s.setTo(other.set);
+        } else if (set instanceof PersistentHashSet<E> s
+                && other.set instanceof PersistentHashSet<E> o) {
+            s.setTo(o);
         } else {
             clear();
             union(other);
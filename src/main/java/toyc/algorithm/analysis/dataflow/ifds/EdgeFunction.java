@@ -0,0 +1,29 @@
+package toyc.algorithm.analysis.dataflow.ifds;
+
+/**
+ * Edge function of IDE problems, which describes how the value of a fact
+ * changes along an edge of the exploded supergraph.
+ * <p>
+ * Implementations should be immutable and override {@link Object#equals},
+ * as the solver detects changes of jump functions by equality.
+ *
+ * @param <V> type of values
+ */
+public interface EdgeFunction<V> {
+
+    /**
+     * @return the value obtained by applying this function to {@code source}.
+     */
+    V computeTarget(V source);
+
+    /**
+     * @return the function that first applies this function,
+     * and then applies {@code second}.
+     */
+    EdgeFunction<V> composeWith(EdgeFunction<V> second);
+
+    /**
+     * @return the meet of this function and {@code other}.
+     */
+    EdgeFunction<V> meetWith(EdgeFunction<V> other);
+}
@@ -0,0 +1,39 @@
+package toyc.algorithm.analysis.dataflow.ifds;
+
+/**
+ * The identity edge function.
+ *
+ * @param <V> type of values
+ */
+public final class EdgeIdentity<V> implements EdgeFunction<V> {
+
+    private static final EdgeIdentity<?> INSTANCE = new EdgeIdentity<>();
+
+    private EdgeIdentity() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> EdgeIdentity<V> get() {
+        return (EdgeIdentity<V>) INSTANCE;
+    }
+
+    @Override
+    public V computeTarget(V source) {
+        return source;
+    }
+
+    @Override
+    public EdgeFunction<V> composeWith(EdgeFunction<V> second) {
+        return second;
+    }
+
+    @Override
+    public EdgeFunction<V> meetWith(EdgeFunction<V> other) {
+        return other == this ? this : other.meetWith(this);
+    }
+
+    @Override
+    public String toString() {
+        return "id";
+    }
+}
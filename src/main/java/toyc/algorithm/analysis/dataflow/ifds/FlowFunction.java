@@ -0,0 +1,18 @@
+package toyc.algorithm.analysis.dataflow.ifds;
+
+import java.util.Set;
+
+/**
+ * Flow function of IFDS/IDE problems, which maps a data-flow fact
+ * to the set of facts that it generates along an edge of the supergraph.
+ *
+ * @param <D> type of data-flow facts
+ */
+@FunctionalInterface
+public interface FlowFunction<D> {
+
+    /**
+     * @return the facts generated by {@code source}.
+     */
+    Set<D> compute(D source);
+}
@@ -0,0 +1,39 @@
+package toyc.algorithm.analysis.dataflow.ifds;
+
+/**
+ * Template interface for defining inter-procedural distributive
+ * environment (IDE) problems. In addition to the flow functions of
+ * IFDS problems, an IDE problem attaches an {@link EdgeFunction}
+ * to each edge of the exploded supergraph.
+ *
+ * @param <Node>     type of ICFG nodes
+ * @param <Function> type of functions
+ * @param <D>        type of data-flow facts
+ * @param <V>        type of values
+ */
+public interface IDEProblem<Node, Function, D, V>
+        extends IFDSProblem<Node, Function, D> {
+
+    EdgeFunction<V> getNormalEdgeFunction(Node curr, D currFact,
+                                          Node succ, D succFact);
+
+    EdgeFunction<V> getCallEdgeFunction(Node callSite, D srcFact,
+                                        Function callee, D destFact);
+
+    EdgeFunction<V> getReturnEdgeFunction(Node callSite, Function callee,
+                                          Node exit, D exitFact,
+                                          Node returnSite, D retFact);
+
+    EdgeFunction<V> getCallToReturnEdgeFunction(Node callSite, D callFact,
+                                                Node returnSite, D returnFact);
+
+    /**
+     * @return the bottom value, which is given to the zero fact at seeds.
+     */
+    V bottomValue();
+
+    /**
+     * @return the meet of two values.
+     */
+    V meetValue(V v1, V v2);
+}
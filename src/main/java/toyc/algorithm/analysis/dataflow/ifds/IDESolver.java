@@ -0,0 +1,393 @@
+package toyc.algorithm.analysis.dataflow.ifds;
+
+import toyc.algorithm.analysis.graph.icfg.CallEdge;
+import toyc.algorithm.analysis.graph.icfg.ICFG;
+import toyc.algorithm.analysis.graph.icfg.ICFGEdge;
+import toyc.algorithm.analysis.graph.icfg.ReturnEdge;
+import toyc.util.collection.Maps;
+import toyc.util.collection.MultiMap;
+import toyc.util.collection.Sets;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tabulation solver for {@link IDEProblem}s, following
+ * "Precise interprocedural dataflow analysis with applications to
+ * constant propagation" (Sagiv, Reps and Horwitz, TCS'96).
+ * <p>
+ * Phase I computes jump functions (path edges) from the start point of
+ * each function to every node reachable in the exploded supergraph, and
+ * summary functions from start points to end points. A summary is
+ * computed once for each fact at the start point of the callee and reused
+ * at all call sites that pass the fact. Phase II computes the values of
+ * facts, first at start points and then at all other nodes.
+ * <p>
+ * The tables of the solver are nested per node, and the fact-keyed levels
+ * use hybrid maps, which are compact arrays for the few facts that
+ * usually hold at a node.
+ *
+ * @param <Node>     type of ICFG nodes
+ * @param <Function> type of functions
+ * @param <D>        type of data-flow facts
+ * @param <V>        type of values
+ */
+public class IDESolver<Node, Function, D, V> {
+
+    private final IDEProblem<Node, Function, D, V> problem;
+
+    private final ICFG<Function, Node> icfg;
+
+    private final boolean forward;
+
+    private final D zero;
+
+    /**
+     * Jump functions: target node -> target fact -> source fact (at the
+     * start point of the containing function) -> edge function.
+     */
+    private final Map<Node, Map<D, Map<D, EdgeFunction<V>>>> jumpFns =
+            Maps.newMap();
+
+    /**
+     * Summary functions: start point -> fact at start point -> end point
+     * -> fact at end point -> edge function.
+     */
+    private final Map<Node, Map<D, Map<Node, Map<D, EdgeFunction<V>>>>> endSummaries =
+            Maps.newMap();
+
+    /**
+     * Incoming calls: start point -> fact at start point
+     * -> call sites with the facts that reach the start point.
+     */
+    private final Map<Node, Map<D, MultiMap<Node, D>>> incoming =
+            Maps.newMap();
+
+    private final Deque<PathEdge<Node, D>> workList = new ArrayDeque<>();
+
+    private final MultiMap<Function, Node> callSitesOf = Maps.newMultiMap();
+
+    /**
+     * Values of facts at each node, computed in phase II.
+     */
+    private final Map<Node, Map<D, V>> values = Maps.newMap();
+
+    public IDESolver(IDEProblem<Node, Function, D, V> problem,
+                     ICFG<Function, Node> icfg) {
+        this.problem = problem;
+        this.icfg = icfg;
+        this.forward = problem.isForward();
+        this.zero = problem.zeroValue();
+    }
+
+    /**
+     * Solves the problem. After this call, results are available
+     * via {@link #getResult(Object)}.
+     */
+    public void solve() {
+        computeJumpFunctions();
+        computeValues();
+    }
+
+    /**
+     * @return the facts holding at given node and their values, excluding
+     * the zero fact. For a forward (backward) problem, these are the facts
+     * that hold before (after) the node.
+     */
+    public Map<D, V> getResult(Node node) {
+        Map<D, V> result = values.get(node);
+        if (result == null) {
+            return Collections.emptyMap();
+        }
+        Map<D, V> facts = Maps.newHybridMap();
+        result.forEach((d, v) -> {
+            if (!d.equals(zero)) {
+                facts.put(d, v);
+            }
+        });
+        return facts;
+    }
+
+    /**
+     * @return the facts reachable at given node in the exploded supergraph,
+     * excluding the zero fact. Only phase I is needed for this method.
+     */
+    Set<D> getReachedFacts(Node node) {
+        Map<D, Map<D, EdgeFunction<V>>> fns = jumpFns.get(node);
+        if (fns == null) {
+            return Set.of();
+        }
+        Set<D> facts = Sets.newHybridSet(fns.keySet());
+        facts.remove(zero);
+        return facts;
+    }
+
+    // ---------- phase I: jump functions ----------
+
+    void computeJumpFunctions() {
+        icfg.forEach(node -> {
+            if (icfg.isCallSite(node)) {
+                callSitesOf.put(icfg.getContainingFunctionOf(node), node);
+            }
+        });
+        for (Node seed : problem.initialSeeds()) {
+            propagate(zero, seed, zero, EdgeIdentity.get());
+        }
+        while (!workList.isEmpty()) {
+            PathEdge<Node, D> edge = workList.poll();
+            Node node = edge.node();
+            if (icfg.isCallSite(node)) {
+                processCall(edge);
+            } else if (isEndPoint(node)) {
+                processExit(edge);
+            } else {
+                processNormal(edge);
+            }
+        }
+    }
+
+    private void processCall(PathEdge<Node, D> edge) {
+        D d1 = edge.sourceFact();
+        Node callSite = edge.node();
+        D d2 = edge.targetFact();
+        EdgeFunction<V> f = getJumpFunction(callSite, d2, d1);
+        List<Node> returnSites = getReturnSitesOf(callSite);
+        if (hasCallee(callSite)) {
+            Function callee = icfg.getCalleeOf(callSite);
+            Node startPoint = getStartPointOf(callee);
+            for (D d3 : problem.getCallFlowFunction(callSite, callee).compute(d2)) {
+                // start the callee with a zero-length path edge
+                propagate(d3, startPoint, d3, EdgeIdentity.get());
+                getTable(incoming, startPoint).computeIfAbsent(d3,
+                        d -> Maps.newMultiMap()).put(callSite, d2);
+                // apply the existing summaries of the callee
+                Map<Node, Map<D, EdgeFunction<V>>> summaries =
+                        getTable(endSummaries, startPoint).get(d3);
+                if (summaries == null) {
+                    continue;
+                }
+                EdgeFunction<V> fCall = problem.getCallEdgeFunction(
+                        callSite, d2, callee, d3);
+                summaries.forEach((endPoint, endFns) ->
+                        endFns.forEach((d4, fSummary) -> {
+                            for (Node returnSite : returnSites) {
+                                for (D d5 : problem.getReturnFlowFunction(
+                                        callSite, callee, endPoint, returnSite)
+                                        .compute(d4)) {
+                                    EdgeFunction<V> fReturn = problem.getReturnEdgeFunction(
+                                            callSite, callee, endPoint, d4, returnSite, d5);
+                                    propagate(d1, returnSite, d5, f.composeWith(fCall)
+                                            .composeWith(fSummary)
+                                            .composeWith(fReturn));
+                                }
+                            }
+                        }));
+            }
+        }
+        // flow that bypasses the callee
+        for (Node returnSite : returnSites) {
+            for (D d3 : problem.getCallToReturnFlowFunction(callSite, returnSite)
+                    .compute(d2)) {
+                propagate(d1, returnSite, d3, f.composeWith(
+                        problem.getCallToReturnEdgeFunction(
+                                callSite, d2, returnSite, d3)));
+            }
+        }
+    }
+
+    private void processExit(PathEdge<Node, D> edge) {
+        D d1 = edge.sourceFact();
+        Node endPoint = edge.node();
+        D d2 = edge.targetFact();
+        EdgeFunction<V> f = getJumpFunction(endPoint, d2, d1);
+        Function function = icfg.getContainingFunctionOf(endPoint);
+        Node startPoint = getStartPointOf(function);
+        getTable(endSummaries, startPoint)
+                .computeIfAbsent(d1, d -> Maps.newMap())
+                .computeIfAbsent(endPoint, n -> Maps.newHybridMap())
+                .put(d2, f);
+        MultiMap<Node, D> callers = getTable(incoming, startPoint).get(d1);
+        if (callers == null) {
+            return;
+        }
+        callers.forEach((callSite, d4) -> {
+            EdgeFunction<V> fCall = problem.getCallEdgeFunction(
+                    callSite, d4, function, d1);
+            Map<D, EdgeFunction<V>> callerFns =
+                    getTable(jumpFns, callSite).get(d4);
+            for (Node returnSite : getReturnSitesOf(callSite)) {
+                for (D d5 : problem.getReturnFlowFunction(
+                        callSite, function, endPoint, returnSite).compute(d2)) {
+                    EdgeFunction<V> fReturn = problem.getReturnEdgeFunction(
+                            callSite, function, endPoint, d2, returnSite, d5);
+                    EdgeFunction<V> fThrough = fCall.composeWith(f)
+                            .composeWith(fReturn);
+                    callerFns.forEach((d3, fCaller) ->
+                            propagate(d3, returnSite, d5,
+                                    fCaller.composeWith(fThrough)));
+                }
+            }
+        });
+    }
+
+    private void processNormal(PathEdge<Node, D> edge) {
+        D d1 = edge.sourceFact();
+        Node node = edge.node();
+        D d2 = edge.targetFact();
+        EdgeFunction<V> f = getJumpFunction(node, d2, d1);
+        for (Node succ : getSuccsOf(node)) {
+            for (D d3 : problem.getNormalFlowFunction(node, succ).compute(d2)) {
+                propagate(d1, succ, d3, f.composeWith(
+                        problem.getNormalEdgeFunction(node, d2, succ, d3)));
+            }
+        }
+    }
+
+    private void propagate(D sourceFact, Node target, D targetFact,
+                           EdgeFunction<V> f) {
+        Map<D, EdgeFunction<V>> fns = getTable(jumpFns, target)
+                .computeIfAbsent(targetFact, d -> Maps.newHybridMap());
+        EdgeFunction<V> old = fns.get(sourceFact);
+        EdgeFunction<V> newFn = old == null ? f : old.meetWith(f);
+        if (!newFn.equals(old)) {
+            fns.put(sourceFact, newFn);
+            workList.add(new PathEdge<>(sourceFact, target, targetFact));
+        }
+    }
+
+    private EdgeFunction<V> getJumpFunction(Node target, D targetFact,
+                                            D sourceFact) {
+        return jumpFns.get(target).get(targetFact).get(sourceFact);
+    }
+
+    private <T> Map<D, T> getTable(Map<Node, Map<D, T>> table,
+                                        Node node) {
+        return table.computeIfAbsent(node, n -> Maps.newHybridMap());
+    }
+
+    // ---------- phase II: values ----------
+
+    private void computeValues() {
+        // (i) propagate values to the start points of functions
+        Map<Node, Map<D, V>> startValues = Maps.newMap();
+        Deque<PathEdge<Node, D>> valueWorkList = new ArrayDeque<>();
+        for (Node seed : problem.initialSeeds()) {
+            getTable(startValues, seed).put(zero, problem.bottomValue());
+            valueWorkList.add(new PathEdge<>(zero, seed, zero));
+        }
+        while (!valueWorkList.isEmpty()) {
+            PathEdge<Node, D> item = valueWorkList.poll();
+            Node startPoint = item.node();
+            D d = item.targetFact();
+            V value = startValues.get(startPoint).get(d);
+            Function function = icfg.getContainingFunctionOf(startPoint);
+            for (Node callSite : callSitesOf.get(function)) {
+                if (!hasCallee(callSite)) {
+                    continue;
+                }
+                Map<D, Map<D, EdgeFunction<V>>> fns = jumpFns.get(callSite);
+                if (fns == null) {
+                    continue;
+                }
+                Function callee = icfg.getCalleeOf(callSite);
+                Node calleeStart = getStartPointOf(callee);
+                fns.forEach((d2, sourceFns) -> {
+                    EdgeFunction<V> f = sourceFns.get(d);
+                    if (f == null) {
+                        return;
+                    }
+                    V callSiteValue = f.computeTarget(value);
+                    for (D d3 : problem.getCallFlowFunction(callSite, callee)
+                            .compute(d2)) {
+                        V v = problem.getCallEdgeFunction(callSite, d2, callee, d3)
+                                .computeTarget(callSiteValue);
+                        Map<D, V> calleeValues = getTable(startValues, calleeStart);
+                        V old = calleeValues.get(d3);
+                        V newValue = old == null ? v : problem.meetValue(old, v);
+                        if (!newValue.equals(old)) {
+                            calleeValues.put(d3, newValue);
+                            valueWorkList.add(new PathEdge<>(d3, calleeStart, d3));
+                        }
+                    }
+                });
+            }
+        }
+        // (ii) compute values at all nodes from the start points
+        jumpFns.forEach((node, fns) -> {
+            Node startPoint = getStartPointOf(icfg.getContainingFunctionOf(node));
+            Map<D, V> sourceValues = startValues.get(startPoint);
+            if (sourceValues == null) {
+                return;
+            }
+            Map<D, V> nodeValues = getTable(values, node);
+            fns.forEach((d2, sourceFns) -> sourceFns.forEach((d1, f) -> {
+                V sourceValue = sourceValues.get(d1);
+                if (sourceValue != null) {
+                    V v = f.computeTarget(sourceValue);
+                    V old = nodeValues.get(d2);
+                    nodeValues.put(d2, old == null ? v : problem.meetValue(old, v));
+                }
+            }));
+        });
+    }
+
+    // ---------- navigation in the direction of the problem ----------
+
+    private Node getStartPointOf(Function function) {
+        return forward ? icfg.getEntryOf(function) : icfg.getExitOf(function);
+    }
+
+    private boolean isEndPoint(Node node) {
+        Function function = icfg.getContainingFunctionOf(node);
+        return node.equals(forward ?
+                icfg.getExitOf(function) : icfg.getEntryOf(function));
+    }
+
+    private boolean hasCallee(Node callSite) {
+        // call edges are absent if the CFG of callee is unavailable
+        return icfg.getOutEdgesOf(callSite)
+                .stream()
+                .anyMatch(e -> e instanceof CallEdge);
+    }
+
+    /**
+     * @return the intra-procedural successors of given node
+     * in the direction of the problem.
+     */
+    private List<Node> getSuccsOf(Node node) {
+        if (forward) {
+            return icfg.getOutEdgesOf(node)
+                    .stream()
+                    .filter(IDESolver::isIntraEdge)
+                    .map(ICFGEdge::target)
+                    .toList();
+        } else {
+            return icfg.getInEdgesOf(node)
+                    .stream()
+                    .filter(IDESolver::isIntraEdge)
+                    .map(ICFGEdge::source)
+                    .toList();
+        }
+    }
+
+    private List<Node> getReturnSitesOf(Node callSite) {
+        return forward ? List.copyOf(icfg.getReturnSitesOf(callSite))
+                : getSuccsOf(callSite);
+    }
+
+    private static boolean isIntraEdge(ICFGEdge<?> edge) {
+        return !(edge instanceof CallEdge) && !(edge instanceof ReturnEdge);
+    }
+
+    /**
+     * Edge in the exploded supergraph from a fact at the start point of
+     * the function containing {@code node} to {@code targetFact} at
+     * {@code node}. In phase II it is reused as an item of start values.
+     */
+    private record PathEdge<Node, D>(D sourceFact, Node node, D targetFact) {
+    }
+}
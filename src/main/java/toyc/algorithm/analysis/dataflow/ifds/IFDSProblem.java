@@ -0,0 +1,60 @@
+package toyc.algorithm.analysis.dataflow.ifds;
+
+import java.util.Set;
+
+/**
+ * Template interface for defining inter-procedural, finite, distributive
+ * subset (IFDS) problems over an ICFG.
+ * <p>
+ * The flow functions are described in the direction of the analysis:
+ * for a backward problem, {@code succ} of a normal flow function is
+ * a predecessor of {@code curr} in the program, the start point of
+ * a function is its exit, and the return sites of a call site are
+ * its predecessors.
+ *
+ * @param <Node>     type of ICFG nodes
+ * @param <Function> type of functions
+ * @param <D>        type of data-flow facts
+ */
+public interface IFDSProblem<Node, Function, D> {
+
+    /**
+     * @return true if this problem is forward, otherwise false.
+     */
+    boolean isForward();
+
+    /**
+     * @return the special zero (tautological) fact.
+     */
+    D zeroValue();
+
+    /**
+     * @return the start points where the zero fact holds initially.
+     */
+    Set<Node> initialSeeds();
+
+    /**
+     * @return flow function for the intra-procedural edge
+     * from {@code curr} to {@code succ}.
+     */
+    FlowFunction<D> getNormalFlowFunction(Node curr, Node succ);
+
+    /**
+     * @return flow function which maps facts at the call site
+     * to the start point of the callee.
+     */
+    FlowFunction<D> getCallFlowFunction(Node callSite, Function callee);
+
+    /**
+     * @return flow function which maps facts at the end point of the callee
+     * back to the return site of the call site.
+     */
+    FlowFunction<D> getReturnFlowFunction(Node callSite, Function callee,
+                                          Node exit, Node returnSite);
+
+    /**
+     * @return flow function which maps facts at the call site
+     * to the return site, bypassing the callee.
+     */
+    FlowFunction<D> getCallToReturnFlowFunction(Node callSite, Node returnSite);
+}
@@ -0,0 +1,123 @@
+package toyc.algorithm.analysis.dataflow.ifds;
+
+import toyc.algorithm.analysis.graph.icfg.ICFG;
+
+import java.util.Set;
+
+/**
+ * Tabulation solver for {@link IFDSProblem}s, following "Precise
+ * interprocedural dataflow analysis via graph reachability"
+ * (Reps, Horwitz and Sagiv, POPL'95).
+ * <p>
+ * An IFDS problem is solved as an IDE problem whose edge functions are
+ * all identity, thus only the phase I of {@link IDESolver} is needed.
+ *
+ * @param <Node>     type of ICFG nodes
+ * @param <Function> type of functions
+ * @param <D>        type of data-flow facts
+ */
+public class IFDSSolver<Node, Function, D> {
+
+    private final IDESolver<Node, Function, D, Boolean> solver;
+
+    public IFDSSolver(IFDSProblem<Node, Function, D> problem,
+                      ICFG<Function, Node> icfg) {
+        this.solver = new IDESolver<>(new IDEAdapter<>(problem), icfg);
+    }
+
+    /**
+     * Solves the problem. After this call, results are available
+     * via {@link #getResult(Object)}.
+     */
+    public void solve() {
+        solver.computeJumpFunctions();
+    }
+
+    /**
+     * @return the facts holding at given node, excluding the zero fact.
+     * For a forward (backward) problem, these are the facts that hold
+     * before (after) the node.
+     */
+    public Set<D> getResult(Node node) {
+        return solver.getReachedFacts(node);
+    }
+
+    /**
+     * Views an IFDS problem as an IDE problem with identity edge functions.
+     */
+    private record IDEAdapter<Node, Function, D>(
+            IFDSProblem<Node, Function, D> problem)
+            implements IDEProblem<Node, Function, D, Boolean> {
+
+        @Override
+        public boolean isForward() {
+            return problem.isForward();
+        }
+
+        @Override
+        public D zeroValue() {
+            return problem.zeroValue();
+        }
+
+        @Override
+        public Set<Node> initialSeeds() {
+            return problem.initialSeeds();
+        }
+
+        @Override
+        public FlowFunction<D> getNormalFlowFunction(Node curr, Node succ) {
+            return problem.getNormalFlowFunction(curr, succ);
+        }
+
+        @Override
+        public FlowFunction<D> getCallFlowFunction(Node callSite, Function callee) {
+            return problem.getCallFlowFunction(callSite, callee);
+        }
+
+        @Override
+        public FlowFunction<D> getReturnFlowFunction(Node callSite, Function callee,
+                                                     Node exit, Node returnSite) {
+            return problem.getReturnFlowFunction(callSite, callee, exit, returnSite);
+        }
+
+        @Override
+        public FlowFunction<D> getCallToReturnFlowFunction(Node callSite, Node returnSite) {
+            return problem.getCallToReturnFlowFunction(callSite, returnSite);
+        }
+
+        @Override
+        public EdgeFunction<Boolean> getNormalEdgeFunction(
+                Node curr, D currFact, Node succ, D succFact) {
+            return EdgeIdentity.get();
+        }
+
+        @Override
+        public EdgeFunction<Boolean> getCallEdgeFunction(
+                Node callSite, D srcFact, Function callee, D destFact) {
+            return EdgeIdentity.get();
+        }
+
+        @Override
+        public EdgeFunction<Boolean> getReturnEdgeFunction(
+                Node callSite, Function callee, Node exit, D exitFact,
+                Node returnSite, D retFact) {
+            return EdgeIdentity.get();
+        }
+
+        @Override
+        public EdgeFunction<Boolean> getCallToReturnEdgeFunction(
+                Node callSite, D callFact, Node returnSite, D returnFact) {
+            return EdgeIdentity.get();
+        }
+
+        @Override
+        public Boolean bottomValue() {
+            return true;
+        }
+
+        @Override
+        public Boolean meetValue(Boolean v1, Boolean v2) {
+            return v1 || v2;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package toyc.algorithm.analysis.dataflow.ifds;
+
+import toyc.World;
+import toyc.algorithm.analysis.ProgramAnalysis;
+import toyc.algorithm.analysis.dataflow.fact.DataflowResult;
+import toyc.algorithm.analysis.dataflow.fact.SetFact;
+import toyc.algorithm.analysis.graph.icfg.ICFG;
+import toyc.algorithm.analysis.graph.icfg.ICFGBuilder;
+import toyc.algorithm.analysis.graph.icfg.ICFGEdge;
+import toyc.algorithm.analysis.graph.icfg.ReturnEdge;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Return;
+import toyc.ir.stmt.Stmt;
+import toyc.language.Function;
+import toyc.language.type.IntType;
+import toyc.util.collection.Sets;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Inter-procedural live variable analysis, solved as an IFDS problem.
+ * <p>
+ * Compared to the intra-procedural {@link
+ * toyc.algorithm.analysis.dataflow.analysis.LiveVariable}, the returned
+ * variables of a function are live only if the result of some call to
+ * the function is live at the call site (or the function is the entry
+ * function, whose result is observed by the environment).
+ * <p>
+ * The result has the same shape as the one of intra-procedural analysis:
+ * IN fact of a statement holds the variables live before it, and OUT fact
+ * holds the variables live after it.
+ */
+public class InterLiveVariable extends
+        ProgramAnalysis<DataflowResult<Stmt, SetFact<Var>>> {
+
+    public static final String ID = "inter-live-var";
+
+    /**
+     * The zero fact of the IFDS problem.
+     */
+    private static final Var ZERO = new Var(null, "<zero>", IntType.INT, -1);
+
+    private ICFG<Function, Stmt> icfg;
+
+    public InterLiveVariable(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public DataflowResult<Stmt, SetFact<Var>> analyze() {
+        icfg = World.get().getResult(ICFGBuilder.ID);
+        IFDSSolver<Stmt, Function, Var> solver =
+                new IFDSSolver<>(new Problem(), icfg);
+        solver.solve();
+        DataflowResult<Stmt, SetFact<Var>> result = new DataflowResult<>();
+        icfg.forEach(stmt -> {
+            // facts of backward problem hold after the statements
+            SetFact<Var> out = new SetFact<>(solver.getResult(stmt));
+            SetFact<Var> in = new SetFact<>();
+            out.forEach(var -> {
+                if (!isKilled(stmt, var)) {
+                    in.add(var);
+                }
+            });
+            getGenerated(stmt).forEach(in::add);
+            result.setInFact(stmt, in);
+            result.setOutFact(stmt, out);
+        });
+        return result;
+    }
+
+    private boolean isKilled(Stmt stmt, Var var) {
+        return stmt.getDef().map(var::equals).orElse(false);
+    }
+
+    /**
+     * @return variables that are live before given statement regardless
+     * of the liveness after it.
+     */
+    private List<Var> getGenerated(Stmt stmt) {
+        if (stmt instanceof Return ret) {
+            // returned variables are live only if the result is used
+            Var value = ret.getValue();
+            return value != null && !value.isConst()
+                    && icfg.getContainingFunctionOf(stmt)
+                    .equals(icfg.entryFunction())
+                    ? List.of(value) : List.of();
+        }
+        return stmt.getUses()
+                .stream()
+                .filter(use -> use instanceof Var var && !var.isConst())
+                .map(use -> (Var) use)
+                .toList();
+    }
+
+    private class Problem implements IFDSProblem<Stmt, Function, Var> {
+
+        @Override
+        public boolean isForward() {
+            return false;
+        }
+
+        @Override
+        public Var zeroValue() {
+            return ZERO;
+        }
+
+        @Override
+        public Set<Stmt> initialSeeds() {
+            return Set.of(icfg.getExitOf(icfg.entryFunction()));
+        }
+
+        @Override
+        public FlowFunction<Var> getNormalFlowFunction(Stmt curr, Stmt succ) {
+            return var -> {
+                if (var == ZERO) {
+                    Set<Var> result = Sets.newHybridSet(getGenerated(curr));
+                    result.add(ZERO);
+                    return result;
+                }
+                return isKilled(curr, var) ? Set.of() : Set.of(var);
+            };
+        }
+
+        @Override
+        public FlowFunction<Var> getCallFlowFunction(Stmt callSite, Function callee) {
+            // the returned variables of callee are live at its exit
+            // if the result of the call is live after the call site
+            Var result = ((Call) callSite).getResult();
+            return var -> {
+                if (var == ZERO) {
+                    return Set.of(ZERO);
+                } else if (var.equals(result)) {
+                    Set<Var> retVars = Sets.newHybridSet();
+                    Stmt exit = icfg.getExitOf(callee);
+                    for (ICFGEdge<Stmt> edge : icfg.getOutEdgesOf(exit)) {
+                        if (edge instanceof ReturnEdge<Stmt> retEdge
+                                && retEdge.getCallSite() == callSite) {
+                            retEdge.getReturnVars().forEach(v -> {
+                                if (!v.isConst()) {
+                                    retVars.add(v);
+                                }
+                            });
+                        }
+                    }
+                    return retVars;
+                }
+                return Set.of();
+            };
+        }
+
+        @Override
+        public FlowFunction<Var> getReturnFlowFunction(
+                Stmt callSite, Function callee, Stmt exit, Stmt returnSite) {
+            // arguments are generated at the call site (see below),
+            // so only the zero fact needs to flow back to the caller
+            return var -> var == ZERO ? Set.of(ZERO) : Set.of();
+        }
+
+        @Override
+        public FlowFunction<Var> getCallToReturnFlowFunction(
+                Stmt callSite, Stmt returnSite) {
+            // arguments are always live before the call, as they are
+            // passed to the callee even if the parameters are dead
+            return var -> {
+                if (var == ZERO) {
+                    Set<Var> result = Sets.newHybridSet(getGenerated(callSite));
+                    result.add(ZERO);
+                    return result;
+                }
+                return isKilled(callSite, var) ? Set.of() : Set.of(var);
+            };
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package toyc.algorithm.analysis.dataflow.ifds;
+
+import toyc.World;
+import toyc.algorithm.analysis.ProgramAnalysis;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.CPFact;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.Evaluator;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.Value;
+import toyc.algorithm.analysis.dataflow.fact.DataflowResult;
+import toyc.algorithm.analysis.graph.icfg.ICFG;
+import toyc.algorithm.analysis.graph.icfg.ICFGBuilder;
+import toyc.algorithm.analysis.graph.icfg.ICFGEdge;
+import toyc.algorithm.analysis.graph.icfg.ReturnEdge;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.BinaryExp;
+import toyc.ir.exp.Exp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.NegExp;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.Stmt;
+import toyc.ir.stmt.Unary;
+import toyc.language.Function;
+import toyc.language.type.IntType;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inter-procedural linear constant propagation, solved as an IDE problem.
+ * <p>
+ * Besides constants, the analysis tracks linear relations of the form
+ * {@code x = a * y + b} along edges of the exploded supergraph, so that
+ * a constant argument (or a constant computed from it) is propagated
+ * precisely through each call chain, and the summary of a function is
+ * shared by all its call sites.
+ * <p>
+ * The result has the same shape as the one of {@link ConstantPropagation}.
+ */
+public class LinearConstantPropagation extends
+        ProgramAnalysis<DataflowResult<Stmt, CPFact>> {
+
+    public static final String ID = "linear-const-prop";
+
+    /**
+     * The zero fact of the IDE problem.
+     */
+    private static final Var ZERO = new Var(null, "<zero>", IntType.INT, -1);
+
+    private final ConstantPropagation.Analysis cp =
+            new ConstantPropagation.Analysis(null, false);
+
+    private ICFG<Function, Stmt> icfg;
+
+    /**
+     * Cache of the transfers of definition statements.
+     */
+    private final Map<Stmt, Transfer> transfers = Maps.newMap();
+
+    public LinearConstantPropagation(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public DataflowResult<Stmt, CPFact> analyze() {
+        icfg = World.get().getResult(ICFGBuilder.ID);
+        IDESolver<Stmt, Function, Var, Value> solver =
+                new IDESolver<>(new Problem(), icfg);
+        solver.solve();
+        DataflowResult<Stmt, CPFact> result = new DataflowResult<>();
+        icfg.forEach(stmt -> {
+            CPFact in = new CPFact();
+            solver.getResult(stmt).forEach(in::update);
+            CPFact out = in.copy();
+            if (stmt instanceof Call call) {
+                Var lhs = call.getResult();
+                if (lhs != null) {
+                    out.update(lhs, getResultValue(call, solver));
+                }
+            } else {
+                Transfer transfer = getTransfer(stmt);
+                if (transfer != null) {
+                    Value source = transfer.source() == null
+                            ? Value.getNAC() : in.get(transfer.source());
+                    out.update(transfer.lhs(), transfer.function() == null
+                            ? Value.getUndef()
+                            : transfer.function().computeTarget(source));
+                }
+            }
+            result.setInFact(stmt, in);
+            result.setOutFact(stmt, out);
+        });
+        return result;
+    }
+
+    /**
+     * @return the value of the result of given call after the call.
+     */
+    private Value getResultValue(Call call,
+                                 IDESolver<Stmt, Function, Var, Value> solver) {
+        Value value = Value.getUndef();
+        for (Stmt returnSite : icfg.getReturnSitesOf(call)) {
+            // if the return site is a confluence, its value also meets
+            // the values from the other predecessors, which is sound
+            value = cp.meetValue(value, solver.getResult(returnSite)
+                    .getOrDefault(call.getResult(), Value.getUndef()));
+        }
+        return value;
+    }
+
+    /**
+     * Effect of a definition statement (except call) on the values:
+     * {@code lhs} receives {@code function(source)}, or
+     * {@code function(NAC)} if {@code source} is null, or UNDEF if
+     * {@code function} is null.
+     */
+    private record Transfer(Var lhs, @Nullable Var source,
+                            @Nullable EdgeFunction<Value> function) {
+    }
+
+    @Nullable
+    private Transfer getTransfer(Stmt stmt) {
+        if (!transfers.containsKey(stmt)) {
+            transfers.put(stmt, computeTransfer(stmt));
+        }
+        return transfers.get(stmt);
+    }
+
+    @Nullable
+    private static Transfer computeTransfer(Stmt stmt) {
+        if (stmt instanceof AssignLiteral assign
+                && assign.getRValue() instanceof IntLiteral i) {
+            return new Transfer(assign.getLValue(), null,
+                    new LinearFunction(0, i.getValue()));
+        } else if (stmt instanceof Copy copy) {
+            Var y = copy.getRValue();
+            return isConst(y) ? evaluate(copy.getLValue(), y)
+                    : new Transfer(copy.getLValue(), y, EdgeIdentity.get());
+        } else if (stmt instanceof Unary unary) {
+            Var y = unary.getRValue().getOperand();
+            if (isConst(y)) {
+                return evaluate(unary.getLValue(), unary.getRValue());
+            } else if (unary.getRValue() instanceof NegExp) {
+                return new Transfer(unary.getLValue(), y,
+                        new LinearFunction(-1, 0));
+            }
+            return new Transfer(unary.getLValue(), null, AllBottom.INSTANCE);
+        } else if (stmt instanceof Binary binary) {
+            BinaryExp exp = binary.getRValue();
+            Var x = binary.getLValue();
+            Var y = exp.getOperand1();
+            Var z = exp.getOperand2();
+            if (isConst(y) && isConst(z)) {
+                return evaluate(x, exp);
+            }
+            if (exp.getOperator() instanceof ArithmeticExp.Op op
+                    && (isConst(y) || isConst(z))) {
+                Var source = isConst(y) ? z : y;
+                int c = isConst(y) ? constOf(y) : constOf(z);
+                switch (op) {
+                    case ADD:
+                        return new Transfer(x, source, new LinearFunction(1, c));
+                    case SUB:
+                        // y - c or c - z
+                        return isConst(z)
+                                ? new Transfer(x, source, new LinearFunction(1, -c))
+                                : new Transfer(x, source, new LinearFunction(-1, c));
+                    case MUL:
+                        return new Transfer(x, source, new LinearFunction(c, 0));
+                    default:
+                        break;
+                }
+            }
+            // non-linear expressions
+            return new Transfer(x, null, AllBottom.INSTANCE);
+        }
+        return null;
+    }
+
+    /**
+     * @return the transfer which assigns the value of constant expression
+     * {@code exp} to {@code lhs}.
+     */
+    private static Transfer evaluate(Var lhs, Exp exp) {
+        Value value = Evaluator.evaluate(exp, new CPFact());
+        if (value.isConstant()) {
+            return new Transfer(lhs, null, new LinearFunction(0, value.getConstant()));
+        } else if (value.isNAC()) {
+            return new Transfer(lhs, null, AllBottom.INSTANCE);
+        } else {
+            return new Transfer(lhs, null, null);
+        }
+    }
+
+    private static boolean isConst(Var var) {
+        return var.isConst() && var.getConstValue() instanceof IntLiteral;
+    }
+
+    private static int constOf(Var var) {
+        return ((IntLiteral) var.getConstValue()).getValue();
+    }
+
+    /**
+     * @return the variables returned to {@code callSite} from {@code exit}.
+     */
+    private Collection<Var> getReturnVars(Stmt callSite, Stmt exit) {
+        for (ICFGEdge<Stmt> edge : icfg.getOutEdgesOf(exit)) {
+            if (edge instanceof ReturnEdge<Stmt> retEdge
+                    && retEdge.getCallSite() == callSite) {
+                return retEdge.getReturnVars();
+            }
+        }
+        return List.of();
+    }
+
+    private class Problem implements IDEProblem<Stmt, Function, Var, Value> {
+
+        @Override
+        public boolean isForward() {
+            return true;
+        }
+
+        @Override
+        public Var zeroValue() {
+            return ZERO;
+        }
+
+        @Override
+        public Set<Stmt> initialSeeds() {
+            return Set.of(icfg.getEntryOf(icfg.entryFunction()));
+        }
+
+        @Override
+        public FlowFunction<Var> getNormalFlowFunction(Stmt curr, Stmt succ) {
+            Transfer transfer = getTransfer(curr);
+            if (transfer == null) {
+                return Set::of;
+            }
+            Var lhs = transfer.lhs();
+            return var -> {
+                if (var == ZERO) {
+                    return transfer.source() == null && transfer.function() != null
+                            ? Set.of(ZERO, lhs) : Set.of(ZERO);
+                } else if (var.equals(transfer.source())) {
+                    return var.equals(lhs) ? Set.of(lhs) : Set.of(var, lhs);
+                } else if (var.equals(lhs)) {
+                    return Set.of();
+                }
+                return Set.of(var);
+            };
+        }
+
+        @Override
+        public FlowFunction<Var> getCallFlowFunction(Stmt callSite, Function callee) {
+            List<Var> args = ((Call) callSite).getCallExp().getArgs();
+            List<Var> params = callee.getIR().getParams();
+            return var -> {
+                Set<Var> result = Sets.newHybridSet();
+                if (var == ZERO) {
+                    result.add(ZERO);
+                }
+                for (int i = 0; i < args.size(); ++i) {
+                    Var arg = args.get(i);
+                    if (var == ZERO ? isConst(arg) : var.equals(arg)) {
+                        result.add(params.get(i));
+                    }
+                }
+                return result;
+            };
+        }
+
+        @Override
+        public FlowFunction<Var> getReturnFlowFunction(
+                Stmt callSite, Function callee, Stmt exit, Stmt returnSite) {
+            Var lhs = ((Call) callSite).getResult();
+            Collection<Var> retVars = getReturnVars(callSite, exit);
+            return var -> {
+                if (var == ZERO) {
+                    return lhs != null && retVars.stream().anyMatch(
+                            LinearConstantPropagation::isConst)
+                            ? Set.of(ZERO, lhs) : Set.of(ZERO);
+                }
+                return lhs != null && retVars.contains(var)
+                        ? Set.of(lhs) : Set.of();
+            };
+        }
+
+        @Override
+        public FlowFunction<Var> getCallToReturnFlowFunction(
+                Stmt callSite, Stmt returnSite) {
+            Var lhs = ((Call) callSite).getResult();
+            return var -> var.equals(lhs) ? Set.of() : Set.of(var);
+        }
+
+        @Override
+        public EdgeFunction<Value> getNormalEdgeFunction(
+                Stmt curr, Var currFact, Stmt succ, Var succFact) {
+            Transfer transfer = getTransfer(curr);
+            return transfer != null && succFact.equals(transfer.lhs())
+                    ? transfer.function() : EdgeIdentity.get();
+        }
+
+        @Override
+        public EdgeFunction<Value> getCallEdgeFunction(
+                Stmt callSite, Var srcFact, Function callee, Var destFact) {
+            if (srcFact == ZERO && destFact != ZERO) {
+                int i = callee.getIR().getParams().indexOf(destFact);
+                Var arg = ((Call) callSite).getCallExp().getArgs().get(i);
+                return new LinearFunction(0, constOf(arg));
+            }
+            return EdgeIdentity.get();
+        }
+
+        @Override
+        public EdgeFunction<Value> getReturnEdgeFunction(
+                Stmt callSite, Function callee, Stmt exit, Var exitFact,
+                Stmt returnSite, Var retFact) {
+            if (exitFact == ZERO && retFact != ZERO) {
+                // meet of all constants returned to the call site
+                return getReturnVars(callSite, exit)
+                        .stream()
+                        .filter(LinearConstantPropagation::isConst)
+                        .<EdgeFunction<Value>>map(v -> new LinearFunction(0, constOf(v)))
+                        .reduce(EdgeFunction::meetWith)
+                        .orElseThrow();
+            }
+            return EdgeIdentity.get();
+        }
+
+        @Override
+        public EdgeFunction<Value> getCallToReturnEdgeFunction(
+                Stmt callSite, Var callFact, Stmt returnSite, Var returnFact) {
+            return EdgeIdentity.get();
+        }
+
+        @Override
+        public Value bottomValue() {
+            return Value.getNAC();
+        }
+
+        @Override
+        public Value meetValue(Value v1, Value v2) {
+            return cp.meetValue(v1, v2);
+        }
+    }
+
+    /**
+     * Edge function {@code λx. a * x + b}. If {@code a} is 0, it is the
+     * constant function {@code λx. b}; otherwise it maps UNDEF and NAC
+     * to themselves. Arithmetic wraps around as 32-bit integers,
+     * consistent with the generated code.
+     */
+    private record LinearFunction(int a, int b) implements EdgeFunction<Value> {
+
+        @Override
+        public Value computeTarget(Value source) {
+            if (a == 0) {
+                return Value.makeConstant(b);
+            } else if (source.isConstant()) {
+                return Value.makeConstant(a * source.getConstant() + b);
+            } else {
+                return source;
+            }
+        }
+
+        @Override
+        public EdgeFunction<Value> composeWith(EdgeFunction<Value> second) {
+            if (second instanceof LinearFunction g) {
+                return new LinearFunction(g.a * a, g.a * b + g.b);
+            } else if (second instanceof AllBottom) {
+                return second;
+            } else {
+                // identity
+                return this;
+            }
+        }
+
+        @Override
+        public EdgeFunction<Value> meetWith(EdgeFunction<Value> other) {
+            if (other.equals(this)
+                    || (other instanceof EdgeIdentity && a == 1 && b == 0)) {
+                return this;
+            }
+            return AllBottom.INSTANCE;
+        }
+    }
+
+    /**
+     * Edge function {@code λx. NAC}.
+     */
+    private enum AllBottom implements EdgeFunction<Value> {
+
+        INSTANCE;
+
+        @Override
+        public Value computeTarget(Value source) {
+            return Value.getNAC();
+        }
+
+        @Override
+        public EdgeFunction<Value> composeWith(EdgeFunction<Value> second) {
+            // a constant function ignores its input
+            return second instanceof LinearFunction g && g.a == 0
+                    ? second : this;
+        }
+
+        @Override
+        public EdgeFunction<Value> meetWith(EdgeFunction<Value> other) {
+            return this;
+        }
+    }
+}
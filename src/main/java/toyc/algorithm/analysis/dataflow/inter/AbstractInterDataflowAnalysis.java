@@ -93,9 +93,25 @@ public abstract class AbstractInterDataflowAnalysis<Function, Node, Fact>
     public DataflowResult<Node, Fact> analyze() {
         icfg = World.get().getResult(ICFGBuilder.ID);
         initialize();
-        solver = new InterSolver<>(this, icfg);
-        DataflowResult<Node, Fact> result = solver.solve();
+        DataflowResult<Node, Fact> result;
+        if (useSummarySolver()) {
+            result = new SummarySolver<>(this, icfg,
+                    getOptions().getInt("max-contexts"),
+                    getOptions().getBoolean("parallel")).solve();
+        } else {
+            solver = new InterSolver<>(this, icfg);
+            result = solver.solve();
+        }
         finish();
         return result;
     }
+
+    /**
+     * @return true if the analysis is configured to use the summary-based
+     * solver, which only supports forward analyses.
+     */
+    private boolean useSummarySolver() {
+        return isForward() && getOptions().has("solver")
+                && getOptions().getString("solver").equals("summary");
+    }
 }
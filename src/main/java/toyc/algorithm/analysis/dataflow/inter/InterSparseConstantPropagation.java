@@ -0,0 +1,266 @@
+package toyc.algorithm.analysis.dataflow.inter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import toyc.World;
+import toyc.algorithm.analysis.ProgramAnalysis;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.CPFact;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.Evaluator;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.Value;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.DefinitionStmt;
+import toyc.ir.stmt.Goto;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.Return;
+import toyc.ir.stmt.Stmt;
+import toyc.language.Function;
+import toyc.language.Program;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Interprocedural sparse conditional constant propagation.
+ * <p>
+ * Each variable has one lattice value, which is the meet of the values
+ * assigned to it by the executable statements, and for parameters, the
+ * values of the arguments of the executable calls. A statement is executable
+ * if it is reached from the entry of a reachable function through feasible
+ * edges, where an {@link If} whose condition is constant has one feasible
+ * edge; a function is reachable if it is the main function, or it has an
+ * executable call. The value of a call is the meet of the values of the
+ * executable returns of its callee.
+ * <p>
+ * Unlike {@link InterConstantPropagation}, which propagates a fact for
+ * every variable through every node of the ICFG, the analysis propagates
+ * the changes of a value only to the statements which use the variable,
+ * and ignores the statements and functions which are never executed.
+ */
+public class InterSparseConstantPropagation extends ProgramAnalysis<SCCPResult> {
+
+    public static final String ID = "inter-sccp";
+
+    private static final Logger logger = LogManager.getLogger(InterSparseConstantPropagation.class);
+
+    private final ConstantPropagation.Analysis cp = new ConstantPropagation.Analysis(null, false);
+
+    private Map<Function, IR> irs;
+
+    private Set<Function> reachable;
+
+    private Set<Stmt> executable;
+
+    private CPFact values;
+
+    private Map<Function, Value> returnValues;
+
+    /**
+     * The IRs containing the statements of the reachable functions.
+     */
+    private Map<Stmt, IR> containers;
+
+    /**
+     * The statements of the reachable functions which use each variable.
+     */
+    private Map<Var, List<Stmt>> uses;
+
+    /**
+     * The executable calls of each function.
+     */
+    private Map<Function, Set<Call>> callSites;
+
+    /**
+     * The executable statements to be visited.
+     */
+    private Queue<Stmt> workList;
+
+    /**
+     * The executable tests whose conditions are UNDEF at the fixed point,
+     * which are assumed to take both branches.
+     */
+    private Set<If> resolvedTests;
+
+    public InterSparseConstantPropagation(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public SCCPResult analyze() {
+        Program program = World.get().getProgram();
+        irs = Maps.newLinkedHashMap();
+        program.allFunctions().forEach(f -> irs.put(f, f.getIR()));
+        reachable = Sets.newSet();
+        executable = Sets.newSet();
+        values = new CPFact();
+        returnValues = Maps.newMap();
+        containers = Maps.newMap();
+        uses = Maps.newMap();
+        callSites = Maps.newMap();
+        workList = new ArrayDeque<>();
+        resolvedTests = Sets.newSet();
+        if (program.hasMainFunction()) {
+            addEntry(program.getMainFunction());
+        } else {
+            // without main function, any function may be called
+            program.allFunctions().forEach(this::addEntry);
+        }
+        do {
+            while (!workList.isEmpty()) {
+                visit(workList.poll());
+            }
+        } while (resolveUndefTests());
+        logger.info("{} of {} functions and {} statements are executable",
+                reachable.size(), irs.size(), executable.size());
+        return new SCCPResult(irs, reachable, executable, values, returnValues);
+    }
+
+    private void addEntry(Function function) {
+        markReachable(function);
+        irs.get(function).getParams().forEach(p -> setValue(p, Value.getNAC()));
+    }
+
+    private void markReachable(Function function) {
+        if (reachable.add(function)) {
+            IR ir = irs.get(function);
+            for (Stmt stmt : ir.getStmts()) {
+                containers.put(stmt, ir);
+                stmt.getUses().forEach(use -> {
+                    if (use instanceof Var var) {
+                        uses.computeIfAbsent(var, v -> new ArrayList<>()).add(stmt);
+                    }
+                });
+            }
+            if (!ir.getStmts().isEmpty()) {
+                markExecutable(ir.getStmt(0));
+            }
+        }
+    }
+
+    private void markExecutable(Stmt stmt) {
+        if (executable.add(stmt)) {
+            workList.add(stmt);
+        }
+    }
+
+    /**
+     * Meets {@code value} into the value of {@code var}, and revisits the
+     * executable statements which use {@code var} if its value changes.
+     */
+    private void setValue(Var var, Value value) {
+        Value old = values.get(var);
+        Value meet = cp.meetValue(old, value);
+        if (!meet.equals(old) && values.update(var, meet)) {
+            for (Stmt use : uses.getOrDefault(var, List.of())) {
+                if (executable.contains(use)) {
+                    workList.add(use);
+                }
+            }
+        }
+    }
+
+    private void visit(Stmt stmt) {
+        IR ir = containers.get(stmt);
+        if (stmt instanceof Call call) {
+            visitCall(call);
+        } else if (stmt instanceof DefinitionStmt<?, ?> def
+                && def.getLValue() instanceof Var lhs) {
+            setValue(lhs, Evaluator.evaluate(def.getRValue(), values));
+        } else if (stmt instanceof Return ret) {
+            if (ret.getValue() != null) {
+                setReturnValue(ir.getFunction(), values.get(ret.getValue()));
+            }
+            return;
+        } else if (stmt instanceof If ifStmt) {
+            visitIf(ifStmt);
+            return;
+        } else if (stmt instanceof Goto gotoStmt) {
+            markExecutable(gotoStmt.getTarget());
+            return;
+        }
+        markNext(ir, stmt);
+    }
+
+    private void visitCall(Call call) {
+        Function callee = call.getCallExp().getFunction();
+        markReachable(callee);
+        callSites.computeIfAbsent(callee, f -> Sets.newHybridSet()).add(call);
+        List<Var> params = irs.get(callee).getParams();
+        List<Var> args = call.getCallExp().getArgs();
+        for (int i = 0; i < args.size(); ++i) {
+            setValue(params.get(i), values.get(args.get(i)));
+        }
+        if (call.getResult() != null) {
+            setValue(call.getResult(), getReturnValue(callee));
+        }
+    }
+
+    private Value getReturnValue(Function function) {
+        return returnValues.getOrDefault(function, Value.getUndef());
+    }
+
+    private void setReturnValue(Function function, Value value) {
+        Value old = getReturnValue(function);
+        Value meet = cp.meetValue(old, value);
+        if (!meet.equals(old)) {
+            returnValues.put(function, meet);
+            for (Call call : callSites.getOrDefault(function, Set.of())) {
+                if (call.getResult() != null) {
+                    setValue(call.getResult(), meet);
+                }
+            }
+        }
+    }
+
+    private void visitIf(If ifStmt) {
+        Value cond = resolvedTests.contains(ifStmt)
+                ? Value.getNAC()
+                : Evaluator.evaluate(ifStmt.getCondition(), values);
+        IR ir = containers.get(ifStmt);
+        if (cond.isNAC()) {
+            markExecutable(ifStmt.getTarget());
+            markNext(ir, ifStmt);
+        } else if (cond.isConstant()) {
+            if (cond.getConstant() != 0) {
+                markExecutable(ifStmt.getTarget());
+            } else {
+                markNext(ir, ifStmt);
+            }
+        }
+    }
+
+    private void markNext(IR ir, Stmt stmt) {
+        int next = stmt.getIndex() + 1;
+        if (next < ir.getStmts().size()) {
+            markExecutable(ir.getStmt(next));
+        }
+    }
+
+    /**
+     * The conditions which are still UNDEF at the fixed point read
+     * variables which are never assigned, thus their values are unknown.
+     *
+     * @return {@code true} if any test is resolved to take both branches.
+     */
+    private boolean resolveUndefTests() {
+        boolean resolved = false;
+        for (Stmt stmt : executable) {
+            if (stmt instanceof If ifStmt && !resolvedTests.contains(ifStmt)
+                    && Evaluator.evaluate(ifStmt.getCondition(), values).isUndef()) {
+                resolvedTests.add(ifStmt);
+                workList.add(ifStmt);
+                resolved = true;
+            }
+        }
+        return resolved;
+    }
+}
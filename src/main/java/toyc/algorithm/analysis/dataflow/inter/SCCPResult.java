@@ -0,0 +1,75 @@
+package toyc.algorithm.analysis.dataflow.inter;
+
+import toyc.algorithm.analysis.dataflow.analysis.constprop.CPFact;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.Value;
+import toyc.ir.IR;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Stmt;
+import toyc.language.Function;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of {@link InterSparseConstantPropagation}.
+ * <p>
+ * The values of the variables hold at all executable statements of their
+ * functions, and are only valid for the IRs which were analyzed.
+ */
+public class SCCPResult {
+
+    private final Map<Function, IR> irs;
+
+    private final Set<Function> reachable;
+
+    private final Set<Stmt> executable;
+
+    private final CPFact values;
+
+    private final Map<Function, Value> returnValues;
+
+    SCCPResult(Map<Function, IR> irs, Set<Function> reachable,
+               Set<Stmt> executable, CPFact values,
+               Map<Function, Value> returnValues) {
+        this.irs = irs;
+        this.reachable = reachable;
+        this.executable = executable;
+        this.values = values;
+        this.returnValues = returnValues;
+    }
+
+    /**
+     * @return {@code true} if {@code ir} is the IR analyzed for its function.
+     */
+    public boolean isAnalyzed(IR ir) {
+        return irs.get(ir.getFunction()) == ir;
+    }
+
+    /**
+     * @return {@code true} if {@code function} may be executed, or
+     * it was not analyzed.
+     */
+    public boolean isReachable(Function function) {
+        return !irs.containsKey(function) || reachable.contains(function);
+    }
+
+    public boolean isExecutable(Stmt stmt) {
+        return executable.contains(stmt);
+    }
+
+    /**
+     * @return the value of {@code var} at the executable statements
+     * of its function.
+     */
+    public Value getValue(Var var) {
+        return values.get(var);
+    }
+
+    /**
+     * @return the meet of the values returned by {@code function},
+     * or UNDEF if it never returns a value.
+     */
+    public Value getReturnValue(Function function) {
+        return returnValues.getOrDefault(function, Value.getUndef());
+    }
+}
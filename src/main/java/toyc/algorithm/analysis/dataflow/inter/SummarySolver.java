@@ -0,0 +1,431 @@
+package toyc.algorithm.analysis.dataflow.inter;
+
+import toyc.algorithm.analysis.dataflow.fact.DataflowResult;
+import toyc.algorithm.analysis.graph.icfg.CallEdge;
+import toyc.algorithm.analysis.graph.icfg.ICFG;
+import toyc.algorithm.analysis.graph.icfg.ICFGEdge;
+import toyc.algorithm.analysis.graph.icfg.ReturnEdge;
+import toyc.util.collection.Maps;
+import toyc.util.collection.SetQueue;
+import toyc.util.collection.Sets;
+import toyc.util.graph.SCC;
+import toyc.util.graph.SimpleGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Summary-based solver for inter-procedural data-flow analysis, i.e.,
+ * the functional approach of Sharir and Pnueli.
+ * <p>
+ * Each function is analyzed separately for every abstract input (the fact
+ * flowing into its entry), and the result at its exit is memoized as the
+ * summary of the function for that input. A call site reuses the summary
+ * of the callee for the input at the call site instead of re-analyzing
+ * the callee body. To bound the work on recursive functions, at most
+ * {@code maxContexts} summaries are kept for each function; further inputs
+ * are merged into a single widened summary.
+ * <p>
+ * Pending analysis work is processed bottom-up over the strongly-connected
+ * components of the call graph: in each round, the solver resolves all
+ * pending work of the lowest call-graph level, so that callee summaries
+ * are stable before callers consume them. Components on the same level
+ * never call each other, thus they are solved in parallel if enabled.
+ * <p>
+ * This solver only supports forward analyses.
+ */
+class SummarySolver<Function, Node, Fact> {
+
+    private final InterDataflowAnalysis<Node, Fact> analysis;
+
+    private final ICFG<Function, Node> icfg;
+
+    private final int maxContexts;
+
+    private final boolean parallel;
+
+    /**
+     * Nodes of each function, in the iteration order of ICFG.
+     */
+    private final Map<Function, List<Node>> nodesOf = Maps.newLinkedHashMap();
+
+    /**
+     * Index of the call-graph SCC containing each function.
+     */
+    private final Map<Function, Integer> sccOf = Maps.newMap();
+
+    /**
+     * Call-graph level of each SCC. Leaf SCCs are on level 0.
+     */
+    private int[] levels;
+
+    private final Map<Function, ContextTable> tables = Maps.newMap();
+
+    private final Set<Context> pending = Sets.newConcurrentSet();
+
+    SummarySolver(InterDataflowAnalysis<Node, Fact> analysis,
+                  ICFG<Function, Node> icfg,
+                  int maxContexts, boolean parallel) {
+        this.analysis = analysis;
+        this.icfg = icfg;
+        this.maxContexts = maxContexts;
+        this.parallel = parallel;
+    }
+
+    DataflowResult<Node, Fact> solve() {
+        initialize();
+        doSolve();
+        return collectResult();
+    }
+
+    private void initialize() {
+        icfg.forEach(node -> nodesOf.computeIfAbsent(
+                icfg.getContainingFunctionOf(node), f -> new ArrayList<>())
+                .add(node));
+        // build call graph over the functions in ICFG, and compute its levels
+        SimpleGraph<Function> callGraph = new SimpleGraph<>();
+        nodesOf.forEach((function, nodes) -> {
+            callGraph.addNode(function);
+            for (Node node : nodes) {
+                if (icfg.isCallSite(node)) {
+                    Function callee = icfg.getCalleeOf(node);
+                    if (nodesOf.containsKey(callee)) {
+                        callGraph.addEdge(function, callee);
+                    }
+                }
+            }
+        });
+        // Tarjan's algorithm gives components in reverse topological order,
+        // i.e., callees come before their callers
+        List<List<Function>> sccs = new SCC<>(callGraph).getComponents();
+        levels = new int[sccs.size()];
+        for (int i = 0; i < sccs.size(); ++i) {
+            for (Function function : sccs.get(i)) {
+                sccOf.put(function, i);
+            }
+            int level = 0;
+            for (Function function : sccs.get(i)) {
+                for (Function callee : callGraph.getSuccsOf(function)) {
+                    int calleeScc = sccOf.get(callee);
+                    if (calleeScc != i) {
+                        level = Math.max(level, levels[calleeScc] + 1);
+                    }
+                }
+            }
+            levels[i] = level;
+        }
+        nodesOf.keySet().forEach(f -> tables.put(f, new ContextTable(f)));
+    }
+
+    private void doSolve() {
+        Function entry = icfg.entryFunction();
+        Node entryNode = icfg.getEntryOf(entry);
+        tables.get(entry).getContext(analysis.newBoundaryFact(entryNode));
+        while (!pending.isEmpty()) {
+            // collect pending contexts on the lowest level, grouped by SCC
+            int level = pending.stream()
+                    .mapToInt(c -> levels[sccOf.get(c.function)])
+                    .min()
+                    .getAsInt();
+            Map<Integer, List<Context>> groups = new TreeMap<>();
+            for (Context context : List.copyOf(pending)) {
+                int scc = sccOf.get(context.function);
+                if (levels[scc] == level) {
+                    pending.remove(context);
+                    groups.computeIfAbsent(scc, s -> new ArrayList<>())
+                            .add(context);
+                }
+            }
+            Stream<Map.Entry<Integer, List<Context>>> tasks =
+                    groups.entrySet().stream();
+            if (parallel) {
+                tasks = tasks.parallel();
+            }
+            tasks.forEach(e -> new SCCTask(e.getKey(), e.getValue()).run());
+        }
+    }
+
+    /**
+     * Merges the facts of all contexts of each function to obtain
+     * the result for each node.
+     */
+    private DataflowResult<Node, Fact> collectResult() {
+        // facts are merged in parallel, so the result maps must be concurrent
+        Map<Node, Fact> inFacts = Maps.newConcurrentMap();
+        Map<Node, Fact> outFacts = Maps.newConcurrentMap();
+        Stream<Function> functions = nodesOf.keySet().stream();
+        if (parallel) {
+            functions = functions.parallel();
+        }
+        functions.forEach(function -> {
+            List<Context> contexts = tables.get(function).getContexts();
+            for (Node node : nodesOf.get(function)) {
+                Fact in = analysis.newInitialFact();
+                Fact out = analysis.newInitialFact();
+                for (Context context : contexts) {
+                    Fact ctxIn = context.inFacts.get(node);
+                    if (ctxIn != null) {
+                        analysis.meetInto(ctxIn, in);
+                    }
+                    Fact ctxOut = context.outFacts.get(node);
+                    if (ctxOut != null) {
+                        analysis.meetInto(ctxOut, out);
+                    }
+                }
+                inFacts.put(node, in);
+                outFacts.put(node, out);
+            }
+        });
+        return new DataflowResult<>(inFacts, outFacts);
+    }
+
+    /**
+     * @return a copy of given fact.
+     */
+    private Fact copyOf(Fact fact) {
+        Fact copy = analysis.newInitialFact();
+        analysis.meetInto(fact, copy);
+        return copy;
+    }
+
+    /**
+     * Analysis context of a function, i.e., a function together with
+     * an abstract input. The exit fact of a context is the summary
+     * of the function for the input.
+     */
+    private final class Context {
+
+        private final Function function;
+
+        /**
+         * The input of this context. It is never modified unless
+         * this context is widened.
+         */
+        private final Fact input;
+
+        private final Map<Node, Fact> inFacts = Maps.newMap();
+
+        private final Map<Node, Fact> outFacts = Maps.newMap();
+
+        /**
+         * Context of the callee at each call site in this context.
+         */
+        private final Map<Node, Context> calleeContexts = Maps.newMap();
+
+        /**
+         * Nodes that need to be (re-)analyzed in this context.
+         */
+        private final Set<Node> dirtyNodes = Sets.newConcurrentSet();
+
+        /**
+         * Contexts that use the summary of this context, and the return
+         * sites in them which are affected by the summary.
+         */
+        private final Map<Context, Set<Node>> dependents = Maps.newConcurrentMap();
+
+        private Context(Function function, Fact input) {
+            this.function = function;
+            this.input = input;
+            dirtyNodes.addAll(nodesOf.get(function));
+        }
+
+        private Fact getSummary() {
+            return outFacts.get(icfg.getExitOf(function));
+        }
+
+        private void addDependent(Context caller, Node returnSite) {
+            dependents.computeIfAbsent(caller, c -> Sets.newConcurrentSet())
+                    .add(returnSite);
+        }
+    }
+
+    /**
+     * Memoized contexts of a function, which may be accessed by
+     * multiple callers in parallel.
+     */
+    private final class ContextTable {
+
+        private final Function function;
+
+        private final Map<Fact, Context> contexts = Maps.newLinkedHashMap();
+
+        private Context widened;
+
+        private ContextTable(Function function) {
+            this.function = function;
+        }
+
+        /**
+         * @return the context for given input. If the context is new or
+         * its input changes, it is added to the pending contexts.
+         */
+        private synchronized Context getContext(Fact input) {
+            Context context = contexts.get(input);
+            if (context != null) {
+                return context;
+            }
+            if (contexts.size() < maxContexts) {
+                context = new Context(function, input);
+                contexts.put(input, context);
+                pending.add(context);
+                return context;
+            }
+            if (widened == null) {
+                widened = new Context(function, copyOf(input));
+                pending.add(widened);
+            } else {
+                Fact old = copyOf(widened.input);
+                analysis.meetInto(input, widened.input);
+                if (!old.equals(widened.input)) {
+                    widened.dirtyNodes.add(icfg.getEntryOf(function));
+                    pending.add(widened);
+                }
+            }
+            return widened;
+        }
+
+        private synchronized List<Context> getContexts() {
+            List<Context> result = new ArrayList<>(contexts.values());
+            if (widened != null) {
+                result.add(widened);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Solves the pending contexts of an SCC of the call graph to fixpoint.
+     */
+    private final class SCCTask {
+
+        private final int scc;
+
+        private final Queue<Context> workList = new SetQueue<>();
+
+        private SCCTask(int scc, List<Context> contexts) {
+            this.scc = scc;
+            workList.addAll(contexts);
+        }
+
+        private void run() {
+            while (!workList.isEmpty()) {
+                analyzeContext(workList.poll());
+            }
+        }
+
+        /**
+         * Schedules given context, which is analyzed in this task
+         * if it belongs to the same SCC, otherwise in a later round.
+         */
+        private void schedule(Context context) {
+            if (sccOf.get(context.function) == scc) {
+                workList.add(context);
+            } else {
+                pending.add(context);
+            }
+        }
+
+        private void analyzeContext(Context context) {
+            Node entry = icfg.getEntryOf(context.function);
+            Node exit = icfg.getExitOf(context.function);
+            Queue<Node> nodes = new SetQueue<>();
+            nodesOf.get(context.function).stream()
+                    .filter(context.dirtyNodes::remove)
+                    .forEach(nodes::add);
+            while (!nodes.isEmpty()) {
+                Node node = nodes.poll();
+                // meet incoming facts
+                Fact in = context.inFacts.computeIfAbsent(node,
+                        n -> analysis.newInitialFact());
+                if (node.equals(entry)) {
+                    analysis.meetInto(context.input, in);
+                }
+                for (ICFGEdge<Node> inEdge : icfg.getInEdgesOf(node)) {
+                    Fact predOut = getPredOut(context, inEdge);
+                    if (predOut != null) {
+                        analysis.meetInto(
+                                analysis.transferEdge(inEdge, predOut), in);
+                    }
+                }
+                Fact out = context.outFacts.computeIfAbsent(node,
+                        n -> analysis.newInitialFact());
+                boolean changed = analysis.transferNode(node, in, out);
+                if (icfg.isCallSite(node)) {
+                    changed |= processCallSite(context, node, out);
+                }
+                if (changed) {
+                    for (ICFGEdge<Node> outEdge : icfg.getOutEdgesOf(node)) {
+                        if (!(outEdge instanceof CallEdge)
+                                && !(outEdge instanceof ReturnEdge)) {
+                            nodes.add(outEdge.target());
+                        }
+                    }
+                    if (node.equals(exit)) {
+                        // the summary changed, notify its users
+                        context.dependents.forEach((caller, returnSites) -> {
+                            caller.dirtyNodes.addAll(returnSites);
+                            schedule(caller);
+                        });
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the fact flowing from the source of given edge in given
+         * context, or null if the fact is not available yet.
+         */
+        private Fact getPredOut(Context context, ICFGEdge<Node> inEdge) {
+            if (inEdge instanceof CallEdge) {
+                // facts from callers are covered by the input of context
+                return null;
+            } else if (inEdge instanceof ReturnEdge<Node> returnEdge) {
+                Context callee = context.calleeContexts.get(
+                        returnEdge.getCallSite());
+                if (callee == null) {
+                    return null;
+                }
+                callee.addDependent(context, inEdge.target());
+                return callee.getSummary();
+            } else {
+                return context.outFacts.get(inEdge.source());
+            }
+        }
+
+        /**
+         * Computes the callee context at given call site.
+         *
+         * @return true if the callee context changed.
+         */
+        private boolean processCallSite(Context context, Node callSite,
+                                        Fact callSiteOut) {
+            boolean changed = false;
+            for (ICFGEdge<Node> outEdge : icfg.getOutEdgesOf(callSite)) {
+                if (outEdge instanceof CallEdge<Node> callEdge) {
+                    Fact calleeInput = copyOf(
+                            analysis.transferEdge(callEdge, callSiteOut));
+                    Function callee = icfg.getCalleeOf(callSite);
+                    Context calleeContext = tables.get(callee)
+                            .getContext(calleeInput);
+                    if (context.calleeContexts.put(callSite, calleeContext)
+                            != calleeContext) {
+                        changed = true;
+                    }
+                    if (sccOf.get(callee) == scc) {
+                        // pending contexts of the same SCC are solved
+                        // by this task
+                        if (pending.remove(calleeContext)) {
+                            workList.add(calleeContext);
+                        }
+                    }
+                }
+            }
+            return changed;
+        }
+    }
+}
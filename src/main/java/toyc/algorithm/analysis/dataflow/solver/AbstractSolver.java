@@ -6,6 +6,8 @@ import toyc.algorithm.analysis.graph.cfg.CFG;
 import toyc.algorithm.analysis.graph.cfg.CFGNodeIndexer;
 import toyc.util.collection.IndexMap;
 
+import java.util.Collection;
+
 /**
  * Provides common functionalities for {@link Solver}.
  *
@@ -21,6 +23,13 @@ abstract class AbstractSolver<Node, Fact> implements Solver<Node, Fact> {
         return result;
     }
 
+    @Override
+    public DataflowResult<Node, Fact> solve(DataflowAnalysis<Node, Fact> analysis,
+                                            DataflowResult<Node, Fact> previous,
+                                            Collection<Node> changedNodes) {
+        return new IncrementalUpdater<>(analysis, previous).update(changedNodes);
+    }
+
     /**
      * Creates and initializes a new data-flow result for given CFG.
      *
@@ -0,0 +1,122 @@
+package toyc.algorithm.analysis.dataflow.solver;
+
+import toyc.algorithm.analysis.dataflow.analysis.DataflowAnalysis;
+import toyc.algorithm.analysis.dataflow.fact.DataflowResult;
+import toyc.util.collection.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Result of {@link IncrementalUpdater}, which holds the facts reused from
+ * the previous result as they are, and adapts them to the current CFG by
+ * {@link DataflowAnalysis#adaptFact} when they are first queried.
+ * Thus, an update only adapts the facts of the dirty nodes and of the
+ * nodes queried by the clients, instead of the facts of all nodes.
+ *
+ * @param <Node> type of CFG nodes
+ * @param <Fact> type of data-flow facts
+ */
+class IncrementalResult<Node, Fact> extends DataflowResult<Node, Fact> {
+
+    private final DataflowAnalysis<Node, Fact> analysis;
+
+    /**
+     * Reused facts which have not been adapted, keyed by node identity,
+     * as the nodes may have been re-indexed.
+     */
+    private final Map<Node, Fact> reusedInFacts = Maps.newMap();
+
+    private final Map<Node, Fact> reusedOutFacts = Maps.newMap();
+
+    IncrementalResult(DataflowAnalysis<Node, Fact> analysis,
+                      Map<Node, Fact> inFacts, Map<Node, Fact> outFacts) {
+        super(inFacts, outFacts);
+        this.analysis = analysis;
+    }
+
+    void reuseInFact(Node node, Fact fact) {
+        reusedInFacts.put(node, fact);
+    }
+
+    void reuseOutFact(Node node, Fact fact) {
+        reusedOutFacts.put(node, fact);
+    }
+
+    /**
+     * @return {@code true} if given node has a flowing-in fact,
+     * without adapting it.
+     */
+    boolean hasInFact(Node node) {
+        return reusedInFacts.containsKey(node) || super.getInFact(node) != null;
+    }
+
+    /**
+     * @return {@code true} if given node has a flowing-out fact,
+     * without adapting it.
+     */
+    boolean hasOutFact(Node node) {
+        return reusedOutFacts.containsKey(node) || super.getOutFact(node) != null;
+    }
+
+    @Override
+    public Fact getInFact(Node node) {
+        Fact reused = reusedInFacts.remove(node);
+        if (reused != null) {
+            super.setInFact(node, analysis.adaptFact(reused));
+        }
+        return super.getInFact(node);
+    }
+
+    @Override
+    public void setInFact(Node node, Fact fact) {
+        reusedInFacts.remove(node);
+        super.setInFact(node, fact);
+    }
+
+    @Override
+    public Fact getOutFact(Node node) {
+        Fact reused = reusedOutFacts.remove(node);
+        if (reused != null) {
+            super.setOutFact(node, analysis.adaptFact(reused));
+        }
+        return super.getOutFact(node);
+    }
+
+    @Override
+    public void setOutFact(Node node, Fact fact) {
+        reusedOutFacts.remove(node);
+        super.setOutFact(node, fact);
+    }
+
+    @Override
+    public Map<Node, Fact> getInFacts() {
+        List.copyOf(reusedInFacts.keySet()).forEach(this::getInFact);
+        return super.getInFacts();
+    }
+
+    @Override
+    public Map<Node, Fact> getOutFacts() {
+        List.copyOf(reusedOutFacts.keySet()).forEach(this::getOutFact);
+        return super.getOutFacts();
+    }
+
+    /**
+     * Iterates the flowing-in facts without adapting them. This is used
+     * when this result is updated again, as facts can be adapted from any
+     * earlier version of the CFG.
+     */
+    void forEachInFact(BiConsumer<Node, Fact> action) {
+        super.getInFacts().forEach(action);
+        reusedInFacts.forEach(action);
+    }
+
+    /**
+     * Iterates the flowing-out facts without adapting them.
+     */
+    void forEachOutFact(BiConsumer<Node, Fact> action) {
+        super.getOutFacts().forEach(action);
+        reusedOutFacts.forEach(action);
+    }
+}
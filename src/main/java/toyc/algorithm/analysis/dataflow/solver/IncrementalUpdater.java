@@ -0,0 +1,256 @@
+package toyc.algorithm.analysis.dataflow.solver;
+
+import toyc.algorithm.analysis.dataflow.analysis.DataflowAnalysis;
+import toyc.algorithm.analysis.dataflow.fact.DataflowResult;
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGEdge;
+import toyc.algorithm.analysis.graph.cfg.CFGNodeIndexer;
+import toyc.util.collection.IndexMap;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Updates the result of a data-flow analysis after some nodes of the CFG
+ * changed, by re-solving only the part of the CFG affected by the changes.
+ * <p>
+ * Changed nodes and their neighbors are <i>dirty</i>: their facts are reset
+ * to the initial fact and recomputed. The other nodes are <i>clean</i> and
+ * keep their previous facts, which stay valid as long as the outgoing facts
+ * of their predecessors (in the direction of the analysis) do not change.
+ * When the recomputed outgoing fact of a node differs from its previous one,
+ * the clean successors of the node become dirty, so that the update stops
+ * as soon as the changes are absorbed.
+ * <p>
+ * Making a loop header dirty also resets the nodes between the header and
+ * its back edges, so that previous facts cannot sustain themselves around
+ * the loop. Thus, the result is the same as solving from scratch, provided
+ * that the changed nodes include every node whose predecessors or successors
+ * changed (including the nodes which lost edges from removed or replaced
+ * nodes, as recorded by {@link toyc.algorithm.optimization.IROperation}),
+ * and that node indexes follow the nesting of loops, as for the IR of
+ * structured programs.
+ * <p>
+ * An update still takes time linear in the number of nodes, to match the
+ * nodes of the previous result with the current CFG (besides building the
+ * CFG itself). The previous facts are reused as they are, and adapted by
+ * {@link DataflowAnalysis#adaptFact} only for the dirty nodes during the
+ * update and for the other nodes when they are queried, see
+ * {@link IncrementalResult}. As adapting a fact may take time linear in
+ * its size, e.g., for facts backed by bit sets over re-indexed elements,
+ * querying the facts of all nodes afterwards costs as much as adapting
+ * them eagerly.
+ *
+ * @param <Node> type of CFG nodes
+ * @param <Fact> type of data-flow facts
+ */
+class IncrementalUpdater<Node, Fact> {
+
+    private final DataflowAnalysis<Node, Fact> analysis;
+
+    private final CFG<Node> cfg;
+
+    private final boolean forward;
+
+    private final DataflowResult<Node, Fact> previous;
+
+    private final IncrementalResult<Node, Fact> result;
+
+    /**
+     * Outgoing facts of dirty nodes before they were reset.
+     */
+    private final Map<Node, Fact> oldOutFacts = Maps.newMap();
+
+    private final Set<Node> dirtyNodes = Sets.newSet();
+
+    private final Set<Node> visitedNodes = Sets.newSet();
+
+    private final Set<Node> resetLoops = Sets.newSet();
+
+    private final NavigableSet<Node> workList;
+
+    private final int nodeCount;
+
+    IncrementalUpdater(DataflowAnalysis<Node, Fact> analysis,
+                       DataflowResult<Node, Fact> previous) {
+        this.analysis = analysis;
+        this.cfg = analysis.getCFG();
+        this.forward = analysis.isForward();
+        this.previous = previous;
+        this.nodeCount = cfg.getNumberOfNodes();
+        var indexer = new CFGNodeIndexer<>(cfg);
+        this.result = new IncrementalResult<>(analysis,
+                new IndexMap<>(indexer, nodeCount),
+                new IndexMap<>(indexer, nodeCount));
+        this.workList = Sets.newOrderedSet(forward
+                ? Comparator.comparingInt(cfg::getIndex)
+                : Comparator.comparingInt(n -> -cfg.getIndex(n)));
+    }
+
+    DataflowResult<Node, Fact> update(Collection<Node> changedNodes) {
+        List<Node> seeds = initialize();
+        for (Node node : changedNodes) {
+            // skip the nodes which have been removed
+            if (contains(node)) {
+                seeds.add(node);
+                seeds.addAll(cfg.getPredsOf(node));
+                seeds.addAll(cfg.getSuccsOf(node));
+            }
+        }
+        seeds.forEach(this::markDirty);
+        solve();
+        return result;
+    }
+
+    /**
+     * Initializes the boundary node and reuses the previous facts.
+     *
+     * @return the nodes which have no previous facts.
+     */
+    private List<Node> initialize() {
+        Node boundary = forward ? cfg.getEntry() : cfg.getExit();
+        Fact boundaryFact = analysis.newBoundaryFact();
+        result.setInFact(boundary, boundaryFact);
+        result.setOutFact(boundary, boundaryFact);
+        // the nodes have been re-indexed since the previous result was
+        // computed, thus it is iterated instead of queried by nodes
+        BiConsumer<Node, Fact> reuseInFact = (node, fact) -> {
+            if (contains(node) && !isBoundary(node)) {
+                result.reuseInFact(node, fact);
+            }
+        };
+        BiConsumer<Node, Fact> reuseOutFact = (node, fact) -> {
+            if (contains(node) && !isBoundary(node)) {
+                result.reuseOutFact(node, fact);
+            }
+        };
+        if (previous instanceof IncrementalResult<Node, Fact> incremental) {
+            // avoid adapting the facts which the previous update reused
+            incremental.forEachInFact(reuseInFact);
+            incremental.forEachOutFact(reuseOutFact);
+        } else {
+            previous.getInFacts().forEach(reuseInFact);
+            previous.getOutFacts().forEach(reuseOutFact);
+        }
+        List<Node> newNodes = new ArrayList<>();
+        cfg.forEach(node -> {
+            if (!result.hasInFact(node) || !result.hasOutFact(node)) {
+                newNodes.add(node);
+            }
+        });
+        return newNodes;
+    }
+
+    /**
+     * @return {@code true} if given node is in the current CFG.
+     */
+    private boolean contains(Node node) {
+        int index = cfg.getIndex(node);
+        return index >= 0 && index < nodeCount && cfg.getNode(index) == node;
+    }
+
+    private void solve() {
+        while (!workList.isEmpty()) {
+            Node node = workList.pollFirst();
+            // meet incoming facts
+            Fact input = analysis.newInitialFact();
+            for (CFGEdge<Node> edge : getInEdgesOf(node)) {
+                Fact fact = getOutFact(getSource(edge));
+                if (analysis.needTransferEdge(edge)) {
+                    fact = analysis.transferEdge(edge, fact);
+                }
+                analysis.meetInto(fact, input);
+            }
+            setInFact(node, input);
+            // apply node transfer function
+            boolean changed = analysis.transferNode(node,
+                    result.getInFact(node), result.getOutFact(node));
+            boolean firstVisit = visitedNodes.add(node);
+            if (changed || firstVisit) {
+                boolean differs = !getOutFact(node).equals(oldOutFacts.get(node));
+                for (Node succ : getSuccsOf(node)) {
+                    if (dirtyNodes.contains(succ)) {
+                        workList.add(succ);
+                    } else if (differs) {
+                        markDirty(succ);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes given node dirty. If the node is a loop header, the nodes
+     * of the loop are also made dirty.
+     */
+    private void markDirty(Node node) {
+        if (isBoundary(node) || !dirtyNodes.add(node)) {
+            return;
+        }
+        reset(node);
+        int index = cfg.getIndex(node);
+        for (CFGEdge<Node> edge : getInEdgesOf(node)) {
+            int sourceIndex = cfg.getIndex(getSource(edge));
+            boolean isBackEdge = forward
+                    ? sourceIndex >= index : sourceIndex <= index;
+            if (isBackEdge && resetLoops.add(node)) {
+                for (int i = Math.min(index, sourceIndex);
+                     i <= Math.max(index, sourceIndex); ++i) {
+                    Node loopNode = cfg.getNode(i);
+                    if (!isBoundary(loopNode)) {
+                        dirtyNodes.add(loopNode);
+                        reset(loopNode);
+                    }
+                }
+            }
+        }
+    }
+
+    private void reset(Node node) {
+        if (!oldOutFacts.containsKey(node)) {
+            oldOutFacts.put(node, getOutFact(node));
+        }
+        result.setInFact(node, analysis.newInitialFact());
+        result.setOutFact(node, analysis.newInitialFact());
+        visitedNodes.remove(node);
+        workList.add(node);
+    }
+
+    private boolean isBoundary(Node node) {
+        return forward ? cfg.isEntry(node) : cfg.isExit(node);
+    }
+
+    // ---------- direction-independent accessors ----------
+
+    private Set<CFGEdge<Node>> getInEdgesOf(Node node) {
+        return forward ? cfg.getInEdgesOf(node) : cfg.getOutEdgesOf(node);
+    }
+
+    private Node getSource(CFGEdge<Node> edge) {
+        return forward ? edge.source() : edge.target();
+    }
+
+    private Set<Node> getSuccsOf(Node node) {
+        return forward ? cfg.getSuccsOf(node) : cfg.getPredsOf(node);
+    }
+
+    private void setInFact(Node node, Fact fact) {
+        if (forward) {
+            result.setInFact(node, fact);
+        } else {
+            result.setOutFact(node, fact);
+        }
+    }
+
+    private Fact getOutFact(Node node) {
+        return forward ? result.getOutFact(node) : result.getInFact(node);
+    }
+}
@@ -3,6 +3,8 @@ package toyc.algorithm.analysis.dataflow.solver;
 import toyc.algorithm.analysis.dataflow.analysis.DataflowAnalysis;
 import toyc.algorithm.analysis.dataflow.fact.DataflowResult;
 
+import java.util.Collection;
+
 /**
  * Interface of data-flow analysis solver.
  *
@@ -31,4 +33,19 @@ public interface Solver<Node, Fact> {
      * @return the data-flow analysis result
      */
     DataflowResult<Node, Fact> solve(DataflowAnalysis<Node, Fact> analysis);
+
+    /**
+     * Solves the given analysis problem by updating {@code previous},
+     * the result of the analysis on a previous version of the CFG.
+     * Facts of the nodes which are not affected by {@code changedNodes}
+     * are reused.
+     *
+     * @param changedNodes the nodes whose facts may differ from the ones
+     *                     in {@code previous}. Nodes which are not in
+     *                     the current CFG are ignored.
+     * @return the data-flow analysis result
+     */
+    DataflowResult<Node, Fact> solve(DataflowAnalysis<Node, Fact> analysis,
+                                     DataflowResult<Node, Fact> previous,
+                                     Collection<Node> changedNodes);
 }
@@ -1,5 +1,6 @@
 package toyc.algorithm.analysis.deadcode;
 
+import toyc.World;
 import toyc.algorithm.analysis.FunctionAnalysis;
 import toyc.algorithm.analysis.dataflow.analysis.LiveVariable;
 import toyc.algorithm.analysis.dataflow.analysis.constprop.CPFact;
@@ -11,6 +12,8 @@ import toyc.algorithm.analysis.dataflow.fact.SetFact;
 import toyc.algorithm.analysis.graph.cfg.CFG;
 import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
 import toyc.algorithm.analysis.graph.cfg.CFGEdge;
+import toyc.algorithm.analysis.sideeffect.SideEffectAnalysis;
+import toyc.algorithm.analysis.sideeffect.SideEffects;
 import toyc.config.AlgorithmConfig;
 import toyc.ir.IR;
 import toyc.ir.exp.*;
@@ -127,12 +130,19 @@ public class DeadCodeDetection extends FunctionAnalysis<Map<Stmt,
 
     /**
      * @return true if given RValue has no side effect, otherwise false.
+     * A call has no side effect only if {@link SideEffectAnalysis} has
+     * found its callee to be pure.
      */
-    private static boolean hasNoSideEffect(RValue rvalue) {
+    public static boolean hasNoSideEffect(RValue rvalue) {
         if (rvalue instanceof ArithmeticExp) {
             ArithmeticExp.Op op = ((ArithmeticExp) rvalue).getOperator();
             // may trigger DivideByZeroException
             return op != ArithmeticExp.Op.DIV && op != ArithmeticExp.Op.REM;
+        } else if (rvalue instanceof CallExp callExp) {
+            // the callee may trap, diverge or have other effects
+            return World.get().hasResult(SideEffectAnalysis.ID)
+                    && World.get().<SideEffects>getResult(SideEffectAnalysis.ID)
+                    .isPure(callExp.getFunction());
         }
         return true;
     }
@@ -16,6 +16,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -28,6 +29,16 @@ public final class CallGraphs {
     private CallGraphs() {
     }
 
+    /**
+     * @return the functions reachable from the main function of the current
+     * program. The call graph is built again instead of taking the result of
+     * {@link CallGraphBuilder}, which is stale if optimizations added
+     * functions (e.g., clones) or redirected calls after it was built.
+     */
+    public static List<Function> getReachableFunctions() {
+        return new ToyCCallGraphBuilder().build().reachableFunctions().toList();
+    }
+
     /**
      * Dumps call graph to dot file.
      */
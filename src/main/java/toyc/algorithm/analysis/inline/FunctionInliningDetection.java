@@ -1,29 +1,156 @@
 package toyc.algorithm.analysis.inline;
 
+import toyc.World;
 import toyc.algorithm.analysis.FunctionAnalysis;
+import toyc.algorithm.analysis.loop.LoopDetection;
+import toyc.algorithm.analysis.loop.LoopInfo;
 import toyc.config.AlgorithmConfig;
 import toyc.ir.IR;
+import toyc.ir.exp.Var;
 import toyc.ir.stmt.Call;
 import toyc.language.Function;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+import toyc.util.graph.SCC;
+import toyc.util.graph.SimpleGraph;
 
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import static java.util.stream.Collectors.toSet;
-
+/**
+ * Selects the calls to inline by a cost model.
+ * <p>
+ * The functions are visited bottom-up in the call graph, i.e., callees
+ * before their callers, so that the size of a callee includes the calls
+ * inlined into it. Calls within a strongly-connected component of the
+ * call graph (i.e., recursive calls) are never inlined.
+ * <p>
+ * A call is inlined if the size of its callee is at most
+ * {@code threshold}, which is increased by {@code const-arg-bonus} for
+ * each constant argument, and multiplied by {@code loop-factor} for each
+ * loop containing the call. Calls in deeper loops and to smaller callees
+ * are considered first. Each caller may grow by {@code caller-growth}
+ * percent (and at least by {@code threshold} statements), and the whole
+ * program by {@code program-growth} percent.
+ */
 public class FunctionInliningDetection extends FunctionAnalysis<Set<Call>>
 {
     public static final String ID = "func-inline";
 
+    /**
+     * The maximum loop depth which increases the threshold.
+     */
+    private static final int MAX_LOOP_BONUS_DEPTH = 3;
+
+    private final int threshold;
+
+    private final int constArgBonus;
+
+    private final int loopFactor;
+
+    private final int callerGrowth;
+
+    private final int programGrowth;
+
+    /**
+     * The calls to inline in each function, computed for the whole
+     * program on the first function analyzed.
+     */
+    private Map<Function, Set<Call>> decisions;
+
     public FunctionInliningDetection(AlgorithmConfig config) {
         super(config);
+        threshold = getOptions().getInt("threshold");
+        constArgBonus = getOptions().getInt("const-arg-bonus");
+        loopFactor = getOptions().getInt("loop-factor");
+        callerGrowth = getOptions().getInt("caller-growth");
+        programGrowth = getOptions().getInt("program-growth");
     }
 
     @Override
     public Set<Call> analyze(IR ir) {
-        Function function = ir.getFunction();
-        // For now, we regard all calls that are not self-recursive as candidates for inlining.
-        return ir.calls()
-                .filter(call -> !call.getCallExp().getFunction().equals(function))
-                .collect(toSet());
+        if (decisions == null) {
+            decisions = decide();
+        }
+        return decisions.getOrDefault(ir.getFunction(), Set.of());
+    }
+
+    private Map<Function, Set<Call>> decide() {
+        SimpleGraph<Function> callGraph = new SimpleGraph<>();
+        World.get().getProgram().allFunctions().forEach(function -> {
+            callGraph.addNode(function);
+            function.getIR().calls().forEach(call ->
+                    callGraph.addEdge(function, call.getCallExp().getFunction()));
+        });
+        // the components are in reverse topological order, i.e., bottom-up
+        List<List<Function>> components = new SCC<>(callGraph).getComponents();
+        Map<Function, Integer> componentIds = Maps.newMap();
+        for (int i = 0; i < components.size(); ++i) {
+            for (Function function : components.get(i)) {
+                componentIds.put(function, i);
+            }
+        }
+        // the sizes of the functions after inlining
+        Map<Function, Integer> sizes = Maps.newMap();
+        long programSize = 0;
+        for (Function function : callGraph) {
+            int size = function.getIR().getStmts().size();
+            sizes.put(function, size);
+            programSize += size;
+        }
+        long programLimit = Math.max(programSize * (100 + programGrowth) / 100,
+                programSize + threshold);
+        Map<Function, Set<Call>> result = Maps.newMap();
+        for (List<Function> component : components) {
+            for (Function caller : component) {
+                IR ir = caller.getIR();
+                int size = sizes.get(caller);
+                long callerLimit = Math.max((long) size * (100 + callerGrowth) / 100,
+                        size + threshold);
+                LoopInfo loops = ir.hasResult(LoopDetection.ID)
+                        ? ir.getResult(LoopDetection.ID) : null;
+                List<Call> candidates = ir.calls()
+                        .filter(call -> !componentIds.get(call.getCallExp().getFunction())
+                                .equals(componentIds.get(caller)))
+                        .sorted(Comparator.<Call>comparingInt(call -> -getLoopDepth(loops, call))
+                                .thenComparingInt(call -> sizes.get(call.getCallExp().getFunction())))
+                        .toList();
+                Set<Call> inlined = Sets.newHybridSet();
+                for (Call call : candidates) {
+                    // the call is replaced by the callee, and the arguments
+                    // are assigned to the parameters
+                    int calleeSize = sizes.get(call.getCallExp().getFunction());
+                    int growth = calleeSize + call.getCallExp().getArgs().size() - 1;
+                    if (isProfitable(call, calleeSize, getLoopDepth(loops, call))
+                            && size + growth <= callerLimit
+                            && programSize + growth <= programLimit) {
+                        inlined.add(call);
+                        size += growth;
+                        programSize += growth;
+                    }
+                }
+                sizes.put(caller, size);
+                result.put(caller, inlined);
+            }
+        }
+        return result;
+    }
+
+    private boolean isProfitable(Call call, int calleeSize, int loopDepth) {
+        long limit = threshold + (long) constArgBonus * call.getCallExp()
+                .getArgs()
+                .stream()
+                .filter(Var::isConst)
+                .count();
+        for (int i = 0; i < Math.min(loopDepth, MAX_LOOP_BONUS_DEPTH); ++i) {
+            limit *= loopFactor;
+        }
+        return calleeSize <= limit;
+    }
+
+    private static int getLoopDepth(LoopInfo loops, Call call) {
+        return loops == null ? 0 : loops.getLoopDepth(call);
     }
 }
@@ -0,0 +1,223 @@
+package toyc.algorithm.analysis.loop;
+
+import toyc.ir.exp.Var;
+import toyc.util.collection.Maps;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * An add-recurrence {@code {a0, +, a1, +, ..., +, an}} of a loop, whose
+ * value in iteration {@code k} (counted from 0) is the sum of
+ * {@code aj * C(k, j)}, thus the value starts from {@code a0} and is
+ * increased by {@code {a1, +, ..., +, an}} in each iteration.
+ * <p>
+ * The operands are linear combinations of loop-invariant variables, and
+ * all computations wrap around in 32 bits as the statements of the IR.
+ *
+ * @param operands the operands, without trailing zeros
+ */
+public record AddRecurrence(List<Linear> operands) {
+
+    /**
+     * The maximum degree of the recurrences, whose values can be computed
+     * from the trip count without overflow in intermediate results.
+     */
+    public static final int MAX_DEGREE = 2;
+
+    public AddRecurrence {
+        List<Linear> trimmed = new ArrayList<>(operands);
+        while (trimmed.size() > 1 && trimmed.getLast().isZero()) {
+            trimmed.removeLast();
+        }
+        operands = Collections.unmodifiableList(trimmed);
+    }
+
+    public static AddRecurrence of(Linear value) {
+        return new AddRecurrence(List.of(value));
+    }
+
+    /**
+     * @return the degree of the polynomial of this recurrence, which is
+     * 0 for loop-invariant values.
+     */
+    public int degree() {
+        return operands.size() - 1;
+    }
+
+    public Linear getOperand(int i) {
+        return i < operands.size() ? operands.get(i) : Linear.ZERO;
+    }
+
+    public AddRecurrence add(AddRecurrence other) {
+        List<Linear> result = new ArrayList<>();
+        for (int i = 0; i <= Math.max(degree(), other.degree()); ++i) {
+            result.add(getOperand(i).add(other.getOperand(i)));
+        }
+        return new AddRecurrence(result);
+    }
+
+    public AddRecurrence scale(int factor) {
+        return new AddRecurrence(operands.stream()
+                .map(operand -> operand.scale(factor))
+                .toList());
+    }
+
+    /**
+     * @return the product of this and {@code other}, or {@code null} if
+     * it is not an add-recurrence of linear combinations, i.e., unless one
+     * of the two is loop-invariant and one of the two is constant.
+     */
+    @Nullable
+    public AddRecurrence mul(AddRecurrence other) {
+        if (other.degree() > 0) {
+            return degree() == 0 ? other.mul(this) : null;
+        }
+        Linear factor = other.getOperand(0);
+        List<Linear> result = new ArrayList<>();
+        for (Linear operand : operands) {
+            Linear product = operand.mul(factor);
+            if (product == null) {
+                return null;
+            }
+            result.add(product);
+        }
+        return new AddRecurrence(result);
+    }
+
+    /**
+     * @return the recurrence which has the value of this recurrence in
+     * the next iteration, i.e., {@code {a0 + a1, +, a1 + a2, +, ..., +, an}}.
+     */
+    public AddRecurrence shift() {
+        List<Linear> result = new ArrayList<>();
+        for (int i = 0; i <= degree(); ++i) {
+            result.add(getOperand(i).add(getOperand(i + 1)));
+        }
+        return new AddRecurrence(result);
+    }
+
+    /**
+     * @return the recurrence which starts from {@code start} and is
+     * increased by this recurrence in each iteration, or {@code null} if
+     * its degree exceeds {@link #MAX_DEGREE}.
+     */
+    @Nullable
+    public AddRecurrence accumulate(Linear start) {
+        if (degree() + 1 > MAX_DEGREE) {
+            return null;
+        }
+        List<Linear> result = new ArrayList<>();
+        result.add(start);
+        result.addAll(operands);
+        return new AddRecurrence(result);
+    }
+
+    /**
+     * @return the value of this recurrence in iteration {@code k},
+     * where {@code 0 <= k}.
+     */
+    public Linear evaluate(int k) {
+        Linear value = Linear.ZERO;
+        long binomial = 1;
+        for (int j = 0; j <= degree(); ++j) {
+            value = value.add(operands.get(j).scale((int) binomial));
+            // C(k, j + 1) = C(k, j) * (k - j) / (j + 1), which is exact
+            // in long for j < MAX_DEGREE
+            if (j < degree()) {
+                binomial = binomial * (k - j) / (j + 1);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        return operands.stream()
+                .map(Linear::toString)
+                .collect(Collectors.joining(", +, ", "{", "}"));
+    }
+
+    /**
+     * A linear combination {@code c + k1 * v1 + ... + kn * vn} of
+     * loop-invariant variables, whose values are taken when entering the
+     * loop.
+     *
+     * @param constant     the constant term
+     * @param coefficients the nonzero coefficients of the variables
+     */
+    public record Linear(int constant, Map<Var, Integer> coefficients) {
+
+        public static final Linear ZERO = new Linear(0, Map.of());
+
+        public Linear {
+            Map<Var, Integer> nonzero = Maps.newLinkedHashMap();
+            coefficients.forEach((var, coefficient) -> {
+                if (coefficient != 0) {
+                    nonzero.put(var, coefficient);
+                }
+            });
+            coefficients = Collections.unmodifiableMap(nonzero);
+        }
+
+        public static Linear of(int constant) {
+            return new Linear(constant, Map.of());
+        }
+
+        public static Linear of(Var var) {
+            return new Linear(0, Map.of(var, 1));
+        }
+
+        public boolean isConstant() {
+            return coefficients.isEmpty();
+        }
+
+        public boolean isZero() {
+            return constant == 0 && coefficients.isEmpty();
+        }
+
+        public Linear add(Linear other) {
+            Map<Var, Integer> sum = Maps.newLinkedHashMap();
+            sum.putAll(coefficients);
+            other.coefficients.forEach((var, coefficient) ->
+                    sum.merge(var, coefficient, Integer::sum));
+            return new Linear(constant + other.constant, sum);
+        }
+
+        public Linear scale(int factor) {
+            Map<Var, Integer> scaled = Maps.newLinkedHashMap();
+            coefficients.forEach((var, coefficient) ->
+                    scaled.put(var, coefficient * factor));
+            return new Linear(constant * factor, scaled);
+        }
+
+        /**
+         * @return the product of this and {@code other}, or {@code null}
+         * if neither of the two is constant.
+         */
+        @Nullable
+        public Linear mul(Linear other) {
+            if (isConstant()) {
+                return other.scale(constant);
+            } else if (other.isConstant()) {
+                return scale(other.constant);
+            }
+            return null;
+        }
+
+        @Override
+        @Nonnull
+        public String toString() {
+            StringBuilder sb = new StringBuilder().append(constant);
+            coefficients.forEach((var, coefficient) ->
+                    sb.append(" + ").append(coefficient).append('*').append(var));
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package toyc.algorithm.analysis.loop;
+
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Binary;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An induction variable of a loop.
+ * <p>
+ * A <i>basic</i> induction variable {@code i} is defined in the loop only
+ * by {@code i = i + s} or {@code i = i - s}, where step {@code s} is
+ * loop-invariant. A <i>derived</i> induction variable {@code j} is defined
+ * in the loop only by {@code j = i op c}, where {@code i} is a basic
+ * induction variable, {@code op} is {@code +}, {@code -} or {@code *} and
+ * {@code c} is loop-invariant, thus {@code j} is a linear function of
+ * {@code i}.
+ *
+ * @param var          the induction variable
+ * @param def          the only definition of the variable in the loop
+ * @param basic        the basic induction variable from which the variable
+ *                     is derived, or {@code null} if the variable is basic
+ * @param op           the operator of the definition
+ * @param operand      the step of a basic induction variable, or the
+ *                     invariant operand of a derived induction variable
+ * @param initialValue the value of a basic induction variable when entering
+ *                     the loop, or {@code null} if it is not a known constant
+ */
+public record InductionVariable(Var var, Binary def,
+                                @Nullable InductionVariable basic,
+                                ArithmeticExp.Op op, Var operand,
+                                @Nullable Integer initialValue) {
+
+    public boolean isBasic() {
+        return basic == null;
+    }
+
+    /**
+     * @return the value of {@link #operand()} if it is a constant,
+     * otherwise {@code null}.
+     */
+    @Nullable
+    public Integer getConstantOperand() {
+        return operand.isConst() && operand.getConstValue() instanceof IntLiteral literal
+                ? literal.getValue() : null;
+    }
+
+    /**
+     * @return the signed constant step of a basic induction variable,
+     * or {@code null} if the variable is derived or its step is not constant.
+     */
+    @Nullable
+    public Integer getStep() {
+        Integer value = isBasic() ? getConstantOperand() : null;
+        if (value == null) {
+            return null;
+        }
+        return op == ArithmeticExp.Op.SUB ? -value : value;
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        return isBasic()
+                ? String.format("IV[%s: init=%s, step=%s %s]",
+                var, initialValue, op, operand)
+                : String.format("IV[%s = %s %s %s]",
+                var, basic.var(), op, operand);
+    }
+}
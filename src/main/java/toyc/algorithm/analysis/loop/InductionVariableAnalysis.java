@@ -0,0 +1,180 @@
+package toyc.algorithm.analysis.loop;
+
+import toyc.algorithm.analysis.FunctionAnalysis;
+import toyc.algorithm.analysis.dataflow.analysis.ReachingDefinition;
+import toyc.algorithm.analysis.dataflow.fact.NodeResult;
+import toyc.algorithm.analysis.dataflow.fact.SetFact;
+import toyc.algorithm.analysis.defuse.DefUse;
+import toyc.algorithm.analysis.defuse.DefUseAnalysis;
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.Stmt;
+import toyc.util.collection.CollectionUtils;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the basic and derived induction variables of each loop.
+ * <p>
+ * A variable is loop-invariant at a statement if it is a constant, or
+ * none of its definitions reaching the statement is in the loop. The
+ * initial value of a basic induction variable is known if the only
+ * definition of it reaching the loop header from outside the loop
+ * assigns a constant.
+ *
+ * @see InductionVariable
+ */
+public class InductionVariableAnalysis extends FunctionAnalysis<InductionVariables> {
+
+    public static final String ID = "induction-var";
+
+    private CFG<Stmt> cfg;
+
+    private DefUse defUse;
+
+    private NodeResult<Stmt, SetFact<Stmt>> reachDefs;
+
+    public InductionVariableAnalysis(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public InductionVariables analyze(IR ir) {
+        cfg = ir.getResult(CFGBuilder.ID);
+        defUse = ir.getResult(DefUseAnalysis.ID);
+        reachDefs = ir.getResult(ReachingDefinition.ID);
+        LoopInfo loops = ir.getResult(LoopDetection.ID);
+        Map<Loop, List<InductionVariable>> ivs = Maps.newLinkedHashMap();
+        for (Loop loop : loops.getLoops()) {
+            List<InductionVariable> loopIVs = findInductionVariables(loop);
+            if (!loopIVs.isEmpty()) {
+                ivs.put(loop, loopIVs);
+            }
+        }
+        return new InductionVariables(ivs);
+    }
+
+    private List<InductionVariable> findInductionVariables(Loop loop) {
+        Map<Var, Integer> defCounts = Maps.newMap();
+        for (Stmt stmt : loop.body()) {
+            stmt.getDef().ifPresent(def -> {
+                if (def instanceof Var var) {
+                    defCounts.merge(var, 1, Integer::sum);
+                }
+            });
+        }
+        // basic induction variables: i = i + s, i = s + i, i = i - s
+        Map<Var, InductionVariable> basics = Maps.newLinkedHashMap();
+        for (Stmt stmt : loop.body()) {
+            ArithmeticExp exp = getArithmeticExp(stmt, defCounts);
+            if (exp == null || exp.getOperator() == ArithmeticExp.Op.MUL) {
+                continue;
+            }
+            Var iv = ((Binary) stmt).getLValue();
+            Var step = null;
+            if (exp.getOperand1() == iv) {
+                step = exp.getOperand2();
+            } else if (exp.getOperator() == ArithmeticExp.Op.ADD
+                    && exp.getOperand2() == iv) {
+                step = exp.getOperand1();
+            }
+            if (step != null && step != iv && isInvariant(loop, stmt, step)) {
+                basics.put(iv, new InductionVariable(iv, (Binary) stmt, null,
+                        exp.getOperator(), step, getInitialValue(loop, iv)));
+            }
+        }
+        // derived induction variables: j = i op c, j = c op i (op is + or *)
+        List<InductionVariable> ivs = new ArrayList<>(basics.values());
+        for (Stmt stmt : loop.body()) {
+            ArithmeticExp exp = getArithmeticExp(stmt, defCounts);
+            Var var = stmt instanceof Binary binary ? binary.getLValue() : null;
+            if (exp == null || basics.containsKey(var)) {
+                continue;
+            }
+            InductionVariable basic = basics.get(exp.getOperand1());
+            Var operand = exp.getOperand2();
+            if (basic == null && exp.getOperator() != ArithmeticExp.Op.SUB) {
+                basic = basics.get(exp.getOperand2());
+                operand = exp.getOperand1();
+            }
+            if (basic != null && !basics.containsKey(operand)
+                    && isInvariant(loop, stmt, operand)) {
+                ivs.add(new InductionVariable(var, (Binary) stmt, basic,
+                        exp.getOperator(), operand, null));
+            }
+        }
+        return ivs;
+    }
+
+    /**
+     * @return the arithmetic expression of {@code stmt}, if {@code stmt}
+     * is the only definition of its variable in the loop, otherwise
+     * {@code null}. Division and remainder are not linear, thus ignored.
+     */
+    @Nullable
+    private static ArithmeticExp getArithmeticExp(Stmt stmt, Map<Var, Integer> defCounts) {
+        if (stmt instanceof Binary binary
+                && binary.getRValue() instanceof ArithmeticExp exp
+                && defCounts.get(binary.getLValue()) == 1) {
+            ArithmeticExp.Op op = exp.getOperator();
+            if (op == ArithmeticExp.Op.ADD || op == ArithmeticExp.Op.SUB
+                    || op == ArithmeticExp.Op.MUL) {
+                return exp;
+            }
+        }
+        return null;
+    }
+
+    private boolean isInvariant(Loop loop, Stmt stmt, Var var) {
+        return var.isConst() ||
+                defUse.getDefs(stmt, var).stream().noneMatch(loop::contains);
+    }
+
+    /**
+     * @return the constant value of {@code iv} when entering {@code loop},
+     * or {@code null} if it is unknown.
+     */
+    @Nullable
+    private Integer getInitialValue(Loop loop, Var iv) {
+        Set<Stmt> defs = Sets.newHybridSet();
+        for (Stmt pred : cfg.getPredsOf(loop.header())) {
+            if (!loop.contains(pred)) {
+                SetFact<Stmt> fact = reachDefs.getOutFact(pred);
+                if (fact == null) {
+                    return null;
+                }
+                fact.forEach(def -> {
+                    if (def.getDef().filter(iv::equals).isPresent()) {
+                        defs.add(def);
+                    }
+                });
+            }
+        }
+        if (defs.size() != 1) {
+            return null;
+        }
+        Stmt def = CollectionUtils.getOne(defs);
+        if (def instanceof AssignLiteral assign
+                && assign.getRValue() instanceof IntLiteral literal) {
+            return literal.getValue();
+        } else if (def instanceof Copy copy && copy.getRValue().isConst()
+                && copy.getRValue().getConstValue() instanceof IntLiteral literal) {
+            return literal.getValue();
+        }
+        return null;
+    }
+}
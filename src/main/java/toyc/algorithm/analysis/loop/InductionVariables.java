@@ -0,0 +1,50 @@
+package toyc.algorithm.analysis.loop;
+
+import toyc.ir.exp.Var;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Induction variables of the loops of a function.
+ */
+public class InductionVariables {
+
+    private final Map<Loop, List<InductionVariable>> ivs;
+
+    InductionVariables(Map<Loop, List<InductionVariable>> ivs) {
+        this.ivs = ivs;
+    }
+
+    /**
+     * @return the induction variables of {@code loop}, where the basic
+     * induction variables precede the derived ones.
+     */
+    public List<InductionVariable> get(Loop loop) {
+        return ivs.getOrDefault(loop, List.of());
+    }
+
+    /**
+     * @return the induction variable {@code var} of {@code loop},
+     * or {@code null} if {@code var} is not an induction variable of it.
+     */
+    @Nullable
+    public InductionVariable get(Loop loop, Var var) {
+        return get(loop).stream()
+                .filter(iv -> iv.var() == var)
+                .findFirst()
+                .orElse(null);
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        return ivs.entrySet()
+                .stream()
+                .map(e -> e.getKey().header() + ": " + e.getValue())
+                .collect(Collectors.joining("\n"));
+    }
+}
@@ -6,7 +6,8 @@ import javax.annotation.Nonnull;
 import java.util.Set;
 
 /**
- * Loop data structure
+ * Loop data structure. A natural loop is identified by its header,
+ * and its tails are the sources of the back edges to the header.
  */
 public record Loop(Stmt header, Set<Stmt> tails, Set<Stmt> body) {
 
@@ -18,6 +19,16 @@ public record Loop(Stmt header, Set<Stmt> tails, Set<Stmt> body) {
         return body.size();
     }
 
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Loop loop && header == loop.header;
+    }
+
+    @Override
+    public int hashCode() {
+        return header.hashCode();
+    }
+
     @Override
     @Nonnull
     public String toString() {
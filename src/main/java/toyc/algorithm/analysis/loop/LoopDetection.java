@@ -9,20 +9,20 @@ import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
 import toyc.algorithm.analysis.graph.cfg.CFGEdge;
 import toyc.config.AlgorithmConfig;
 import toyc.ir.IR;
-import toyc.ir.stmt.JumpStmt;
 import toyc.ir.stmt.Stmt;
+import toyc.util.collection.Maps;
 import toyc.util.collection.Sets;
 
+import java.util.ArrayDeque;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
-public class LoopDetection extends FunctionAnalysis<Set<Loop>> {
+public class LoopDetection extends FunctionAnalysis<LoopInfo> {
     public static final String ID = "loop-detection";
 
-    private IR ir;
-
     private CFG<Stmt> cfg;
 
     private DataflowResult<Stmt, SetFact<Stmt>> dominators;
@@ -32,31 +32,23 @@ public class LoopDetection extends FunctionAnalysis<Set<Loop>> {
     }
 
     @Override
-    public Set<Loop> analyze(IR ir) {
-        this.ir = ir;
+    public LoopInfo analyze(IR ir) {
         cfg = ir.getResult(CFGBuilder.ID);
         dominators = ir.getResult(DominatorAnalysis.ID);
 
         Set<CFGEdge<Stmt>> backEdges = findBackEdges();
 
-        // Group back edges by header and select max tail for each header
-        Map<Stmt, CFGEdge<Stmt>> headerToMaxBackEdge = backEdges.stream()
-                .collect(Collectors.toMap(
-                        CFGEdge::target,
-                        edge -> edge,
-                        (edge1, edge2) -> {
-                            int index1 = edge1.source().getIndex();
-                            int index2 = edge2.source().getIndex();
-                            return index1 >= index2 ? edge1 : edge2;
-                        }
-                ));
-
-        // Select only the loop with the smallest header index
-        return headerToMaxBackEdge.values().stream()
-                .min(Comparator.comparingInt(edge -> edge.target().getIndex()))
-                .map(this::constructNaturalLoop)
-                .map(Set::of)
-                .orElse(Set.of());
+        // Group back edges by header, each header has one natural loop
+        Map<Stmt, Set<Stmt>> headerToTails = Maps.newLinkedHashMap();
+        backEdges.forEach(edge -> headerToTails
+                .computeIfAbsent(edge.target(), __ -> Sets.newHybridSet())
+                .add(edge.source()));
+
+        List<Loop> loops = headerToTails.entrySet()
+                .stream()
+                .map(e -> constructNaturalLoop(e.getKey(), e.getValue()))
+                .toList();
+        return new LoopInfo(cfg, loops);
     }
 
     /**
@@ -93,26 +85,21 @@ public class LoopDetection extends FunctionAnalysis<Set<Loop>> {
     }
 
     /**
-     * Construct natural loop for a back edge (tail -> header)
+     * Construct natural loop of a header and the tails of its back edges,
+     * i.e., the header and the statements which reach the tails
+     * without passing through the header.
      */
-    private Loop constructNaturalLoop(CFGEdge<Stmt> backEdge) {
-        Stmt header = backEdge.target();  // Loop header
-        Set<Stmt> tails = Sets.newSet();
-
+    private Loop constructNaturalLoop(Stmt header, Set<Stmt> tails) {
         Set<Stmt> loopBody =
                 Sets.newOrderedSet(Comparator.comparing(Stmt::getIndex));
-
-        int headerIndex = header.getIndex();
-        int tailIndex = backEdge.source().getIndex();
-
-        for (int i = headerIndex; i <= tailIndex; i++) {
-            Stmt stmt = ir.getStmt(i);
-            loopBody.add(stmt);
-            if (stmt instanceof JumpStmt jumpStmt && jumpStmt.getTarget() == header) {
-                tails.add(stmt);
+        loopBody.add(header);
+        Deque<Stmt> workList = new ArrayDeque<>(tails);
+        while (!workList.isEmpty()) {
+            Stmt stmt = workList.pop();
+            if (loopBody.add(stmt)) {
+                workList.addAll(cfg.getPredsOf(stmt));
             }
         }
-
         return new Loop(header, tails, loopBody);
     }
 }
@@ -0,0 +1,210 @@
+package toyc.algorithm.analysis.loop;
+
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.ir.stmt.Stmt;
+import toyc.util.collection.CollectionUtils;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The loop nest forest of a function, i.e., all natural loops of the
+ * function and their nesting relations.
+ * <p>
+ * Besides the nesting, each loop is described by its <i>exits</i>,
+ * i.e., the statements outside the loop which are successors of the loop
+ * statements (returns leave the function rather than the loop, thus the
+ * exit node of the CFG is not an exit), its <i>exiting</i> statements,
+ * i.e., the loop statements which have exits as successors, and its
+ * <i>preheader</i>, i.e., the only predecessor of the header outside the
+ * loop, if that predecessor has no other successors.
+ */
+public class LoopInfo {
+
+    /**
+     * All loops, in the order of their header indexes.
+     */
+    private final List<Loop> loops;
+
+    private final Map<Loop, Loop> parents = Maps.newMap();
+
+    private final Map<Loop, List<Loop>> subLoops = Maps.newMap();
+
+    private final List<Loop> topLevelLoops = new ArrayList<>();
+
+    /**
+     * Map from each statement in loops to its innermost loop.
+     */
+    private final Map<Stmt, Loop> innermostLoops = Maps.newMap();
+
+    private final Map<Loop, Stmt> preheaders = Maps.newMap();
+
+    private final Map<Loop, Set<Stmt>> exits = Maps.newMap();
+
+    private final Map<Loop, Set<Stmt>> exitingStmts = Maps.newMap();
+
+    LoopInfo(CFG<Stmt> cfg, List<Loop> loops) {
+        this.loops = loops.stream()
+                .sorted(Comparator.comparingInt(loop -> loop.header().getIndex()))
+                .toList();
+        // visit inner loops first, as natural loops with different headers
+        // are either disjoint or nested
+        List<Loop> bySize = this.loops.stream()
+                .sorted(Comparator.comparingInt(Loop::size))
+                .toList();
+        for (int i = 0; i < bySize.size(); ++i) {
+            Loop loop = bySize.get(i);
+            for (int j = i + 1; j < bySize.size(); ++j) {
+                Loop outer = bySize.get(j);
+                if (outer.contains(loop.header())) {
+                    parents.put(loop, outer);
+                    break;
+                }
+            }
+            for (Stmt stmt : loop.body()) {
+                innermostLoops.putIfAbsent(stmt, loop);
+            }
+        }
+        for (Loop loop : this.loops) {
+            Loop parent = parents.get(loop);
+            if (parent == null) {
+                topLevelLoops.add(loop);
+            } else {
+                subLoops.computeIfAbsent(parent, __ -> new ArrayList<>()).add(loop);
+            }
+            computeBoundary(cfg, loop);
+        }
+    }
+
+    private void computeBoundary(CFG<Stmt> cfg, Loop loop) {
+        Set<Stmt> loopExits = Sets.newOrderedSet(Comparator.comparingInt(Stmt::getIndex));
+        Set<Stmt> exiting = Sets.newOrderedSet(Comparator.comparingInt(Stmt::getIndex));
+        for (Stmt stmt : loop.body()) {
+            for (Stmt succ : cfg.getSuccsOf(stmt)) {
+                if (!loop.contains(succ) && !cfg.isExit(succ)) {
+                    loopExits.add(succ);
+                    exiting.add(stmt);
+                }
+            }
+        }
+        exits.put(loop, Collections.unmodifiableSet(loopExits));
+        exitingStmts.put(loop, Collections.unmodifiableSet(exiting));
+        Set<Stmt> outsidePreds = cfg.getPredsOf(loop.header())
+                .stream()
+                .filter(pred -> !loop.contains(pred))
+                .collect(Collectors.toSet());
+        if (outsidePreds.size() == 1) {
+            Stmt pred = CollectionUtils.getOne(outsidePreds);
+            if (!cfg.isEntry(pred) && cfg.getSuccsOf(pred).size() == 1) {
+                preheaders.put(loop, pred);
+            }
+        }
+    }
+
+    /**
+     * @return all loops, in the order of the indexes of their headers.
+     */
+    public List<Loop> getLoops() {
+        return loops;
+    }
+
+    /**
+     * @return the loops which are not nested in other loops.
+     */
+    public List<Loop> getTopLevelLoops() {
+        return Collections.unmodifiableList(topLevelLoops);
+    }
+
+    public boolean isEmpty() {
+        return loops.isEmpty();
+    }
+
+    /**
+     * @return the innermost loop containing {@code loop}, or {@code null}
+     * if {@code loop} is a top-level loop.
+     */
+    @Nullable
+    public Loop getParent(Loop loop) {
+        return parents.get(loop);
+    }
+
+    /**
+     * @return the loops directly nested in {@code loop}.
+     */
+    public List<Loop> getSubLoops(Loop loop) {
+        return Collections.unmodifiableList(
+                subLoops.getOrDefault(loop, List.of()));
+    }
+
+    /**
+     * @return the nesting depth of {@code loop}, which is 1 for top-level loops.
+     */
+    public int getDepth(Loop loop) {
+        int depth = 1;
+        for (Loop parent = parents.get(loop); parent != null;
+             parent = parents.get(parent)) {
+            ++depth;
+        }
+        return depth;
+    }
+
+    /**
+     * @return the innermost loop containing {@code stmt}, or {@code null}
+     * if {@code stmt} is not in any loop.
+     */
+    @Nullable
+    public Loop getLoopFor(Stmt stmt) {
+        return innermostLoops.get(stmt);
+    }
+
+    /**
+     * @return the number of loops containing {@code stmt}.
+     */
+    public int getLoopDepth(Stmt stmt) {
+        Loop loop = innermostLoops.get(stmt);
+        return loop == null ? 0 : getDepth(loop);
+    }
+
+    /**
+     * @return the preheader of {@code loop}, or {@code null} if
+     * {@code loop} has no preheader.
+     */
+    @Nullable
+    public Stmt getPreheader(Loop loop) {
+        return preheaders.get(loop);
+    }
+
+    /**
+     * @return the statements outside {@code loop} which are successors
+     * of the statements in {@code loop}.
+     */
+    public Set<Stmt> getExits(Loop loop) {
+        return exits.get(loop);
+    }
+
+    /**
+     * @return the statements in {@code loop} which have successors
+     * outside {@code loop}.
+     */
+    public Set<Stmt> getExitingStmts(Loop loop) {
+        return exitingStmts.get(loop);
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        return loops.stream()
+                .map(loop -> String.format("depth=%d, preheader=%s, exits=%s, %s",
+                        getDepth(loop), getPreheader(loop), getExits(loop), loop))
+                .collect(Collectors.joining("\n"));
+    }
+}
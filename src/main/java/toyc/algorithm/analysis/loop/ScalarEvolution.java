@@ -0,0 +1,62 @@
+package toyc.algorithm.analysis.loop;
+
+import toyc.ir.exp.Var;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Scalar evolutions of the variables of the loops of a function.
+ */
+public class ScalarEvolution {
+
+    private final Map<Loop, Map<Var, AddRecurrence>> recurrences;
+
+    private final Map<Loop, Map<Var, AddRecurrence>> exitValues;
+
+    ScalarEvolution(Map<Loop, Map<Var, AddRecurrence>> recurrences,
+                    Map<Loop, Map<Var, AddRecurrence>> exitValues) {
+        this.recurrences = recurrences;
+        this.exitValues = exitValues;
+    }
+
+    /**
+     * @return the variables of {@code loop} whose values at the loop
+     * header are add-recurrences, and their recurrences.
+     */
+    public Map<Var, AddRecurrence> getRecurrences(Loop loop) {
+        return recurrences.getOrDefault(loop, Map.of());
+    }
+
+    /**
+     * @return the add-recurrence of the value of {@code var} at the header
+     * of {@code loop}, or {@code null} if it is unknown.
+     */
+    @Nullable
+    public AddRecurrence getRecurrence(Loop loop, Var var) {
+        return getRecurrences(loop).get(var);
+    }
+
+    /**
+     * @return the variables defined in counting loop {@code loop} whose
+     * values when the loop exits are known, and the add-recurrences whose
+     * values in iteration {@code n} are these exit values, where {@code n}
+     * is the trip count of the loop.
+     * @see TripCount
+     */
+    public Map<Var, AddRecurrence> getExitValues(Loop loop) {
+        return exitValues.getOrDefault(loop, Map.of());
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        return recurrences.entrySet()
+                .stream()
+                .map(e -> e.getKey().header() + ": " + e.getValue()
+                        + ", exit values: " + getExitValues(e.getKey()))
+                .collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,263 @@
+package toyc.algorithm.analysis.loop;
+
+import toyc.algorithm.analysis.FunctionAnalysis;
+import toyc.algorithm.analysis.dataflow.analysis.DominatorAnalysis;
+import toyc.algorithm.analysis.dataflow.fact.NodeResult;
+import toyc.algorithm.analysis.dataflow.fact.SetFact;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.NegExp;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.Stmt;
+import toyc.ir.stmt.Unary;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the scalar evolutions of the variables of loops, i.e., their
+ * values as add-recurrences over the iterations.
+ * <p>
+ * A variable is analyzed if it has a single definition in the loop,
+ * which runs in every iteration. A definition {@code v = v + e} (or
+ * {@code v = e + v}, {@code v = v - e}) makes the value of {@code v} at
+ * the header a recurrence which starts from the value of {@code v} when
+ * entering the loop, and is increased by the value of {@code e} at the
+ * definition in each iteration. Other definitions of {@code +}, {@code -},
+ * {@code *} by constants, negation and copies are evaluated on the values
+ * of their operands.
+ * <p>
+ * Within an iteration, an operand defined in the loop has the value of
+ * its definition in this iteration if the definition dominates the use,
+ * otherwise the value at the header.
+ *
+ * @see AddRecurrence
+ */
+public class ScalarEvolutionAnalysis extends FunctionAnalysis<ScalarEvolution> {
+
+    public static final String ID = "scev";
+
+    private LoopInfo loops;
+
+    private NodeResult<Stmt, SetFact<Stmt>> dominators;
+
+    public ScalarEvolutionAnalysis(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public ScalarEvolution analyze(IR ir) {
+        loops = ir.getResult(LoopDetection.ID);
+        dominators = ir.getResult(DominatorAnalysis.ID);
+        Map<Loop, TripCount> tripCounts = ir.getResult(TripCountAnalysis.ID);
+        Map<Loop, Map<Var, AddRecurrence>> recurrences = Maps.newLinkedHashMap();
+        Map<Loop, Map<Var, AddRecurrence>> exitValues = Maps.newLinkedHashMap();
+        for (Loop loop : loops.getLoops()) {
+            Solver solver = new Solver(loop);
+            Map<Var, AddRecurrence> loopRecurrences = Maps.newLinkedHashMap();
+            Map<Var, AddRecurrence> loopExitValues = Maps.newLinkedHashMap();
+            TripCount tripCount = tripCounts.get(loop);
+            solver.defs.forEach((var, def) -> {
+                AddRecurrence recurrence = solver.getHeaderValue(var);
+                if (recurrence != null) {
+                    loopRecurrences.put(var, recurrence);
+                }
+                if (tripCount != null) {
+                    AddRecurrence exitValue = dominates(def, tripCount.test())
+                            ? solver.getValueAfter(var) : recurrence;
+                    if (exitValue != null) {
+                        loopExitValues.put(var, exitValue);
+                    }
+                }
+            });
+            recurrences.put(loop, loopRecurrences);
+            exitValues.put(loop, loopExitValues);
+        }
+        return new ScalarEvolution(recurrences, exitValues);
+    }
+
+    private boolean dominates(Stmt dominator, Stmt stmt) {
+        SetFact<Stmt> doms = dominators.getOutFact(stmt);
+        return doms != null && doms.contains(dominator);
+    }
+
+    /**
+     * Evaluates the variables of a loop on demand.
+     */
+    private class Solver {
+
+        private final Loop loop;
+
+        /**
+         * The variables defined in the loop.
+         */
+        private final Set<Var> defined = Sets.newHybridSet();
+
+        /**
+         * The variables which are analyzed, and their definitions.
+         */
+        private final Map<Var, Stmt> defs = Maps.newLinkedHashMap();
+
+        private final Map<Var, AddRecurrence> headerValues = Maps.newMap();
+
+        private final Map<Var, AddRecurrence> valuesAfter = Maps.newMap();
+
+        /**
+         * The variables being evaluated, to give up on cyclic evaluations.
+         */
+        private final Set<Var> inProgress = Sets.newHybridSet();
+
+        private Solver(Loop loop) {
+            this.loop = loop;
+            Map<Var, Integer> defCounts = Maps.newMap();
+            loop.body().forEach(stmt -> stmt.getDef().ifPresent(def -> {
+                if (def instanceof Var var) {
+                    defined.add(var);
+                    defCounts.merge(var, 1, Integer::sum);
+                }
+            }));
+            loop.body().forEach(stmt -> stmt.getDef().ifPresent(def -> {
+                if (def instanceof Var var && defCounts.get(var) == 1
+                        && runsInEveryIteration(stmt)) {
+                    defs.put(var, stmt);
+                }
+            }));
+        }
+
+        private boolean runsInEveryIteration(Stmt stmt) {
+            return loops.getLoopFor(stmt) == loop && loop.tails()
+                    .stream()
+                    .allMatch(tail -> dominates(stmt, tail));
+        }
+
+        /**
+         * @return the value of {@code var} at the header, or {@code null}
+         * if it is unknown.
+         */
+        @Nullable
+        private AddRecurrence getHeaderValue(Var var) {
+            if (headerValues.containsKey(var)) {
+                return headerValues.get(var);
+            } else if (inProgress.contains(var)) {
+                return null;
+            }
+            AddRecurrence value = null;
+            if (defs.get(var) instanceof Binary binary
+                    && binary.getRValue() instanceof ArithmeticExp exp) {
+                inProgress.add(var);
+                Var v1 = exp.getOperand1();
+                Var v2 = exp.getOperand2();
+                AddRecurrence increment = null;
+                switch (exp.getOperator()) {
+                    case ADD -> {
+                        if (v1 == var && v2 != var) {
+                            increment = getValue(v2, binary);
+                        } else if (v2 == var && v1 != var) {
+                            increment = getValue(v1, binary);
+                        }
+                    }
+                    case SUB -> {
+                        if (v1 == var && v2 != var) {
+                            AddRecurrence value2 = getValue(v2, binary);
+                            increment = value2 == null ? null : value2.scale(-1);
+                        }
+                    }
+                    default -> {
+                    }
+                }
+                if (increment != null) {
+                    value = increment.accumulate(AddRecurrence.Linear.of(var));
+                }
+                inProgress.remove(var);
+            }
+            headerValues.put(var, value);
+            return value;
+        }
+
+        /**
+         * @return the value of {@code var} right after its definition,
+         * or {@code null} if it is unknown.
+         */
+        @Nullable
+        private AddRecurrence getValueAfter(Var var) {
+            if (valuesAfter.containsKey(var)) {
+                return valuesAfter.get(var);
+            } else if (inProgress.contains(var)) {
+                return null;
+            }
+            AddRecurrence value;
+            AddRecurrence headerValue = getHeaderValue(var);
+            if (headerValue != null) {
+                value = headerValue.shift();
+            } else {
+                inProgress.add(var);
+                value = evaluate(defs.get(var));
+                inProgress.remove(var);
+            }
+            valuesAfter.put(var, value);
+            return value;
+        }
+
+        @Nullable
+        private AddRecurrence evaluate(Stmt def) {
+            if (def instanceof AssignLiteral assign
+                    && assign.getRValue() instanceof IntLiteral literal) {
+                return constant(literal.getValue());
+            } else if (def instanceof Copy copy) {
+                return getValue(copy.getRValue(), def);
+            } else if (def instanceof Unary unary
+                    && unary.getRValue() instanceof NegExp neg) {
+                AddRecurrence value = getValue(neg.getOperand(), def);
+                return value == null ? null : value.scale(-1);
+            } else if (def instanceof Binary binary
+                    && binary.getRValue() instanceof ArithmeticExp exp) {
+                AddRecurrence value1 = getValue(exp.getOperand1(), def);
+                AddRecurrence value2 = getValue(exp.getOperand2(), def);
+                if (value1 == null || value2 == null) {
+                    return null;
+                }
+                return switch (exp.getOperator()) {
+                    case ADD -> value1.add(value2);
+                    case SUB -> value1.add(value2.scale(-1));
+                    case MUL -> value1.mul(value2);
+                    // division and remainder are not polynomial
+                    default -> null;
+                };
+            }
+            return null;
+        }
+
+        /**
+         * @return the value of {@code var} when {@code stmt} runs,
+         * or {@code null} if it is unknown.
+         */
+        @Nullable
+        private AddRecurrence getValue(Var var, Stmt stmt) {
+            if (var.isConst()) {
+                return var.getConstValue() instanceof IntLiteral literal
+                        ? constant(literal.getValue()) : null;
+            } else if (!defined.contains(var)) {
+                return AddRecurrence.of(AddRecurrence.Linear.of(var));
+            }
+            Stmt def = defs.get(var);
+            if (def == null) {
+                return null;
+            }
+            return def != stmt && dominates(def, stmt)
+                    ? getValueAfter(var)
+                    : getHeaderValue(var);
+        }
+
+        private static AddRecurrence constant(int value) {
+            return AddRecurrence.of(AddRecurrence.Linear.of(value));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package toyc.algorithm.analysis.loop;
+
+import toyc.ir.exp.ConditionExp;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.If;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The trip count of a counting loop, i.e., a loop which runs until the
+ * test of a basic induction variable against a loop-invariant bound fails.
+ * Both the test and the update of the induction variable run exactly once
+ * in every iteration.
+ *
+ * @param iv               the basic induction variable, whose step is a
+ *                         nonzero constant
+ * @param test             the test which exits the loop
+ * @param op               the condition under which the loop continues
+ *                         after the test, i.e., {@code iv op bound}, which
+ *                         is {@code <} or {@code <=} for positive steps,
+ *                         and {@code >} or {@code >=} for negative steps
+ * @param bound            the loop-invariant bound
+ * @param continueOnTrue   whether the loop continues on the true branch
+ *                         of the test
+ * @param updateBeforeTest whether the update of the induction variable
+ *                         precedes the test in each iteration
+ * @param initialValue     the constant value of the induction variable
+ *                         when entering the loop, or {@code null} if unknown
+ * @param boundValue       the constant value of the bound, or {@code null}
+ *                         if unknown
+ * @param count            the number of iterations which pass the test, or
+ *                         {@code null} if it is not a known constant
+ */
+public record TripCount(InductionVariable iv, If test, ConditionExp.Op op,
+                        Var bound, boolean continueOnTrue,
+                        boolean updateBeforeTest,
+                        @Nullable Integer initialValue,
+                        @Nullable Integer boundValue,
+                        @Nullable Integer count) {
+
+    /**
+     * @return the constant step of the induction variable.
+     */
+    public int getStep() {
+        Integer step = iv.getStep();
+        assert step != null;
+        return step;
+    }
+
+    public boolean isConstant() {
+        return count != null;
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        return String.format("TripCount[%s %s %s, init=%s, step=%d, count=%s]",
+                iv.var(), op, bound, initialValue, getStep(), count);
+    }
+}
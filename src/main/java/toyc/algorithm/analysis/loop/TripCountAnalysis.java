@@ -0,0 +1,240 @@
+package toyc.algorithm.analysis.loop;
+
+import toyc.algorithm.analysis.FunctionAnalysis;
+import toyc.algorithm.analysis.dataflow.analysis.DominatorAnalysis;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.CPFact;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.Value;
+import toyc.algorithm.analysis.dataflow.fact.NodeResult;
+import toyc.algorithm.analysis.dataflow.fact.SetFact;
+import toyc.algorithm.analysis.defuse.DefUse;
+import toyc.algorithm.analysis.defuse.DefUseAnalysis;
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.analysis.graph.cfg.CFGEdge;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.ConditionExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.Stmt;
+import toyc.util.collection.Maps;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * Computes the trip counts of counting loops.
+ * <p>
+ * The initial value of the induction variable is taken from constant
+ * propagation at the edges entering the loop, and the bound from constant
+ * propagation at the test, so that bounds held in variables are handled.
+ * Loops whose bounds are not constants are still reported, with unknown
+ * counts, as they can be unrolled with runtime checks.
+ *
+ * @see TripCount
+ */
+public class TripCountAnalysis extends FunctionAnalysis<Map<Loop, TripCount>> {
+
+    public static final String ID = "trip-count";
+
+    private CFG<Stmt> cfg;
+
+    private LoopInfo loops;
+
+    private DefUse defUse;
+
+    private NodeResult<Stmt, SetFact<Stmt>> dominators;
+
+    private NodeResult<Stmt, CPFact> constants;
+
+    public TripCountAnalysis(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public Map<Loop, TripCount> analyze(IR ir) {
+        cfg = ir.getResult(CFGBuilder.ID);
+        loops = ir.getResult(LoopDetection.ID);
+        defUse = ir.getResult(DefUseAnalysis.ID);
+        dominators = ir.getResult(DominatorAnalysis.ID);
+        constants = ir.getResult(ConstantPropagation.ID);
+        InductionVariables ivs = ir.getResult(InductionVariableAnalysis.ID);
+        Map<Loop, TripCount> tripCounts = Maps.newLinkedHashMap();
+        for (Loop loop : loops.getLoops()) {
+            for (InductionVariable iv : ivs.get(loop)) {
+                TripCount tripCount = iv.isBasic() ? computeTripCount(loop, iv) : null;
+                if (tripCount != null) {
+                    tripCounts.put(loop, tripCount);
+                    break;
+                }
+            }
+        }
+        return tripCounts;
+    }
+
+    @Nullable
+    private TripCount computeTripCount(Loop loop, InductionVariable iv) {
+        Integer step = iv.getStep();
+        if (step == null || step == 0 || !runsInEveryIteration(loop, iv.def())) {
+            return null;
+        }
+        If test = findTest(loop, iv.var());
+        if (test == null) {
+            return null;
+        }
+        // the successor of the test which stays in the loop
+        Boolean continueOnTrue = null;
+        for (CFGEdge<Stmt> edge : cfg.getOutEdgesOf(test)) {
+            if (loop.contains(edge.target())) {
+                if (continueOnTrue != null) {
+                    return null;
+                }
+                continueOnTrue = edge.getKind() == CFGEdge.Kind.IF_TRUE;
+            }
+        }
+        if (continueOnTrue == null) {
+            return null;
+        }
+        ConditionExp cond = test.getCondition();
+        boolean ivFirst = cond.getOperand1() == iv.var();
+        Var bound = ivFirst ? cond.getOperand2() : cond.getOperand1();
+        if (!bound.isConst() && defUse.getDefs(test, bound)
+                .stream().anyMatch(loop::contains)) {
+            return null;
+        }
+        ConditionExp.Op op = cond.getOperator();
+        if (!ivFirst) {
+            op = mirror(op);
+        }
+        if (!continueOnTrue) {
+            op = op.negate();
+        }
+        boolean increasing = op == ConditionExp.Op.LT || op == ConditionExp.Op.LE;
+        boolean decreasing = op == ConditionExp.Op.GT || op == ConditionExp.Op.GE;
+        if (!(increasing && step > 0 || decreasing && step < 0)) {
+            return null;
+        }
+        SetFact<Stmt> testDoms = dominators.getOutFact(test);
+        boolean updateBeforeTest = testDoms != null && testDoms.contains(iv.def());
+        Integer init = getInitialValue(loop, iv);
+        Integer boundValue = getConstant(test, bound);
+        Integer count = init == null || boundValue == null ? null
+                : count(op, init + (updateBeforeTest ? (long) step : 0),
+                boundValue, step);
+        return new TripCount(iv, test, op, bound, continueOnTrue,
+                updateBeforeTest, init, boundValue, count);
+    }
+
+    /**
+     * @return {@code true} if {@code stmt} runs exactly once in every
+     * iteration of {@code loop}, i.e., it is not in a nested loop, and it
+     * dominates all tails of {@code loop}.
+     */
+    private boolean runsInEveryIteration(Loop loop, Stmt stmt) {
+        if (loops.getLoopFor(stmt) != loop) {
+            return false;
+        }
+        for (Stmt tail : loop.tails()) {
+            SetFact<Stmt> doms = dominators.getOutFact(tail);
+            if (doms == null || !doms.contains(stmt)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the only test of {@code iv} in {@code loop} against another
+     * variable, if it runs in every iteration, otherwise {@code null}.
+     */
+    @Nullable
+    private If findTest(Loop loop, Var iv) {
+        If test = null;
+        for (Stmt stmt : loop.body()) {
+            if (stmt instanceof If ifStmt && ifStmt.getCondition().getUses().contains(iv)) {
+                if (test != null) {
+                    return null;
+                }
+                test = ifStmt;
+            }
+        }
+        if (test == null || test.getCondition().getOperand1()
+                == test.getCondition().getOperand2()) {
+            return null;
+        }
+        return runsInEveryIteration(loop, test) ? test : null;
+    }
+
+    /**
+     * @return the constant value of {@code iv} on all edges entering
+     * {@code loop}, or {@code null} if it is unknown.
+     */
+    @Nullable
+    private Integer getInitialValue(Loop loop, InductionVariable iv) {
+        Integer init = null;
+        for (Stmt pred : cfg.getPredsOf(loop.header())) {
+            if (!loop.contains(pred)) {
+                CPFact fact = constants.getOutFact(pred);
+                Value value = fact == null ? Value.getNAC() : fact.get(iv.var());
+                if (!value.isConstant()
+                        || init != null && init != value.getConstant()) {
+                    return iv.initialValue();
+                }
+                init = value.getConstant();
+            }
+        }
+        return init != null ? init : iv.initialValue();
+    }
+
+    @Nullable
+    private Integer getConstant(Stmt stmt, Var var) {
+        if (var.isConst()) {
+            return var.getConstValue() instanceof IntLiteral literal
+                    ? literal.getValue() : null;
+        }
+        CPFact fact = constants.getInFact(stmt);
+        Value value = fact == null ? Value.getNAC() : fact.get(var);
+        return value.isConstant() ? value.getConstant() : null;
+    }
+
+    /**
+     * @param first the value of the induction variable at the first test
+     * @return the number of tests which pass, or {@code null} if the
+     * induction variable overflows before the loop exits.
+     */
+    @Nullable
+    private static Integer count(ConditionExp.Op op, long first, long bound, long step) {
+        long count = switch (op) {
+            case LT -> first >= bound ? 0 : (bound - first + step - 1) / step;
+            case LE -> first > bound ? 0 : (bound - first) / step + 1;
+            case GT -> first <= bound ? 0 : (first - bound - step - 1) / -step;
+            case GE -> first < bound ? 0 : (first - bound) / -step + 1;
+            default -> throw new IllegalArgumentException(op.toString());
+        };
+        long last = first + count * step;
+        if (!fitsInt(first) || !fitsInt(last) || !fitsInt(count)) {
+            return null;
+        }
+        return (int) count;
+    }
+
+    private static boolean fitsInt(long value) {
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return the operator {@code op'} such that {@code a op b} iff
+     * {@code b op' a}.
+     */
+    private static ConditionExp.Op mirror(ConditionExp.Op op) {
+        return switch (op) {
+            case LT -> ConditionExp.Op.GT;
+            case GT -> ConditionExp.Op.LT;
+            case LE -> ConditionExp.Op.GE;
+            case GE -> ConditionExp.Op.LE;
+            default -> op;
+        };
+    }
+}
@@ -0,0 +1,104 @@
+package toyc.algorithm.analysis.sideeffect;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import toyc.World;
+import toyc.algorithm.analysis.ProgramAnalysis;
+import toyc.algorithm.analysis.sideeffect.SideEffects.Effect;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.JumpStmt;
+import toyc.ir.stmt.Stmt;
+import toyc.language.Function;
+import toyc.language.Program;
+import toyc.util.collection.Maps;
+import toyc.util.graph.SCC;
+import toyc.util.graph.SimpleGraph;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the effects of the functions bottom-up over the strongly-connected
+ * components of the call graph.
+ * <p>
+ * As ToyC programs have no global state, a function is pure unless it
+ * <ul>
+ *     <li>divides by a variable which is not a nonzero constant (may trap),</li>
+ *     <li>contains a loop, or is recursive (diverges),</li>
+ *     <li>calls a function which is not in the program (has effects),</li>
+ * </ul>
+ * or it calls a function which has such effects.
+ */
+public class SideEffectAnalysis extends ProgramAnalysis<SideEffects> {
+
+    public static final String ID = "side-effect";
+
+    private static final Logger logger = LogManager.getLogger(SideEffectAnalysis.class);
+
+    public SideEffectAnalysis(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public SideEffects analyze() {
+        Program program = World.get().getProgram();
+        SimpleGraph<Function> callGraph = new SimpleGraph<>();
+        program.allFunctions().forEach(function -> {
+            callGraph.addNode(function);
+            function.getIR().calls().forEach(call ->
+                    callGraph.addEdge(function, call.getCallExp().getFunction()));
+        });
+        Map<Function, Set<Effect>> effects = Maps.newMap();
+        // the components are in reverse topological order, i.e., bottom-up
+        for (List<Function> component : new SCC<>(callGraph).getComponents()) {
+            Set<Effect> componentEffects = EnumSet.noneOf(Effect.class);
+            for (Function function : component) {
+                if (!program.hasFunction(function.getName())) {
+                    componentEffects.add(Effect.HAS_EFFECTS);
+                    continue;
+                }
+                IR ir = function.getIR();
+                for (Stmt stmt : ir) {
+                    if (stmt instanceof Binary binary && mayTrap(binary)) {
+                        componentEffects.add(Effect.MAY_TRAP);
+                    } else if (stmt instanceof JumpStmt jump
+                            && jump.getTarget().getIndex() <= stmt.getIndex()) {
+                        componentEffects.add(Effect.DIVERGES);
+                    } else if (stmt instanceof Call call) {
+                        Function callee = call.getCallExp().getFunction();
+                        if (component.contains(callee)) {
+                            componentEffects.add(Effect.DIVERGES);
+                        } else {
+                            componentEffects.addAll(effects.get(callee));
+                        }
+                    }
+                }
+            }
+            component.forEach(function -> effects.put(function, componentEffects));
+        }
+        logger.info("{} of {} functions are pure",
+                effects.values().stream().filter(Set::isEmpty).count(),
+                program.getFunctionCount());
+        return new SideEffects(effects);
+    }
+
+    private static boolean mayTrap(Binary binary) {
+        if (binary.getRValue() instanceof ArithmeticExp exp
+                && (exp.getOperator() == ArithmeticExp.Op.DIV
+                || exp.getOperator() == ArithmeticExp.Op.REM)) {
+            Var divisor = exp.getOperand2();
+            return !(divisor.isConst()
+                    && divisor.getConstValue() instanceof IntLiteral literal
+                    && literal.getValue() != 0);
+        }
+        return false;
+    }
+}
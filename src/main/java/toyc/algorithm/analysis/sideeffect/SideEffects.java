@@ -0,0 +1,67 @@
+package toyc.algorithm.analysis.sideeffect;
+
+import toyc.language.Function;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of {@link SideEffectAnalysis}, i.e., the effects of the functions.
+ * The functions which were not analyzed may have all effects.
+ */
+public class SideEffects {
+
+    private static final Set<Effect> ALL = EnumSet.allOf(Effect.class);
+
+    private final Map<Function, Set<Effect>> effects;
+
+    SideEffects(Map<Function, Set<Effect>> effects) {
+        this.effects = effects;
+    }
+
+    /**
+     * @return the effects which the calls of {@code function} may have.
+     */
+    public Set<Effect> getEffects(Function function) {
+        return effects.getOrDefault(function, ALL);
+    }
+
+    /**
+     * @return {@code true} if the calls of {@code function} always
+     * terminate normally without effects, thus they can be removed or
+     * executed speculatively when their results are not used.
+     */
+    public boolean isPure(Function function) {
+        return getEffects(function).isEmpty();
+    }
+
+    /**
+     * @return {@code true} if the result of {@code function} only depends
+     * on its arguments, and the calls of {@code function} have no effects
+     * except trapping or diverging, thus a call can reuse the result of an
+     * earlier call with the same arguments.
+     */
+    public boolean isDeterministic(Function function) {
+        return !getEffects(function).contains(Effect.HAS_EFFECTS);
+    }
+
+    public enum Effect {
+
+        /**
+         * The function may trap, e.g., by a division by zero.
+         */
+        MAY_TRAP,
+
+        /**
+         * The function may not terminate, e.g., by a loop or recursion.
+         */
+        DIVERGES,
+
+        /**
+         * The function may have other effects, e.g., by calling
+         * an unknown function.
+         */
+        HAS_EFFECTS,
+    }
+}
@@ -0,0 +1,143 @@
+package toyc.algorithm.optimization;
+
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Nop;
+import toyc.ir.stmt.Return;
+import toyc.ir.stmt.Stmt;
+import toyc.language.type.IntType;
+import toyc.util.NumericSuffixNaming;
+import toyc.util.collection.Maps;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Turns linear recursion around an associative and commutative operator
+ * into loops, by introducing an accumulator.
+ * <p>
+ * A self-recursive call {@code t = f(args)} is an accumulation if it is
+ * followed (possibly through gotos and nops) by {@code r = t op e} (or
+ * {@code r = e op t}) and {@code return r}, where {@code op} is {@code +}
+ * or {@code *}. The function gets a local accumulator {@code acc},
+ * initialized to the identity of {@code op}, and keeps returning
+ * {@code acc op f(params)}: an accumulation becomes {@code acc = acc op e}
+ * followed by a jump to the start of the function with the arguments
+ * assigned to the parameters, a tail call keeps {@code acc}, and
+ * {@code return v} becomes {@code return acc op v}. As the operators are
+ * associative and commutative in 32-bit wraparound arithmetic, the result
+ * is the same.
+ * <p>
+ * Self-recursive calls which are neither accumulations with the first
+ * operator found nor tail calls are kept.
+ */
+public class AccumulatorIntroduction extends Optimization {
+
+    public static final String ID = "accumulator";
+
+    private static final String ACC = "%acc";
+
+    public AccumulatorIntroduction(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        Map<Call, Binary> accumulations = Maps.newLinkedHashMap();
+        List<Call> tailCalls = new ArrayList<>();
+        ArithmeticExp.Op op = null;
+        for (Call call : ir.calls().toList()) {
+            if (!call.getCallExp().getFunction().equals(ir.getFunction())) {
+                continue;
+            }
+            Stmt next = TailRecursionElimination.getNextEffective(ir, call);
+            if (next instanceof Return ret && ret.getValue() != null
+                    && ret.getValue() == call.getResult()) {
+                tailCalls.add(call);
+            } else if (next instanceof Binary binary
+                    && binary.getRValue() instanceof ArithmeticExp exp
+                    && isAccumulation(ir, call, binary, exp)
+                    && (op == null || op == exp.getOperator())) {
+                op = exp.getOperator();
+                accumulations.put(call, binary);
+            }
+        }
+        if (op == null) {
+            return ir;
+        }
+        IROperation operation = new IROperation(ir);
+        NumericSuffixNaming nameManager = new NumericSuffixNaming(ir.getVars()
+                .stream()
+                .map(Var::getName)
+                .collect(Collectors.toSet()));
+        Var acc = new Var(ir.getFunction(),
+                nameManager.getNewVarName(ACC), IntType.INT, -1);
+        Stmt first = ir.getStmts().getFirst();
+        operation.insertBefore(first, new AssignLiteral(acc,
+                IntLiteral.get(op == ArithmeticExp.Op.ADD ? 0 : 1)));
+        Nop entry = new Nop();
+        operation.insertBefore(first, entry);
+        for (Stmt stmt : ir.getStmts()) {
+            if (stmt instanceof Return ret) {
+                Var result = new Var(ir.getFunction(),
+                        nameManager.getNewVarName(ACC), IntType.INT, -1);
+                operation.replace(ret, List.of(
+                        new Binary(result, new ArithmeticExp(op, acc, ret.getValue())),
+                        new Return(result)));
+            }
+        }
+        for (Call call : tailCalls) {
+            operation.replace(call,
+                    TailRecursionElimination.jumpToEntry(ir, call, entry, nameManager));
+        }
+        for (Map.Entry<Call, Binary> e : accumulations.entrySet()) {
+            Call call = e.getKey();
+            ArithmeticExp exp = (ArithmeticExp) e.getValue().getRValue();
+            List<Stmt> stmts = new ArrayList<>();
+            stmts.add(new Binary(acc, new ArithmeticExp(op, acc,
+                    getOtherOperand(exp, call.getResult()))));
+            stmts.addAll(TailRecursionElimination.jumpToEntry(ir, call, entry, nameManager));
+            operation.replace(call, stmts);
+        }
+        return operation.getIR();
+    }
+
+    /**
+     * @return {@code true} if {@code binary}, which runs after {@code call},
+     * accumulates the result of {@code call}, whose accumulation is returned.
+     */
+    private static boolean isAccumulation(IR ir, Call call, Binary binary, ArithmeticExp exp) {
+        Var result = call.getResult();
+        return result != null
+                && (exp.getOperator() == ArithmeticExp.Op.ADD
+                || exp.getOperator() == ArithmeticExp.Op.MUL)
+                && getOtherOperand(exp, result) != null
+                && TailRecursionElimination.getNextEffective(ir, binary) instanceof Return ret
+                && ret.getValue() == binary.getLValue();
+    }
+
+    /**
+     * @return the operand of {@code exp} other than {@code result},
+     * or {@code null} if {@code result} is not exactly one operand.
+     */
+    @Nullable
+    private static Var getOtherOperand(ArithmeticExp exp, Var result) {
+        Var v1 = exp.getOperand1();
+        Var v2 = exp.getOperand2();
+        if (v1 == result && v2 != result) {
+            return v2;
+        } else if (v2 == result && v1 != result) {
+            return v1;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,161 @@
+package toyc.algorithm.optimization;
+
+import toyc.World;
+import toyc.algorithm.analysis.dataflow.analysis.LiveVariable;
+import toyc.algorithm.analysis.dataflow.fact.NodeResult;
+import toyc.algorithm.analysis.dataflow.fact.SetFact;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.DefaultIR;
+import toyc.ir.IR;
+import toyc.ir.exp.CallExp;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Return;
+import toyc.ir.stmt.Stmt;
+import toyc.language.Function;
+import toyc.language.Program;
+import toyc.language.type.Type;
+import toyc.language.type.VoidType;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes the dead parameters and the dead return values of functions.
+ * <p>
+ * A parameter is dead if it is not live at the start of its function, and
+ * the return value of a function is dead if no call uses it. The dead
+ * parameters are removed from the signatures and the calls, and become
+ * local variables, and the dead return values are no longer returned, so
+ * that the computations of the arguments and the return values can be
+ * removed by dead code elimination.
+ * <p>
+ * The main function, and functions called by functions without results
+ * of live variable analysis, are not changed.
+ */
+public class DeadArgumentElimination extends Optimization {
+
+    public static final String ID = "dead-arg-elim";
+
+    /**
+     * The changes of the signatures of the functions, computed for the
+     * whole program before any IR is changed.
+     */
+    private Map<Function, Change> changes;
+
+    public DeadArgumentElimination(AlgorithmConfig config) {
+        super(config);
+    }
+
+    /**
+     * @param deadParams the indexes of the dead parameters
+     * @param deadReturn whether the return value is dead
+     */
+    private record Change(Set<Integer> deadParams, boolean deadReturn) {
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        if (changes == null) {
+            changes = computeChanges();
+        }
+        IROperation operation = new IROperation(ir);
+        for (Call call : ir.calls().toList()) {
+            Function callee = call.getCallExp().getFunction();
+            Change change = changes.get(callee);
+            if (change != null) {
+                List<Var> args = new ArrayList<>();
+                for (int i = 0; i < call.getCallExp().getArgCount(); ++i) {
+                    if (!change.deadParams().contains(i)) {
+                        args.add(call.getCallExp().getArg(i));
+                    }
+                }
+                operation.replace(call, new Call(ir.getFunction(),
+                        new CallExp(callee, args),
+                        change.deadReturn() ? null : call.getResult()));
+            }
+        }
+        Function function = ir.getFunction();
+        Change change = changes.get(function);
+        if (change == null) {
+            return operation.getIR();
+        }
+        if (change.deadReturn()) {
+            for (Stmt stmt : ir.getStmts()) {
+                if (stmt instanceof Return ret && ret.getValue() != null) {
+                    operation.replace(ret, new Return());
+                }
+            }
+        }
+        IR newIR = operation.getIR();
+        List<Var> params = new ArrayList<>();
+        List<Type> paramTypes = new ArrayList<>();
+        List<String> paramNames = function.getParamCount() == 0
+                || function.getParamName(0) == null ? null : new ArrayList<>();
+        for (int i = 0; i < function.getParamCount(); ++i) {
+            if (!change.deadParams().contains(i)) {
+                params.add(newIR.getParam(i));
+                paramTypes.add(function.getParamType(i));
+                if (paramNames != null) {
+                    paramNames.add(function.getParamName(i));
+                }
+            }
+        }
+        function.setSignature(paramTypes,
+                change.deadReturn() ? VoidType.VOID : function.getReturnType(),
+                paramNames);
+        return new DefaultIR(function, params, new LinkedHashSet<>(newIR.getReturnVars()),
+                newIR.getVars(), newIR.getStmts());
+    }
+
+    private static Map<Function, Change> computeChanges() {
+        Program program = World.get().getProgram();
+        Map<Function, List<Call>> calls = Maps.newMap();
+        Map<Call, IR> callerIRs = Maps.newMap();
+        program.allFunctions().forEach(f -> f.getIR().calls().forEach(call -> {
+            calls.computeIfAbsent(call.getCallExp().getFunction(),
+                    callee -> new ArrayList<>()).add(call);
+            callerIRs.put(call, f.getIR());
+        }));
+        Map<Function, Change> changes = Maps.newMap();
+        program.allFunctions().forEach(function -> {
+            IR ir = function.getIR();
+            List<Call> callsOfFunction = calls.getOrDefault(function, List.of());
+            if (function == program.getMainFunction()
+                    || !ir.hasResult(LiveVariable.ID)
+                    || !callsOfFunction.stream().allMatch(call ->
+                    callerIRs.get(call).hasResult(LiveVariable.ID))) {
+                return;
+            }
+            NodeResult<Stmt, SetFact<Var>> liveVars = ir.getResult(LiveVariable.ID);
+            SetFact<Var> liveIn = ir.getStmts().isEmpty() ? new SetFact<>()
+                    : liveVars.getInFact(ir.getStmts().getFirst());
+            Set<Integer> deadParams = Sets.newSet();
+            for (int i = 0; i < ir.getParams().size(); ++i) {
+                if (!liveIn.contains(ir.getParam(i))) {
+                    deadParams.add(i);
+                }
+            }
+            boolean deadReturn = !(function.getReturnType() instanceof VoidType)
+                    && callsOfFunction.stream().noneMatch(call ->
+                    isResultUsed(callerIRs.get(call), call));
+            if (!deadParams.isEmpty() || deadReturn) {
+                changes.put(function, new Change(deadParams, deadReturn));
+            }
+        });
+        return changes;
+    }
+
+    private static boolean isResultUsed(IR callerIR, Call call) {
+        if (call.getResult() == null) {
+            return false;
+        }
+        NodeResult<Stmt, SetFact<Var>> liveVars = callerIR.getResult(LiveVariable.ID);
+        return liveVars.getOutFact(call).contains(call.getResult());
+    }
+}
@@ -0,0 +1,69 @@
+package toyc.algorithm.optimization;
+
+import toyc.ir.DefaultIR;
+import toyc.ir.IR;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Return;
+import toyc.ir.stmt.Stmt;
+import toyc.language.Function;
+import toyc.util.collection.Maps;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Utility methods for the functions created by optimizations from the
+ * IRs of existing functions.
+ */
+final class FunctionClones {
+
+    private FunctionClones() {
+    }
+
+    /**
+     * @return the mapping from the variables of {@code ir} to their
+     * copies in {@code function}.
+     */
+    static Map<Var, Var> copyVars(IR ir, Function function) {
+        Map<Var, Var> varMapping = Maps.newMap();
+        for (Var var : ir.getVars()) {
+            varMapping.put(var, new Var(function, var.getName(), var.getType(), -1,
+                    var.isConst() ? var.getConstValue() : null));
+        }
+        return varMapping;
+    }
+
+    /**
+     * Builds the IR of {@code function}, and sets it to {@code function}.
+     * This method sets the indexes of the statements and the variables.
+     */
+    static void setIR(Function function, List<Var> params, List<Stmt> stmts) {
+        Set<Var> vars = new LinkedHashSet<>(params);
+        Set<Var> returnVars = new LinkedHashSet<>();
+        for (int i = 0; i < stmts.size(); ++i) {
+            Stmt stmt = stmts.get(i);
+            stmt.setIndex(i);
+            stmt.getDef().ifPresent(def -> {
+                if (def instanceof Var var) {
+                    vars.add(var);
+                }
+            });
+            stmt.getUses().forEach(use -> {
+                if (use instanceof Var var) {
+                    vars.add(var);
+                }
+            });
+            if (stmt instanceof Return ret && ret.getValue() != null) {
+                returnVars.add(ret.getValue());
+            }
+        }
+        List<Var> allVars = new ArrayList<>(vars);
+        for (int i = 0; i < allVars.size(); ++i) {
+            allVars.get(i).setIndex(i);
+        }
+        function.setIR(new DefaultIR(function, params, returnVars, allVars, stmts));
+    }
+}
@@ -5,19 +5,27 @@ import toyc.config.AlgorithmConfig;
 import toyc.ir.IR;
 import toyc.ir.exp.Var;
 import toyc.ir.stmt.*;
+import toyc.language.Function;
 import toyc.util.NumericSuffixNaming;
+import toyc.util.collection.Maps;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Inlines the calls selected by {@link FunctionInliningDetection}.
+ * <p>
+ * The callees are inlined bottom-up: before a callee is inlined, the calls
+ * selected in the callee are inlined into it, whatever the order in which
+ * the functions are optimized.
+ */
 public class FunctionInlining extends Optimization {
     public static final String ID = "func-inline-opt";
 
-    private IROperation operation;
-
-    private IR callerIR;
-
-    private NumericSuffixNaming nameManager;
+    /**
+     * The functions which have been optimized, and their optimized IRs.
+     */
+    private final Map<Function, IR> optimized = Maps.newMap();
 
     public FunctionInlining(AlgorithmConfig config) {
         super(config);
@@ -25,84 +33,92 @@ public class FunctionInlining extends Optimization {
 
     @Override
     public IR optimize(IR ir) {
-        operation = new IROperation(ir);
-        callerIR = ir;
-        nameManager = new NumericSuffixNaming(callerIR.getVars().stream()
-                .map(Var::getName)
-                .collect(Collectors.toSet()));
-        Set<Call> callsToInline = ir.getResult(FunctionInliningDetection.ID);
-        for (Call call : callsToInline) {
-            inlineCall(call);
+        IR result = optimized.get(ir.getFunction());
+        if (result == null) {
+            result = new Inliner(ir).inlineCalls();
+            optimized.put(ir.getFunction(), result);
         }
-        return operation.getIR();
+        return result;
     }
 
-    private void inlineCall(Call call) {
-        Map<Var, Var> varMapping = createVarMapping(call);
-        List<Stmt> inlinedStmts = new LinkedList<>(
-                StmtListCopier.copy(
-                        call.getCallExp().getFunction().getIR().getStmts(),
-                        varMapping,
-                        callerIR.getFunction()));
-
-        // Assign constant to callee params if caller args are intconst
-        List<Var> callerArgs = call.getCallExp().getArgs();
-        List<Var> calleeParams = call.getCallExp().getFunction().getIR().getParams();
-        for (int i = 0; i < calleeParams.size(); i++) {
-            Var param = calleeParams.get(i);
-            Var arg = callerArgs.get(i);
-            if (arg.isConst()) {
-                inlinedStmts.addFirst(new AssignLiteral(param,
-                        arg.getConstValue()));
+    private class Inliner {
+
+        private final IROperation operation;
+
+        private final IR callerIR;
+
+        private final NumericSuffixNaming nameManager;
+
+        private Inliner(IR ir) {
+            operation = new IROperation(ir);
+            callerIR = ir;
+            nameManager = new NumericSuffixNaming(callerIR.getVars().stream()
+                    .map(Var::getName)
+                    .collect(Collectors.toSet()));
+        }
+
+        private IR inlineCalls() {
+            if (!callerIR.hasResult(FunctionInliningDetection.ID)) {
+                return callerIR;
+            }
+            Set<Call> callsToInline = callerIR.getResult(FunctionInliningDetection.ID);
+            for (Call call : callsToInline) {
+                inlineCall(call);
             }
+            return operation.getIR();
         }
 
-        Var callerReturnVar = call.getResult();
-        Stmt stmtAfterCall = operation.getNextStmt(call);
-        assert stmtAfterCall != null; // For now, we only deal with non-tail calls
+        private void inlineCall(Call call) {
+            Function callee = call.getCallExp().getFunction();
+            IR calleeIR = optimize(callee.getIR());
+            Map<Var, Var> varMapping = createVarMapping(calleeIR);
+            List<Stmt> inlinedStmts = new LinkedList<>(
+                    StmtListCopier.copy(
+                            calleeIR.getStmts(),
+                            varMapping,
+                            callerIR.getFunction()));
+
+            // Assign caller args to the copies of callee params, as the
+            // callee may assign its params
+            List<Var> callerArgs = call.getCallExp().getArgs();
+            List<Var> calleeParams = calleeIR.getParams();
+            for (int i = calleeParams.size() - 1; i >= 0; i--) {
+                Var param = varMapping.get(calleeParams.get(i));
+                Var arg = callerArgs.get(i);
+                if (arg.isConst()) {
+                    inlinedStmts.addFirst(new AssignLiteral(param,
+                            arg.getConstValue()));
+                } else {
+                    inlinedStmts.addFirst(new Copy(param, arg));
+                }
+            }
 
-        operation.replace(call, inlinedStmts);
+            Var callerReturnVar = call.getResult();
+            Stmt stmtAfterCall = operation.getNextStmt(call);
+            assert stmtAfterCall != null; // For now, we only deal with non-tail calls
 
-        for (Stmt stmt : inlinedStmts) {
-            if (stmt instanceof Return returnStmt) {
-                if (callerReturnVar != null) {
-                    Var calleeReturnVar = returnStmt.getValue();
-                    assert calleeReturnVar != null; // When callerReturnVar is not null, calleeReturnVar must also be non-null
-                    Stmt copy = new Copy(callerReturnVar, calleeReturnVar);
-                    operation.replace(stmt, copy);
-                    Goto gotoStmt = new Goto();
-                    gotoStmt.setTarget(stmtAfterCall);
-                    operation.insertAfter(copy, gotoStmt);
-                } else {
+            operation.replace(call, inlinedStmts);
+
+            for (Stmt stmt : inlinedStmts) {
+                if (stmt instanceof Return returnStmt) {
                     Goto gotoStmt = new Goto();
                     gotoStmt.setTarget(stmtAfterCall);
-                    operation.insertAfter(stmt, gotoStmt);
+                    if (callerReturnVar != null) {
+                        Var calleeReturnVar = returnStmt.getValue();
+                        assert calleeReturnVar != null; // When callerReturnVar is not null, calleeReturnVar must also be non-null
+                        Stmt copy = new Copy(callerReturnVar, calleeReturnVar);
+                        operation.replace(stmt, copy);
+                        operation.insertAfter(copy, gotoStmt);
+                    } else {
+                        operation.replace(stmt, gotoStmt);
+                    }
                 }
             }
         }
-    }
 
-    private Map<Var, Var> createVarMapping(Call call) {
-        IR calleeIR = call.getCallExp().getFunction().getIR();
-        List<Var> calleeParams = calleeIR.getParams();
-        List<Var> callerArgs = call.getCallExp().getArgs();
-        List<Var> calleeVars = calleeIR.getVars();
-        Map<Var, Var> varMapping = new HashMap<>();
-
-        for (int i = 0; i < calleeParams.size(); i++) {
-            Var param = calleeParams.get(i);
-            Var arg = callerArgs.get(i);
-            if (arg.isConst()) {
-                // Arg is constant, so we simply assign callee's param with
-                // constant later
-                varMapping.put(param, param); // Identical
-            } else {
-                varMapping.put(param, arg);
-            }
-        }
-
-        for (Var calleeVar : calleeVars) {
-            if (!varMapping.containsKey(calleeVar)) {
+        private Map<Var, Var> createVarMapping(IR calleeIR) {
+            Map<Var, Var> varMapping = new HashMap<>();
+            for (Var calleeVar : calleeIR.getVars()) {
                 String newVarName = nameManager.getNewVarName(calleeVar.getName());
                 Var clonedVar = new Var(
                         callerIR.getFunction(),
@@ -112,8 +128,7 @@ public class FunctionInlining extends Optimization {
                         calleeVar.isConst() ? calleeVar.getConstValue() : null);
                 varMapping.put(calleeVar, clonedVar);
             }
+            return varMapping;
         }
-
-        return varMapping;
     }
 }
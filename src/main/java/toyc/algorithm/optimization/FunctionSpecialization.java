@@ -0,0 +1,172 @@
+package toyc.algorithm.optimization;
+
+import toyc.World;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.CallExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Stmt;
+import toyc.ir.stmt.StmtListCopier;
+import toyc.language.Function;
+import toyc.language.Program;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Specializes functions for the constant arguments of their calls.
+ * <p>
+ * The signature of a call is the constant arguments of the parameters used
+ * by its callee. A call with a nonempty signature is redirected to a clone
+ * of its callee, which starts by assigning the constants to its parameters,
+ * so that constant propagation and folding can simplify it, unless all
+ * calls of the callee have the same signature, for which interprocedural
+ * constant propagation suffices.
+ * <p>
+ * The clones are named after their callees and signatures, thus each
+ * signature has one clone. Callees with more than {@code max-size}
+ * statements are not cloned, and each callee has at most
+ * {@code max-clones} clones.
+ * <p>
+ * The clones are added to the program, so the call graph built before this
+ * pass misses them; re-run {@code cg} after it for later passes to see them.
+ */
+public class FunctionSpecialization extends Optimization {
+
+    public static final String ID = "func-spec";
+
+    private static final String SPEC_INFIX = ".spec";
+
+    private final int maxSize;
+
+    private final int maxClones;
+
+    /**
+     * The distinct signatures of the calls of each function, computed for
+     * the whole program before any call is redirected.
+     */
+    private Map<Function, Set<SortedMap<Integer, Integer>>> signatures;
+
+    public FunctionSpecialization(AlgorithmConfig config) {
+        super(config);
+        maxSize = getOptions().getInt("max-size");
+        maxClones = getOptions().getInt("max-clones");
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        if (signatures == null) {
+            signatures = Maps.newMap();
+            World.get().getProgram().allFunctions().forEach(function ->
+                    function.getIR().calls().forEach(call ->
+                            signatures.computeIfAbsent(call.getCallExp().getFunction(),
+                                            f -> Sets.newHybridSet())
+                                    .add(getSignature(call))));
+        }
+        IROperation operation = new IROperation(ir);
+        for (Call call : ir.calls().toList()) {
+            Function clone = getClone(call);
+            if (clone != null) {
+                operation.replace(call, new Call(ir.getFunction(),
+                        new CallExp(clone, call.getCallExp().getArgs()),
+                        call.getResult()));
+            }
+        }
+        return operation.getIR();
+    }
+
+    /**
+     * @return the clone of the callee of {@code call} for its signature,
+     * or {@code null} if the call is not specialized.
+     */
+    @Nullable
+    private Function getClone(Call call) {
+        Function callee = call.getCallExp().getFunction();
+        if (isClone(callee) || callee.getIR().getStmts().size() > maxSize) {
+            return null;
+        }
+        SortedMap<Integer, Integer> signature = getSignature(call);
+        if (signature.isEmpty()
+                || signatures.getOrDefault(callee, Set.of()).size() < 2) {
+            return null;
+        }
+        Program program = World.get().getProgram();
+        String name = callee.getName() + SPEC_INFIX + signature.entrySet()
+                .stream()
+                .map(e -> "." + e.getKey() + "_" + e.getValue())
+                .map(s -> s.replace('-', 'm'))
+                .collect(Collectors.joining());
+        Function clone = program.getFunction(name).orElse(null);
+        if (clone == null) {
+            String prefix = callee.getName() + SPEC_INFIX + ".";
+            long clones = program.allFunctions()
+                    .filter(f -> f.getName().startsWith(prefix))
+                    .count();
+            if (clones >= maxClones) {
+                return null;
+            }
+            clone = specialize(callee, name, signature);
+            program.addFunction(clone);
+        }
+        return clone;
+    }
+
+    private static boolean isClone(Function function) {
+        return function.getName().contains(SPEC_INFIX + ".");
+    }
+
+    /**
+     * @return the constant arguments of the parameters used by the callee
+     * of {@code call}, indexed by the parameters.
+     */
+    private static SortedMap<Integer, Integer> getSignature(Call call) {
+        IR calleeIR = call.getCallExp().getFunction().getIR();
+        Set<Var> used = Sets.newHybridSet();
+        calleeIR.getStmts().forEach(stmt -> stmt.getUses().forEach(use -> {
+            if (use instanceof Var var) {
+                used.add(var);
+            }
+        }));
+        SortedMap<Integer, Integer> signature = new TreeMap<>();
+        List<Var> args = call.getCallExp().getArgs();
+        for (int i = 0; i < args.size(); ++i) {
+            if (args.get(i).isConst()
+                    && args.get(i).getConstValue() instanceof IntLiteral literal
+                    && used.contains(calleeIR.getParam(i))) {
+                signature.put(i, literal.getValue());
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * @return the clone of {@code callee}, which assigns the constants of
+     * {@code signature} to its parameters before running the body of
+     * {@code callee}.
+     */
+    private static Function specialize(Function callee, String name,
+                                       SortedMap<Integer, Integer> signature) {
+        Function clone = new Function(name, callee.getParamTypes(),
+                callee.getReturnType(), null);
+        IR ir = callee.getIR();
+        Map<Var, Var> varMapping = FunctionClones.copyVars(ir, clone);
+        List<Var> params = ir.getParams().stream().map(varMapping::get).toList();
+        List<Stmt> stmts = new ArrayList<>();
+        signature.forEach((i, value) ->
+                stmts.add(new AssignLiteral(params.get(i), IntLiteral.get(value))));
+        stmts.addAll(StmtListCopier.copy(ir.getStmts(), varMapping, clone));
+        FunctionClones.setIR(clone, params, stmts);
+        return clone;
+    }
+}
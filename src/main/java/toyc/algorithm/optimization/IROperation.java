@@ -1,14 +1,17 @@
 package toyc.algorithm.optimization;
 
 import toyc.ir.IR;
+import toyc.ir.IRChangeSet;
 import toyc.ir.MutableIR;
 import toyc.ir.stmt.Goto;
 import toyc.ir.stmt.If;
 import toyc.ir.stmt.JumpStmt;
 import toyc.ir.stmt.Stmt;
+import toyc.util.AnalysisException;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -19,12 +22,16 @@ import java.util.Set;
  * 1. Maintains mapping between original and current indices
  * 2. Provides safe operations for complex scenarios (e.g., removing jump targets)
  * 3. Supports both current-index and original-index based operations
+ * 4. Records the changes in an {@link IRChangeSet} attached to the resulting IR
  */
 public class IROperation {
     private final MutableIR ir;
 
+    private final IRChangeSet changes;
+
     public IROperation(IR ir) {
         this.ir = new MutableIR(ir);
+        this.changes = new IRChangeSet(ir);
     }
 
     /**
@@ -36,6 +43,7 @@ public class IROperation {
     public void insertBefore(@Nonnull Stmt stmt, @Nonnull Stmt newStmt) {
         newStmt.setLineNumber(stmt.getLineNumber());
         ir.insertBefore(stmt, newStmt);
+        changes.recordInsert(newStmt);
     }
 
     /**
@@ -47,6 +55,51 @@ public class IROperation {
     public void insertAfter(@Nonnull Stmt stmt, @Nonnull Stmt newStmt) {
         newStmt.setLineNumber(stmt.getLineNumber());
         ir.insertAfter(stmt, newStmt);
+        changes.recordInsert(newStmt);
+    }
+
+    /**
+     * Insert a statement at the start of the specified {@code stmt}, i.e.,
+     * before it, and update the statements jumping to {@code stmt} to
+     * jump to the new statement, so that all paths reaching {@code stmt}
+     * execute the new statement.
+     *
+     * @param stmt    the statement before which to insert
+     * @param newStmt the statement to insert
+     */
+    public void prepend(@Nonnull Stmt stmt, @Nonnull Stmt newStmt) {
+        updateTargets(stmt, newStmt);
+        insertBefore(stmt, newStmt);
+    }
+
+    /**
+     * Split the edge from the specified jump statement to its target,
+     * by appending a new block, which executes the given statements and
+     * then jumps to the original target, to the end of the IR.
+     *
+     * @param jump     the jump statement whose target edge is split
+     * @param newStmts the statements to execute on the edge
+     * @throws AnalysisException if the last statement of the IR can fall
+     *                           through, thus the new block cannot be appended
+     */
+    public void splitJump(@Nonnull JumpStmt jump, @Nonnull List<Stmt> newStmts) {
+        Stmt last = ir.getStmts().getLast();
+        if (last.canFallThrough()) {
+            throw new AnalysisException("splitJump: last statement " +
+                    last + " can fall through");
+        }
+        Goto back = new Goto();
+        back.setTarget(jump.getTarget());
+        List<Stmt> block = new ArrayList<>(newStmts);
+        block.add(back);
+        for (Stmt newStmt : block) {
+            newStmt.setLineNumber(jump.getLineNumber());
+            ir.insertAfter(last, newStmt);
+            changes.recordInsert(newStmt);
+            last = newStmt;
+        }
+        jump.setTarget(block.getFirst());
+        changes.recordTouch(jump);
     }
 
     /**
@@ -62,7 +115,9 @@ public class IROperation {
         if (nextStmt != null) {
             updateTargets(stmt, nextStmt);
         }
+        recordNeighbors(stmt);
         ir.removeStmt(stmt);
+        changes.recordRemove(stmt);
     }
 
     /**
@@ -76,7 +131,9 @@ public class IROperation {
     public void replace(@Nonnull Stmt stmt, @Nonnull Stmt newStmt) {
         updateTargets(stmt, newStmt);
         newStmt.setLineNumber(stmt.getLineNumber());
+        recordNeighbors(stmt);
         ir.replaceStmt(stmt, newStmt);
+        changes.recordReplace(stmt, List.of(newStmt));
     }
 
     /**
@@ -90,30 +147,37 @@ public class IROperation {
     public void replace(@Nonnull Stmt stmt, @Nonnull List<Stmt> newStmts) {
         Stmt firstStmt = newStmts.getFirst();
         updateTargets(stmt, firstStmt);
+        recordNeighbors(stmt);
         for (Stmt newStmt : newStmts) {
             newStmt.setLineNumber(stmt.getLineNumber());
             ir.insertBefore(stmt, newStmt);
         }
         ir.removeStmt(stmt);
+        changes.recordReplace(stmt, List.copyOf(newStmts));
     }
 
-    public void insertUnrolledLoop(@Nonnull Stmt header, @Nonnull List<Stmt> body) {
-        // Check if the header statement still exists in the IR
-        if (!ir.contains(header)) {
-            // Header was removed by previous optimizations, skip loop unrolling
-            return;
-        }
-        
-        Stmt newHeader = body.getFirst();
+    /**
+     * Insert statements as the preheader of a loop, i.e., before the loop
+     * header, and update the jumps to the header from outside the loop
+     * to jump to the first new statement. The back edges of the loop still
+     * jump to the header, thus the new statements run once per loop entry.
+     *
+     * @param header   the header of the loop
+     * @param loopBody the statements of the loop
+     * @param newStmts the statements to insert
+     */
+    public void insertPreheader(@Nonnull Stmt header, @Nonnull Set<Stmt> loopBody,
+                                @Nonnull List<Stmt> newStmts) {
+        Stmt firstStmt = newStmts.getFirst();
         for (JumpStmt stmt : ir.getPredecessors(header)) {
-            // Only update the jump stmts before old header
-            if (stmt.getIndex() < header.getIndex()) {
-                stmt.setTarget(newHeader);
+            if (stmt.getTarget() == header && !loopBody.contains(stmt)) {
+                stmt.setTarget(firstStmt);
+                changes.recordTouch(stmt);
             }
         }
-        for (Stmt bodyStmt : body) {
-            bodyStmt.setLineNumber(header.getLineNumber());
-            ir.insertBefore(header, bodyStmt);
+        changes.recordTouch(header);
+        for (Stmt newStmt : newStmts) {
+            insertBefore(header, newStmt);
         }
     }
 
@@ -133,7 +197,36 @@ public class IROperation {
     @Nonnull
     public IR getIR() {
         optimizeControlFlow();
-        return ir.toImmutableIR();
+        IR newIR = ir.toImmutableIR();
+        if (newIR != changes.getBase() && !changes.isEmpty()) {
+            changes.attachTo(newIR);
+        }
+        return newIR;
+    }
+
+    /**
+     * Records the statements adjacent to {@code stmt} in the control flow,
+     * before {@code stmt} is removed or replaced, i.e., its previous and
+     * next statements, and its target if it is a jump. The next statement
+     * is always recorded, as it may lose the edge from {@code stmt},
+     * e.g., when an {@link If} is replaced by a {@link Goto}.
+     */
+    private void recordNeighbors(@Nonnull Stmt stmt) {
+        // find both neighbors in one pass, like the edit itself
+        Stmt prevStmt = null;
+        Iterator<Stmt> iterator = ir.getStmts().iterator();
+        while (iterator.hasNext()) {
+            Stmt curr = iterator.next();
+            if (curr == stmt) {
+                changes.recordTouch(prevStmt);
+                changes.recordTouch(iterator.hasNext() ? iterator.next() : null);
+                break;
+            }
+            prevStmt = curr;
+        }
+        if (stmt instanceof JumpStmt jumpStmt) {
+            changes.recordTouch(jumpStmt.getTarget());
+        }
     }
 
     /**
@@ -148,6 +241,7 @@ public class IROperation {
             for (JumpStmt sourceStmt : sourceStmts) {
                 if (sourceStmt.getTarget() == oldStmt) {
                     sourceStmt.setTarget(newStmt);
+                    changes.recordTouch(sourceStmt);
                 }
             }
         }
@@ -0,0 +1,115 @@
+package toyc.algorithm.optimization;
+
+import toyc.World;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.Value;
+import toyc.algorithm.analysis.dataflow.inter.InterSparseConstantPropagation;
+import toyc.algorithm.analysis.dataflow.inter.SCCPResult;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Stmt;
+import toyc.language.Function;
+import toyc.language.Program;
+
+import java.util.List;
+
+/**
+ * Applies the results of {@link InterSparseConstantPropagation}.
+ * <p>
+ * The result of a call whose callee always returns the same constant is
+ * assigned the constant after the call, parameters which have the same
+ * constant value at all calls are assigned the constant at the start of
+ * their functions, and calls which are never executed are removed. Then
+ * the functions which are never executed are removed from the program.
+ */
+public class InterConstantFolding extends Optimization {
+
+    public static final String ID = "inter-const-fold";
+
+    private SCCPResult result;
+
+    public InterConstantFolding(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        if (result == null) {
+            result = World.get().getResult(InterSparseConstantPropagation.ID);
+            removeUnreachableFunctions();
+        }
+        if (!result.isAnalyzed(ir) || !result.isReachable(ir.getFunction())) {
+            return ir;
+        }
+        IROperation operation = new IROperation(ir);
+        for (Call call : ir.calls().toList()) {
+            if (!result.isExecutable(call)) {
+                operation.remove(call);
+                continue;
+            }
+            Var var = call.getResult();
+            Value value = result.getReturnValue(call.getCallExp().getFunction());
+            if (var != null && value.isConstant()) {
+                // keep the call for its side effects
+                operation.replace(call, List.of(
+                        new Call(ir.getFunction(), call.getCallExp()),
+                        new AssignLiteral(var, IntLiteral.get(value.getConstant()))));
+            }
+        }
+        Program program = World.get().getProgram();
+        if (ir.getFunction() != program.getMainFunction() && !ir.getStmts().isEmpty()) {
+            Stmt first = ir.getStmts().getFirst();
+            for (Var param : ir.getParams()) {
+                Value value = result.getValue(param);
+                if (value.isConstant() && !isAssignedAtStart(ir, param)) {
+                    operation.insertBefore(first,
+                            new AssignLiteral(param, IntLiteral.get(value.getConstant())));
+                }
+            }
+        }
+        return operation.getIR();
+    }
+
+    /**
+     * Removes the functions which are never executed, unless they are
+     * called by functions which were not analyzed.
+     */
+    private void removeUnreachableFunctions() {
+        Program program = World.get().getProgram();
+        List<Function> unreachable = program.allFunctions()
+                .filter(f -> !result.isReachable(f))
+                .toList();
+        for (Function function : unreachable) {
+            boolean called = program.allFunctions().anyMatch(f -> {
+                IR ir = f.getIR();
+                return result.isAnalyzed(ir)
+                        ? ir.calls().anyMatch(call -> result.isExecutable(call)
+                                && call.getCallExp().getFunction() == function)
+                        : ir.calls().anyMatch(call ->
+                                call.getCallExp().getFunction() == function);
+            });
+            if (!called) {
+                program.removeFunction(function);
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the leading literal assignments of {@code ir}
+     * assign {@code param}.
+     */
+    private static boolean isAssignedAtStart(IR ir, Var param) {
+        for (Stmt stmt : ir.getStmts()) {
+            if (!(stmt instanceof AssignLiteral assign)) {
+                break;
+            }
+            if (assign.getLValue() == param) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,338 @@
+package toyc.algorithm.optimization;
+
+import toyc.algorithm.analysis.dataflow.analysis.LiveVariable;
+import toyc.algorithm.analysis.dataflow.fact.NodeResult;
+import toyc.algorithm.analysis.dataflow.fact.SetFact;
+import toyc.algorithm.analysis.deadcode.DeadCodeDetection;
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.analysis.loop.AddRecurrence;
+import toyc.algorithm.analysis.loop.Loop;
+import toyc.algorithm.analysis.loop.LoopDetection;
+import toyc.algorithm.analysis.loop.LoopInfo;
+import toyc.algorithm.analysis.loop.ScalarEvolution;
+import toyc.algorithm.analysis.loop.ScalarEvolutionAnalysis;
+import toyc.algorithm.analysis.loop.TripCount;
+import toyc.algorithm.analysis.loop.TripCountAnalysis;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.BinaryExp;
+import toyc.ir.exp.ConditionExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.Goto;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.Nop;
+import toyc.ir.stmt.Stmt;
+import toyc.ir.stmt.Unary;
+import toyc.language.type.IntType;
+import toyc.util.NumericSuffixNaming;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Replaces counting loops without side effects by the closed forms of
+ * the values which they leave to the code after them.
+ * <p>
+ * The value of each variable defined in the loop and live at the exit is
+ * computed from its scalar evolution and the trip count {@code n}, as
+ * {@code a0 + a1 * n + a2 * C(n, 2)}. All computations wrap around in 32
+ * bits, which is exact for polynomials with integer coefficients, given
+ * {@code C(n, 2)} is computed exactly, as {@code (n / 2) * (n - 1 + n % 2)}
+ * for {@code 0 <= n <= INT_MAX}.
+ * <p>
+ * Non-constant trip counts are computed for steps of 1 and -1, for which
+ * the loops always terminate. The loop is replaced only if all the live
+ * values are known, as in a non-SSA IR the loop would still compute the
+ * replaced values for its own use.
+ */
+public class LoopDeletion extends Optimization {
+
+    public static final String ID = "loop-deletion";
+
+    private static final String SCEV_TEMP = "%scev";
+
+    private static final String SCEV_CONST = "%scevconst";
+
+    private IR ir;
+
+    private CFG<Stmt> cfg;
+
+    private NumericSuffixNaming nameManager;
+
+    /**
+     * The temporary variables created for the current loop.
+     */
+    private final Set<Var> temps = Sets.newHybridSet();
+
+    public LoopDeletion(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        this.ir = ir;
+        cfg = ir.getResult(CFGBuilder.ID);
+        nameManager = new NumericSuffixNaming(ir.getVars().stream()
+                .map(Var::getName)
+                .collect(Collectors.toSet()));
+        LoopInfo loops = ir.getResult(LoopDetection.ID);
+        Map<Loop, TripCount> tripCounts = ir.getResult(TripCountAnalysis.ID);
+        ScalarEvolution scev = ir.getResult(ScalarEvolutionAnalysis.ID);
+        NodeResult<Stmt, SetFact<Var>> liveVars = ir.getResult(LiveVariable.ID);
+        IROperation operation = new IROperation(ir);
+        for (Loop loop : loops.getLoops()) {
+            TripCount tripCount = tripCounts.get(loop);
+            List<Stmt> range = LoopRanges.getIndexRange(ir, loop);
+            if (tripCount == null || range == null
+                    || !loops.getSubLoops(loop).isEmpty()
+                    || !LoopRanges.isSingleEntry(cfg, range)
+                    || !Set.of(tripCount.test()).equals(loops.getExitingStmts(loop))
+                    || !loop.body().stream().allMatch(LoopDeletion::isRemovable)) {
+                continue;
+            }
+            If test = tripCount.test();
+            Stmt exitSucc = tripCount.continueOnTrue()
+                    ? ir.getStmt(test.getIndex() + 1)
+                    : test.getTarget();
+            Stmt exitTarget = LoopRanges.skipGotos(loop, range, exitSucc);
+            if (exitTarget == null) {
+                continue;
+            }
+            // the values of the live variables, in terms of the trip count
+            Map<Var, AddRecurrence> exitValues = Maps.newLinkedHashMap();
+            boolean known = true;
+            for (Stmt stmt : loop.body()) {
+                if (stmt.getDef().orElse(null) instanceof Var var
+                        && liveVars.getInFact(exitSucc).contains(var)) {
+                    AddRecurrence value = scev.getExitValues(loop).get(var);
+                    known &= value != null;
+                    exitValues.put(var, value);
+                }
+            }
+            if (known) {
+                List<Stmt> stmts = replace(tripCount, exitValues);
+                if (stmts != null) {
+                    Goto gotoExit = new Goto();
+                    gotoExit.setTarget(exitTarget);
+                    stmts.add(gotoExit);
+                    operation.insertPreheader(loop.header(), Set.copyOf(range), stmts);
+                    range.forEach(operation::remove);
+                }
+            }
+        }
+        return operation.getIR();
+    }
+
+    /**
+     * @return {@code true} if {@code stmt} has no effect other than
+     * defining a variable or jumping.
+     */
+    private static boolean isRemovable(Stmt stmt) {
+        if (stmt instanceof Binary binary) {
+            return DeadCodeDetection.hasNoSideEffect(binary.getRValue());
+        } else if (stmt instanceof Unary unary) {
+            return DeadCodeDetection.hasNoSideEffect(unary.getRValue());
+        }
+        return stmt instanceof AssignLiteral || stmt instanceof Copy
+                || stmt instanceof Nop || stmt instanceof Goto || stmt instanceof If;
+    }
+
+    /**
+     * @return the statements which assign the exit values to the variables,
+     * or {@code null} if the trip count cannot be computed.
+     */
+    @Nullable
+    private List<Stmt> replace(TripCount tripCount, Map<Var, AddRecurrence> exitValues) {
+        temps.clear();
+        List<Stmt> stmts = new ArrayList<>();
+        int degree = exitValues.values().stream()
+                .mapToInt(AddRecurrence::degree)
+                .max()
+                .orElse(0);
+        Map<Var, Var> results = Maps.newLinkedHashMap();
+        if (tripCount.count() != null) {
+            int n = tripCount.count();
+            exitValues.forEach((var, value) ->
+                    results.put(var, emitLinear(value.evaluate(n), stmts)));
+        } else {
+            Var n = emitTripCount(tripCount, degree, stmts);
+            if (n == null) {
+                return null;
+            }
+            Var binomial = degree >= 2 ? emitBinomial2(n, stmts) : null;
+            exitValues.forEach((var, value) -> {
+                Var result = emitLinear(value.getOperand(0), stmts);
+                result = add(result, emitProduct(value.getOperand(1), n, stmts), stmts);
+                if (binomial != null) {
+                    result = add(result, emitProduct(value.getOperand(2), binomial, stmts), stmts);
+                }
+                results.put(var, result);
+            });
+        }
+        // the results are computed from the values before the loop,
+        // thus the variables are assigned after all results are computed
+        results.replaceAll((var, result) -> {
+            if (temps.contains(result)) {
+                return result;
+            }
+            Var temp = newTemp();
+            stmts.add(new Copy(temp, result));
+            return temp;
+        });
+        results.forEach((var, result) -> stmts.add(new Copy(var, result)));
+        return stmts;
+    }
+
+    /**
+     * Emits the trip count {@code n} for steps of 1 and -1, which are the
+     * distances between the value of the induction variable at the first
+     * test and the bound, or 0 if the first test fails.
+     *
+     * @return the variable holding the trip count, or {@code null} if it
+     * cannot be computed or, for recurrences of degree 2, it may exceed
+     * {@code INT_MAX}.
+     */
+    @Nullable
+    private Var emitTripCount(TripCount tripCount, int degree, List<Stmt> stmts) {
+        int step = tripCount.getStep();
+        if (step != 1 && step != -1) {
+            return null;
+        }
+        // the bound of the strict comparison
+        Integer bound = tripCount.boundValue();
+        switch (tripCount.op()) {
+            case LE -> {
+                if (bound == null || bound == Integer.MAX_VALUE) {
+                    return null;
+                }
+                ++bound;
+            }
+            case GE -> {
+                if (bound == null || bound == Integer.MIN_VALUE) {
+                    return null;
+                }
+                --bound;
+            }
+            default -> {
+            }
+        }
+        Integer first = tripCount.initialValue();
+        if (first != null && tripCount.updateBeforeTest()) {
+            first += step;
+        }
+        if (degree >= 2) {
+            long firstLo = first != null ? first : Integer.MIN_VALUE;
+            long firstHi = first != null ? first : Integer.MAX_VALUE;
+            long boundLo = bound != null ? bound : Integer.MIN_VALUE;
+            long boundHi = bound != null ? bound : Integer.MAX_VALUE;
+            long max = step > 0 ? boundHi - firstLo : firstHi - boundLo;
+            if (max > Integer.MAX_VALUE) {
+                return null;
+            }
+        }
+        Var firstVar;
+        if (first != null) {
+            firstVar = newConst(first, stmts);
+        } else if (tripCount.updateBeforeTest()) {
+            firstVar = newTemp();
+            stmts.add(new Binary(firstVar, new ArithmeticExp(ArithmeticExp.Op.ADD,
+                    tripCount.iv().var(), newConst(step, stmts))));
+        } else {
+            firstVar = tripCount.iv().var();
+        }
+        Var boundVar = bound != null ? newConst(bound, stmts) : tripCount.bound();
+        Var high = step > 0 ? boundVar : firstVar;
+        Var low = step > 0 ? firstVar : boundVar;
+        // n = (low < high) * (high - low)
+        Var runs = emit(new ConditionExp(ConditionExp.Op.LT, low, high), stmts);
+        Var distance = emit(new ArithmeticExp(ArithmeticExp.Op.SUB, high, low), stmts);
+        return emit(new ArithmeticExp(ArithmeticExp.Op.MUL, runs, distance), stmts);
+    }
+
+    /**
+     * Emits {@code C(n, 2) = (n / 2) * (n - 1 + n % 2)}, where {@code n / 2}
+     * and one of {@code n - 1} and {@code n} are exact halves of
+     * {@code n * (n - 1)}.
+     */
+    private Var emitBinomial2(Var n, List<Stmt> stmts) {
+        Var two = newConst(2, stmts);
+        Var half = emit(new ArithmeticExp(ArithmeticExp.Op.DIV, n, two), stmts);
+        Var odd = emit(new ArithmeticExp(ArithmeticExp.Op.REM, n, two), stmts);
+        Var other = emit(new ArithmeticExp(ArithmeticExp.Op.SUB, n, newConst(1, stmts)), stmts);
+        other = emit(new ArithmeticExp(ArithmeticExp.Op.ADD, other, odd), stmts);
+        return emit(new ArithmeticExp(ArithmeticExp.Op.MUL, half, other), stmts);
+    }
+
+    /**
+     * @return the variable holding {@code coefficient * factor},
+     * or {@code null} if it is 0.
+     */
+    @Nullable
+    private Var emitProduct(AddRecurrence.Linear coefficient, Var factor, List<Stmt> stmts) {
+        if (coefficient.isZero()) {
+            return null;
+        } else if (coefficient.isConstant() && coefficient.constant() == 1) {
+            return factor;
+        }
+        return emit(new ArithmeticExp(ArithmeticExp.Op.MUL,
+                emitLinear(coefficient, stmts), factor), stmts);
+    }
+
+    private Var emitLinear(AddRecurrence.Linear linear, List<Stmt> stmts) {
+        Var result = null;
+        for (Map.Entry<Var, Integer> e : linear.coefficients().entrySet()) {
+            Var term = e.getValue() == 1 ? e.getKey()
+                    : emit(new ArithmeticExp(ArithmeticExp.Op.MUL,
+                    e.getKey(), newConst(e.getValue(), stmts)), stmts);
+            result = add(result, term, stmts);
+        }
+        if (result == null) {
+            return newConst(linear.constant(), stmts);
+        } else if (linear.constant() != 0) {
+            result = add(result, newConst(linear.constant(), stmts), stmts);
+        }
+        return result;
+    }
+
+    @Nullable
+    private Var add(@Nullable Var v1, @Nullable Var v2, List<Stmt> stmts) {
+        if (v1 == null || v2 == null) {
+            return v1 == null ? v2 : v1;
+        }
+        return emit(new ArithmeticExp(ArithmeticExp.Op.ADD, v1, v2), stmts);
+    }
+
+    private Var emit(BinaryExp exp, List<Stmt> stmts) {
+        Var temp = newTemp();
+        stmts.add(new Binary(temp, exp));
+        return temp;
+    }
+
+    private Var newConst(int value, List<Stmt> stmts) {
+        IntLiteral literal = IntLiteral.get(value);
+        Var constVar = new Var(ir.getFunction(),
+                nameManager.getNewVarName(SCEV_CONST), IntType.INT, -1, literal);
+        stmts.add(new AssignLiteral(constVar, literal));
+        temps.add(constVar);
+        return constVar;
+    }
+
+    private Var newTemp() {
+        Var temp = new Var(ir.getFunction(),
+                nameManager.getNewVarName(SCEV_TEMP), IntType.INT, -1);
+        temps.add(temp);
+        return temp;
+    }
+}
@@ -0,0 +1,179 @@
+package toyc.algorithm.optimization;
+
+import toyc.algorithm.analysis.dataflow.analysis.LiveVariable;
+import toyc.algorithm.analysis.dataflow.fact.NodeResult;
+import toyc.algorithm.analysis.dataflow.fact.SetFact;
+import toyc.algorithm.analysis.deadcode.DeadCodeDetection;
+import toyc.algorithm.analysis.defuse.DefUse;
+import toyc.algorithm.analysis.defuse.DefUseAnalysis;
+import toyc.algorithm.analysis.loop.Loop;
+import toyc.algorithm.analysis.loop.LoopDetection;
+import toyc.algorithm.analysis.loop.LoopInfo;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.RValue;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.AssignStmt;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.DefinitionStmt;
+import toyc.ir.stmt.Stmt;
+import toyc.ir.stmt.Unary;
+import toyc.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loop-invariant code motion, which hoists the invariant computations
+ * of loops into preheaders created before the loop headers.
+ * <p>
+ * A statement {@code x = e} in loop {@code L} is hoisted if
+ * <ul>
+ *     <li>{@code e} has no side effect (in particular, it cannot trap),
+ *     which holds for calls of pure functions,</li>
+ *     <li>each definition of each operand reaching the statement is outside
+ *     {@code L}, or is the only reaching definition and is hoisted,</li>
+ *     <li>the statement is the only definition of {@code x} in {@code L}, and</li>
+ *     <li>{@code x} is not live at the entry of the header of {@code L}.</li>
+ * </ul>
+ * The last two conditions ensure that all uses of {@code x} in or after
+ * {@code L} reached by the statement see the same value when the statement
+ * runs before the loop. As the hoisted computations cannot trap, they need
+ * not dominate the exits of the loop.
+ * <p>
+ * Loops are processed from the outermost ones, so that a statement is
+ * hoisted out of all loops in which it is invariant.
+ */
+public class LoopInvariantCodeMotion extends Optimization {
+
+    public static final String ID = "licm";
+
+    private IR ir;
+
+    private DefUse defUse;
+
+    private NodeResult<Stmt, SetFact<Var>> liveVars;
+
+    public LoopInvariantCodeMotion(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        this.ir = ir;
+        defUse = ir.getResult(DefUseAnalysis.ID);
+        liveVars = ir.getResult(LiveVariable.ID);
+        LoopInfo loops = ir.getResult(LoopDetection.ID);
+        IROperation operation = new IROperation(ir);
+        Set<Stmt> hoisted = Sets.newSet();
+        List<Loop> outerFirst = loops.getLoops()
+                .stream()
+                .sorted(Comparator.comparingInt(loops::getDepth))
+                .toList();
+        for (Loop loop : outerFirst) {
+            if (hoisted.contains(loop.header())
+                    || !LoopRanges.canCreatePreheader(ir, loop)) {
+                continue;
+            }
+            List<Stmt> invariants = findInvariants(loop, hoisted);
+            if (!invariants.isEmpty()) {
+                operation.insertPreheader(loop.header(), loop.body(),
+                        invariants.stream().map(this::copy).toList());
+                for (Stmt stmt : invariants) {
+                    operation.remove(stmt);
+                }
+                hoisted.addAll(invariants);
+            }
+        }
+        return operation.getIR();
+    }
+
+    /**
+     * @return the statements to hoist out of {@code loop}, where each
+     * statement follows the hoisted definitions of its operands.
+     */
+    private List<Stmt> findInvariants(Loop loop, Set<Stmt> hoisted) {
+        List<Stmt> invariants = new ArrayList<>();
+        Set<Stmt> invariantSet = Sets.newSet();
+        boolean changed;
+        do {
+            changed = false;
+            for (Stmt stmt : loop.body()) {
+                if (!hoisted.contains(stmt) && !invariantSet.contains(stmt)
+                        && isInvariant(stmt, loop, hoisted, invariantSet)) {
+                    invariants.add(stmt);
+                    invariantSet.add(stmt);
+                    changed = true;
+                }
+            }
+        } while (changed);
+        return invariants;
+    }
+
+    private boolean isInvariant(Stmt stmt, Loop loop,
+                                Set<Stmt> hoisted, Set<Stmt> invariantSet) {
+        RValue rvalue = getHoistableRValue(stmt);
+        if (rvalue == null || !DeadCodeDetection.hasNoSideEffect(rvalue)) {
+            return false;
+        }
+        for (RValue use : stmt.getUses()) {
+            if (use instanceof Var var) {
+                Set<Stmt> defs = defUse.getDefs(stmt, var);
+                for (Stmt def : defs) {
+                    boolean outside = !loop.contains(def) || hoisted.contains(def);
+                    if (!outside && !(defs.size() == 1 && invariantSet.contains(def))) {
+                        return false;
+                    }
+                }
+            }
+        }
+        Var lhs = ((DefinitionStmt<?, ?>) stmt).getLValue() instanceof Var v ? v : null;
+        if (lhs == null || liveVars.getInFact(loop.header()).contains(lhs)) {
+            return false;
+        }
+        for (Stmt other : loop.body()) {
+            if (other != stmt && !hoisted.contains(other)
+                    && other.getDef().filter(lhs::equals).isPresent()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the right-hand side of {@code stmt} if it is a kind of
+     * statement which can be hoisted, otherwise {@code null}.
+     */
+    @Nullable
+    private static RValue getHoistableRValue(Stmt stmt) {
+        if (stmt instanceof Binary || stmt instanceof Unary
+                || stmt instanceof Copy || stmt instanceof AssignLiteral) {
+            return ((AssignStmt<?, ?>) stmt).getRValue();
+        } else if (stmt instanceof Call call && call.getResult() != null) {
+            // calls of pure functions, see DeadCodeDetection.hasNoSideEffect()
+            return call.getCallExp();
+        }
+        return null;
+    }
+
+    private Stmt copy(Stmt stmt) {
+        if (stmt instanceof Binary binary) {
+            return new Binary(binary.getLValue(), binary.getRValue());
+        } else if (stmt instanceof Unary unary) {
+            return new Unary(unary.getLValue(), unary.getRValue());
+        } else if (stmt instanceof Copy copy) {
+            return new Copy(copy.getLValue(), copy.getRValue());
+        } else if (stmt instanceof Call call) {
+            return new Call(ir.getFunction(), call.getCallExp(), call.getResult());
+        } else {
+            AssignLiteral assign = (AssignLiteral) stmt;
+            return new AssignLiteral(assign.getLValue(), assign.getRValue());
+        }
+    }
+}
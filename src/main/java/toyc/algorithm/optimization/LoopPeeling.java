@@ -0,0 +1,147 @@
+package toyc.algorithm.optimization;
+
+import toyc.algorithm.analysis.dataflow.analysis.constprop.CPFact;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.Value;
+import toyc.algorithm.analysis.dataflow.fact.NodeResult;
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.analysis.loop.Loop;
+import toyc.algorithm.analysis.loop.LoopDetection;
+import toyc.algorithm.analysis.loop.LoopInfo;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.JumpStmt;
+import toyc.ir.stmt.Stmt;
+import toyc.ir.stmt.StmtListCopier;
+import toyc.util.collection.Sets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loop peeling, which copies the first iterations of a loop before it.
+ * <p>
+ * Constant propagation meets the values entering a loop with the values
+ * of its back edges, thus a variable which is constant when entering the
+ * loop, but assigned another value in the loop, is not a constant at the
+ * header. A loop with such a variable has its first {@code count}
+ * iterations peeled, where the back edges of each copy jump to the next
+ * copy, and those of the last copy to the original loop, so that constant
+ * folding can specialize the copies.
+ * <p>
+ * Loops with more than {@code max-size} statements are not peeled.
+ */
+public class LoopPeeling extends Optimization {
+
+    public static final String ID = "loop-peel";
+
+    private final int count;
+
+    private final int maxSize;
+
+    private IR ir;
+
+    private CFG<Stmt> cfg;
+
+    private NodeResult<Stmt, CPFact> constants;
+
+    public LoopPeeling(AlgorithmConfig config) {
+        super(config);
+        count = getOptions().getInt("count");
+        maxSize = getOptions().getInt("max-size");
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        this.ir = ir;
+        cfg = ir.getResult(CFGBuilder.ID);
+        constants = ir.getResult(ConstantPropagation.ID);
+        LoopInfo loops = ir.getResult(LoopDetection.ID);
+        IROperation operation = new IROperation(ir);
+        // the statements of the peeled loops, which are not peeled again
+        Set<Stmt> changed = Sets.newSet();
+        List<Loop> innerFirst = loops.getLoops()
+                .stream()
+                .sorted(Comparator.comparingInt(loops::getDepth).reversed())
+                .toList();
+        for (Loop loop : innerFirst) {
+            List<Stmt> range = LoopRanges.getIndexRange(ir, loop);
+            if (count > 0 && range != null && range.size() <= maxSize
+                    && Collections.disjoint(changed, range)
+                    && LoopRanges.isSingleEntry(cfg, range)
+                    && hasFirstIterationConstant(loop)) {
+                peel(operation, loop, range);
+                changed.addAll(range);
+            }
+        }
+        return operation.getIR();
+    }
+
+    /**
+     * @return {@code true} if a variable defined in {@code loop} has the
+     * same constant value on all edges entering {@code loop}, but is not
+     * a constant at its header.
+     */
+    private boolean hasFirstIterationConstant(Loop loop) {
+        CPFact headerFact = constants.getInFact(loop.header());
+        if (headerFact == null) {
+            return false;
+        }
+        return loop.body()
+                .stream()
+                .flatMap(stmt -> stmt.getDef().stream())
+                .filter(def -> def instanceof Var)
+                .map(def -> (Var) def)
+                .anyMatch(var -> !headerFact.get(var).isConstant()
+                        && getEntryValue(loop, var).isConstant());
+    }
+
+    private Value getEntryValue(Loop loop, Var var) {
+        Value entry = Value.getUndef();
+        for (Stmt pred : cfg.getPredsOf(loop.header())) {
+            if (!loop.contains(pred)) {
+                CPFact fact = constants.getOutFact(pred);
+                Value value = fact == null ? Value.getNAC() : fact.get(var);
+                if (!value.isConstant() || entry.isConstant() && !entry.equals(value)) {
+                    return Value.getNAC();
+                }
+                entry = value;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Inserts {@code count} copies of {@code range} before the loop, where
+     * the jumps of each copy to the header go to the next copy, and those
+     * of the last copy to the original loop.
+     */
+    private void peel(IROperation operation, Loop loop, List<Stmt> range) {
+        List<Stmt> stmts = new ArrayList<>();
+        List<Stmt> previous = null;
+        for (int i = 0; i < count; ++i) {
+            List<Stmt> copy = StmtListCopier.copy(range, Map.of(), ir.getFunction());
+            if (previous != null) {
+                retarget(previous, previous.getFirst(), copy.getFirst());
+            }
+            stmts.addAll(copy);
+            previous = copy;
+        }
+        retarget(previous, previous.getFirst(), loop.header());
+        operation.insertPreheader(loop.header(), Set.copyOf(range), stmts);
+    }
+
+    private static void retarget(List<Stmt> stmts, Stmt oldTarget, Stmt newTarget) {
+        for (Stmt stmt : stmts) {
+            if (stmt instanceof JumpStmt jump && jump.getTarget() == oldTarget) {
+                jump.setTarget(newTarget);
+            }
+        }
+    }
+}
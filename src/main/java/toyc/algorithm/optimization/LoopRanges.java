@@ -0,0 +1,87 @@
+package toyc.algorithm.optimization;
+
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.loop.Loop;
+import toyc.ir.IR;
+import toyc.ir.stmt.Goto;
+import toyc.ir.stmt.Stmt;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Utility methods for the loops which are copied or removed as the
+ * contiguous statements from their headers to their last tails.
+ */
+final class LoopRanges {
+
+    private LoopRanges() {
+    }
+
+    /**
+     * @return the statements from the header of {@code loop} to its last
+     * tail, or {@code null} if the body of {@code loop} is not within
+     * this index range.
+     */
+    @Nullable
+    static List<Stmt> getIndexRange(IR ir, Loop loop) {
+        int headerIndex = loop.header().getIndex();
+        int tailIndex = loop.tails().stream()
+                .mapToInt(Stmt::getIndex)
+                .max()
+                .orElse(headerIndex);
+        for (Stmt stmt : loop.body()) {
+            if (stmt.getIndex() < headerIndex || stmt.getIndex() > tailIndex) {
+                return null;
+            }
+        }
+        return ir.getStmts().subList(headerIndex, tailIndex + 1);
+    }
+
+    /**
+     * @return {@code true} if {@code range} is only entered at its first
+     * statement, and does not fall through to the statement after it.
+     */
+    static boolean isSingleEntry(CFG<Stmt> cfg, List<Stmt> range) {
+        Set<Stmt> rangeSet = Set.copyOf(range);
+        for (Stmt stmt : range.subList(1, range.size())) {
+            if (!rangeSet.containsAll(cfg.getPredsOf(stmt))) {
+                return false;
+            }
+        }
+        return !range.getLast().canFallThrough();
+    }
+
+    /**
+     * @return {@code true} if a preheader can be inserted right before the
+     * header of {@code loop} by {@link IROperation#insertPreheader}, i.e.,
+     * the statement before the header does not fall through from inside
+     * the loop.
+     */
+    static boolean canCreatePreheader(IR ir, Loop loop) {
+        int index = loop.header().getIndex();
+        if (index == 0) {
+            return true;
+        }
+        Stmt prev = ir.getStmt(index - 1);
+        return !(loop.contains(prev) && prev.canFallThrough());
+    }
+
+    /**
+     * @return the statement after {@code range} reached from {@code exit},
+     * a successor of {@code loop}, by skipping the gotos in {@code range},
+     * or {@code null} if it cannot be determined.
+     */
+    @Nullable
+    static Stmt skipGotos(Loop loop, List<Stmt> range, Stmt exit) {
+        Set<Stmt> rangeSet = Set.copyOf(range);
+        for (int i = 0; i < range.size() && rangeSet.contains(exit); ++i) {
+            if (loop.contains(exit) || !(exit instanceof Goto gotoStmt)) {
+                return null;
+            }
+            exit = gotoStmt.getTarget();
+        }
+        return rangeSet.contains(exit) ? null : exit;
+    }
+}
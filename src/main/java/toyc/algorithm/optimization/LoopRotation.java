@@ -0,0 +1,187 @@
+package toyc.algorithm.optimization;
+
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.analysis.graph.cfg.CFGEdge;
+import toyc.algorithm.analysis.loop.Loop;
+import toyc.algorithm.analysis.loop.LoopDetection;
+import toyc.algorithm.analysis.loop.LoopInfo;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.ConditionExp;
+import toyc.ir.stmt.Goto;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.JumpStmt;
+import toyc.ir.stmt.Nop;
+import toyc.ir.stmt.Stmt;
+import toyc.ir.stmt.StmtListCopier;
+import toyc.util.collection.CollectionUtils;
+import toyc.util.collection.Maps;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rotates loops of the form
+ * <pre>
+ * H: header statements
+ *    if (c) goto B; goto E
+ * B: body
+ *    goto H
+ * </pre>
+ * produced by {@code while} statements, into guarded do-while loops
+ * <pre>
+ *    header statements
+ *    if (!c) goto E
+ *    nop                  (preheader)
+ * B: body
+ *    header statements
+ *    if (c) goto B
+ * </pre>
+ * so that each iteration executes one conditional jump instead of
+ * a conditional and an unconditional jump. The header statements before
+ * the test are duplicated, thus they must be straight-line code.
+ * <p>
+ * The rotated loop has a preheader, which is only reached when the loop
+ * runs at least once, and a single latch, which ends with the test.
+ */
+public class LoopRotation extends Optimization {
+
+    public static final String ID = "loop-rotate";
+
+    private IR ir;
+
+    private CFG<Stmt> cfg;
+
+    private IROperation operation;
+
+    /**
+     * Maps the removed or replaced statements to the statements which
+     * take their places, to resolve the targets of new jumps.
+     */
+    private final Map<Stmt, Stmt> forwards = Maps.newMap();
+
+    public LoopRotation(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        this.ir = ir;
+        cfg = ir.getResult(CFGBuilder.ID);
+        operation = new IROperation(ir);
+        forwards.clear();
+        LoopInfo loops = ir.getResult(LoopDetection.ID);
+        // rotate inner loops first, so that the new jumps to the tails of
+        // outer loops are updated when the tails are replaced
+        loops.getLoops()
+                .stream()
+                .sorted(Comparator.comparingInt(loops::getDepth).reversed())
+                .forEach(this::rotate);
+        return operation.getIR();
+    }
+
+    private void rotate(Loop loop) {
+        if (loop.tails().size() != 1
+                || !(CollectionUtils.getOne(loop.tails()) instanceof Goto tail)
+                || tail.getTarget() != loop.header()) {
+            return;
+        }
+        List<Stmt> prefix = new ArrayList<>();
+        If test = findTest(loop, prefix);
+        if (test == null) {
+            return;
+        }
+        Stmt continueSucc = null;
+        Stmt exitSucc = null;
+        boolean continueOnTrue = false;
+        for (CFGEdge<Stmt> edge : cfg.getOutEdgesOf(test)) {
+            if (loop.contains(edge.target())) {
+                continueSucc = edge.target();
+                continueOnTrue = edge.getKind() == CFGEdge.Kind.IF_TRUE;
+            } else {
+                exitSucc = edge.target();
+            }
+        }
+        if (continueSucc == null || exitSucc == null
+                || continueSucc == loop.header() || continueSucc == tail) {
+            return;
+        }
+        // the goto which only leads the test out of the loop is removed
+        Stmt exitGoto = null;
+        if (exitSucc instanceof Goto gotoStmt
+                && Set.of(test).equals(cfg.getPredsOf(gotoStmt))) {
+            exitGoto = gotoStmt;
+            exitSucc = gotoStmt.getTarget();
+        }
+        ConditionExp cond = test.getCondition();
+        ConditionExp.Op continueOp = continueOnTrue ? cond.getOperator()
+                : cond.getOperator().negate();
+        List<Stmt> guard = new ArrayList<>(
+                StmtListCopier.copy(prefix, Map.of(), ir.getFunction()));
+        guard.add(newIf(continueOp.negate(), cond, exitSucc));
+        guard.add(new Nop());
+        guard.add(newGoto(continueSucc));
+        List<Stmt> latch = new ArrayList<>(
+                StmtListCopier.copy(prefix, Map.of(), ir.getFunction()));
+        latch.add(newIf(continueOp, cond, continueSucc));
+        latch.add(newGoto(exitSucc));
+
+        operation.insertPreheader(loop.header(), loop.body(), guard);
+        operation.replace(tail, latch);
+        prefix.forEach(operation::remove);
+        operation.remove(test);
+        if (exitGoto != null) {
+            operation.remove(exitGoto);
+        }
+        forwards.put(loop.header(), guard.getFirst());
+        forwards.put(tail, latch.getFirst());
+    }
+
+    /**
+     * Collects the straight-line statements from the header of {@code loop}
+     * to its first jump into {@code prefix}.
+     *
+     * @return the first jump, if it is a test which exits {@code loop},
+     * otherwise {@code null}.
+     */
+    @Nullable
+    private If findTest(Loop loop, List<Stmt> prefix) {
+        Stmt stmt = loop.header();
+        while (!(stmt instanceof JumpStmt)) {
+            if (!loop.contains(stmt) || !stmt.canFallThrough()) {
+                return null;
+            }
+            prefix.add(stmt);
+            Stmt next = ir.getStmt(stmt.getIndex() + 1);
+            if (!Set.of(stmt).equals(cfg.getPredsOf(next))) {
+                return null;
+            }
+            stmt = next;
+        }
+        return stmt instanceof If test && loop.contains(test) ? test : null;
+    }
+
+    private If newIf(ConditionExp.Op op, ConditionExp cond, Stmt target) {
+        If ifStmt = new If(new ConditionExp(op, cond.getOperand1(), cond.getOperand2()));
+        ifStmt.setTarget(resolve(target));
+        return ifStmt;
+    }
+
+    private Goto newGoto(Stmt target) {
+        Goto gotoStmt = new Goto();
+        gotoStmt.setTarget(resolve(target));
+        return gotoStmt;
+    }
+
+    private Stmt resolve(Stmt stmt) {
+        while (forwards.containsKey(stmt)) {
+            stmt = forwards.get(stmt);
+        }
+        return stmt;
+    }
+}
@@ -1,133 +1,303 @@
 package toyc.algorithm.optimization;
 
-import toyc.algorithm.analysis.defuse.DefUse;
-import toyc.algorithm.analysis.defuse.DefUseAnalysis;
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
 import toyc.algorithm.analysis.loop.Loop;
 import toyc.algorithm.analysis.loop.LoopDetection;
+import toyc.algorithm.analysis.loop.LoopInfo;
+import toyc.algorithm.analysis.loop.TripCount;
+import toyc.algorithm.analysis.loop.TripCountAnalysis;
 import toyc.config.AlgorithmConfig;
 import toyc.ir.IR;
-import toyc.ir.exp.LValue;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.ConditionExp;
+import toyc.ir.exp.IntLiteral;
 import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Goto;
+import toyc.ir.stmt.If;
 import toyc.ir.stmt.JumpStmt;
 import toyc.ir.stmt.Stmt;
 import toyc.ir.stmt.StmtListCopier;
+import toyc.language.type.IntType;
 import toyc.util.NumericSuffixNaming;
 import toyc.util.collection.Maps;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Unrolls the innermost counting loops, driven by their trip counts.
+ * <p>
+ * A loop whose trip count is a constant is fully unrolled if the unrolled
+ * code has at most {@code max-size} statements. Otherwise, the loop is
+ * unrolled by {@code factor} (reduced to fit {@code max-size}): a new loop,
+ * placed before the original one, runs {@code factor} iterations at a time
+ * without testing the induction variable between them, as long as a guard
+ * at its head shows that all these tests would pass. The original loop is
+ * kept as the remainder loop, which runs the remaining iterations, and it
+ * is recognized by its structure, so that it is not unrolled again.
+ * <p>
+ * As the bound is loop-invariant, the guard {@code i op bound} of the last
+ * iteration is checked as {@code i op (bound - k)}, where {@code k} is the
+ * distance of the induction variable in between. For bounds which are not
+ * constants, the unrolled loop is skipped at runtime if {@code bound - k}
+ * overflows.
+ */
 public class LoopUnrolling extends Optimization {
     public static final String ID = "loop-unroll";
 
+    private static final String UNROLL_CONST = "%unrollconst";
+
+    private static final String UNROLL_TEMP = "%unroll";
+
+    private final int factor;
+
+    private final int maxSize;
+
     private IROperation operation;
 
     private IR ir;
 
+    private CFG<Stmt> cfg;
+
     private NumericSuffixNaming nameManager;
 
     public LoopUnrolling(AlgorithmConfig config) {
         super(config);
+        factor = getOptions().getInt("factor");
+        maxSize = getOptions().getInt("max-size");
     }
 
     @Override
     public IR optimize(IR ir) {
+        if (!ir.hasResult(LoopDetection.ID) || !ir.hasResult(TripCountAnalysis.ID)) {
+            return ir;
+        }
         operation = new IROperation(ir);
         this.ir = ir;
+        cfg = ir.getResult(CFGBuilder.ID);
         nameManager = new NumericSuffixNaming(ir.getVars().stream()
                 .map(Var::getName)
                 .collect(Collectors.toSet()));
-        Set<Loop> loops = ir.getResult(LoopDetection.ID);
+        LoopInfo loops = ir.getResult(LoopDetection.ID);
+        Map<Loop, TripCount> tripCounts = ir.getResult(TripCountAnalysis.ID);
 
-        for (Loop loop : loops) {
-            unrollLoop(loop);
+        for (Loop loop : loops.getLoops()) {
+            TripCount tripCount = tripCounts.get(loop);
+            if (tripCount == null || !loops.getSubLoops(loop).isEmpty()
+                    || isRemainder(loop, loops, tripCount)) {
+                continue;
+            }
+            List<Stmt> range = LoopRanges.getIndexRange(ir, loop);
+            if (range != null && LoopRanges.isSingleEntry(cfg, range)) {
+                unrollLoop(loop, range, tripCount);
+            }
         }
 
         return operation.getIR();
     }
 
+    private void unrollLoop(Loop loop, List<Stmt> range, TripCount tripCount) {
+        int size = loop.size();
+        Integer count = tripCount.count();
+        if (count != null && (long) count * size <= maxSize
+                && fullyUnroll(loop, range, tripCount)) {
+            return;
+        }
+        int f = Math.min(factor, maxSize / size);
+        if (f >= 2 && (count == null || count >= f)) {
+            partiallyUnroll(loop, range, tripCount, f);
+        }
+    }
+
     /**
-     * Unroll the loop by duplicating its body
+     * @return {@code true} if {@code loop} is the remainder loop of a loop
+     * unrolled before. Such loops are not unrolled again, otherwise each run
+     * of this optimization would add another unrolled loop before them.
+     * <p>
+     * As later optimizations may rewrite the unrolled code, the remainder
+     * loop is recognized by the structure that unrolling leaves: right before
+     * its header is the unrolled loop, whose header is the guard, which jumps
+     * to the header and tests the same induction variable. The second of two
+     * adjacent loops over the same variable has the same structure, and is
+     * conservatively not unrolled either.
      */
-    private void unrollLoop(Loop loop) {
-        Stmt header = loop.header();
-        Set<Stmt> body = loop.body();
-        Set<Stmt> tails = loop.tails();
-        Map<Var, Var> varMapping = createVarMapping(body, header.getIndex());
-
-        // Create a new loop body by duplicating the original body
-        List<Stmt> duplicatedBody =
-                StmtListCopier.copy(body.stream().toList(), varMapping,
-                        ir.getFunction());
-
-        // Update tails' target
-        for (Stmt tail : tails) {
-            int index = tail.getIndex();
-            for (Stmt stmt : duplicatedBody) {
-                if (stmt.getIndex() == index) {
-                    if (stmt instanceof JumpStmt jumpStmt) {
-                        jumpStmt.setTarget(header);
-                    } else {
-                        throw new IllegalStateException(
-                                "Unsupported tail statement type: " + stmt.getClass());
-                    }
-                    break;
-                }
-            }
+    private boolean isRemainder(Loop loop, LoopInfo loops, TripCount tripCount) {
+        int headerIndex = loop.header().getIndex();
+        if (headerIndex == 0) {
+            return false;
         }
+        Loop prev = loops.getLoopFor(ir.getStmt(headerIndex - 1));
+        return prev != null && !prev.contains(loop.header())
+                && prev.header() instanceof If guard
+                && guard.getTarget() == loop.header()
+                && guard.getCondition().getUses().contains(tripCount.iv().var());
+    }
 
-        operation.insertUnrolledLoop(header, duplicatedBody);
+    /**
+     * Replaces the loop by {@code count} copies of its iterations, followed
+     * by the statements before the test in the last (exiting) iteration.
+     *
+     * @return {@code false} if the loop cannot be fully unrolled.
+     */
+    private boolean fullyUnroll(Loop loop, List<Stmt> range, TripCount tripCount) {
+        int testIndex = tripCount.test().getIndex() - range.getFirst().getIndex();
+        List<Stmt> prefix = range.subList(0, testIndex);
+        Stmt exitTarget = getExitTarget(loop, range, tripCount);
+        if (exitTarget == null || prefix.stream().anyMatch(stmt ->
+                !loop.contains(stmt) || stmt instanceof JumpStmt)) {
+            return false;
+        }
+        List<List<Stmt>> iterations = new ArrayList<>();
+        for (int i = 0; i < tripCount.count(); ++i) {
+            iterations.add(copyIteration(loop, range, tripCount));
+        }
+        List<Stmt> exit = StmtListCopier.copy(prefix, Map.of(), ir.getFunction());
+        Goto gotoExit = new Goto();
+        gotoExit.setTarget(exitTarget);
+        exit.add(gotoExit);
+        iterations.add(exit);
+        operation.insertPreheader(loop.header(), Set.copyOf(range), link(iterations));
+        range.forEach(operation::remove);
+        return true;
     }
 
-    private Map<Var, Var> createVarMapping(Set<Stmt> stmts, int headerIndex) {
-        DefUse defUse = ir.getResult(DefUseAnalysis.ID);
-        Map<Var, Var> varMapping = Maps.newMap();
+    /**
+     * Inserts before the loop a new loop which runs {@code f} iterations
+     * at a time, guarded by a test of the induction variable, which jumps
+     * to the original loop if fewer than {@code f} iterations remain.
+     */
+    private void partiallyUnroll(Loop loop, List<Stmt> range, TripCount tripCount, int f) {
+        List<Stmt> setup = new ArrayList<>();
+        long distance = (long) (f - 1 + (tripCount.updateBeforeTest() ? 1 : 0))
+                * tripCount.getStep();
+        if (!fitsInt(distance)) {
+            return;
+        }
+        Var limit;
+        if (tripCount.boundValue() != null) {
+            long value = tripCount.boundValue() - distance;
+            if (!fitsInt(value)) {
+                return;
+            }
+            limit = newConst((int) value, setup);
+        } else {
+            Var bound = tripCount.bound();
+            limit = newTemp();
+            setup.add(new Binary(limit, new ArithmeticExp(ArithmeticExp.Op.SUB,
+                    bound, newConst((int) distance, setup))));
+            // bound - distance overflows iff it moves against the distance
+            If overflow = new If(new ConditionExp(distance > 0
+                    ? ConditionExp.Op.GT : ConditionExp.Op.LT, limit, bound));
+            overflow.setTarget(loop.header());
+            setup.add(overflow);
+        }
+        If guard = new If(new ConditionExp(tripCount.op().negate(),
+                tripCount.iv().var(), limit));
+        guard.setTarget(loop.header());
+        List<List<Stmt>> iterations = new ArrayList<>();
+        iterations.add(new ArrayList<>(setup));
+        iterations.getFirst().add(guard);
+        for (int i = 0; i < f; ++i) {
+            iterations.add(copyIteration(loop, range, tripCount));
+        }
+        // the back edges of the last iteration go to the guard
+        List<Stmt> last = iterations.getLast();
+        retarget(last, last.getFirst(), guard);
+        operation.insertPreheader(loop.header(), Set.copyOf(range), link(iterations));
+    }
 
-        for (Stmt stmt : stmts) {
-            stmt.getDef().ifPresent(def -> {
-                if (def instanceof Var defVar) {
-                    if (!varMapping.containsKey(defVar) && !isVarDefinedBeforeLoop(defVar, headerIndex)) {
-                        Set<Stmt> uses = defUse.getUses(stmt);
-                        if (stmts.containsAll(uses)) {
-                            // the definition is only used in loop body
-                            String newVarName = nameManager.getNewVarName(defVar.getName());
-                            Var clonedVar = new Var(
-                                    ir.getFunction(),
-                                    newVarName,
-                                    defVar.getType(),
-                                    -1,
-                                    defVar.isConst() ? defVar.getConstValue() : null
-                            );
-                            varMapping.put(defVar, clonedVar);
-                        }
-                    }
-                }
-            });
+    /**
+     * Copies one iteration of the loop, without the test of the induction
+     * variable. The back edges of the copy jump to its first statement.
+     */
+    private List<Stmt> copyIteration(Loop loop, List<Stmt> range, TripCount tripCount) {
+        If test = tripCount.test();
+        // the statements out of the loop only reached by the test are dropped
+        List<Stmt> stmts = range.stream()
+                .filter(stmt -> loop.contains(stmt) || !cfg.getPredsOf(stmt)
+                        .stream().allMatch(pred -> pred == test))
+                .toList();
+        List<Stmt> copy = new ArrayList<>(
+                StmtListCopier.copy(stmts, Map.of(), ir.getFunction()));
+        Map<Stmt, Stmt> copies = Maps.newMap();
+        for (int i = 0; i < stmts.size(); ++i) {
+            copies.put(stmts.get(i), copy.get(i));
         }
-        return varMapping;
+        If testCopy = (If) copies.get(test);
+        int index = copy.indexOf(testCopy);
+        Stmt replacement;
+        if (tripCount.continueOnTrue()) {
+            Goto gotoBody = new Goto();
+            gotoBody.setTarget(testCopy.getTarget());
+            replacement = gotoBody;
+            copy.set(index, gotoBody);
+        } else {
+            copy.remove(index);
+            replacement = copy.get(index);
+        }
+        retarget(copy, testCopy, replacement);
+        return copy;
     }
 
     /**
-     * Check if a variable is defined before the loop starts
+     * Concatenates the copied iterations, where the back edges of each
+     * iteration jump to the next iteration.
      */
-    private boolean isVarDefinedBeforeLoop(Var var, int loopHeaderIndex) {
-        for (Var param : ir.getParams()) {
-            if (param.equals(var)) {
-                return true;
+    private static List<Stmt> link(List<List<Stmt>> iterations) {
+        List<Stmt> stmts = new ArrayList<>();
+        for (int i = 0; i < iterations.size(); ++i) {
+            List<Stmt> iteration = iterations.get(i);
+            if (i + 1 < iterations.size()) {
+                retarget(iteration, iteration.getFirst(),
+                        iterations.get(i + 1).getFirst());
             }
+            stmts.addAll(iteration);
         }
-        for (Stmt stmt : ir.getStmts()) {
-            if (stmt.getIndex() >= loopHeaderIndex) {
-                break; // Stop checking after reaching the loop header
-            }
-            Optional<LValue> def = stmt.getDef();
-            if (def.isPresent() && def.get().equals(var)) {
-                return true;
+        return stmts;
+    }
+
+    private static void retarget(List<Stmt> stmts, Stmt oldTarget, Stmt newTarget) {
+        for (Stmt stmt : stmts) {
+            if (stmt instanceof JumpStmt jump && jump.getTarget() == oldTarget) {
+                jump.setTarget(newTarget);
             }
         }
-        return false;
+    }
+
+    /**
+     * @return the statement after the loop to which the test exits,
+     * or {@code null} if it cannot be determined.
+     */
+    @Nullable
+    private Stmt getExitTarget(Loop loop, List<Stmt> range, TripCount tripCount) {
+        If test = tripCount.test();
+        Stmt exit = tripCount.continueOnTrue()
+                ? ir.getStmt(test.getIndex() + 1)
+                : test.getTarget();
+        return LoopRanges.skipGotos(loop, range, exit);
+    }
+
+    private static boolean fitsInt(long value) {
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    private Var newConst(int value, List<Stmt> setup) {
+        IntLiteral literal = IntLiteral.get(value);
+        Var constVar = new Var(ir.getFunction(),
+                nameManager.getNewVarName(UNROLL_CONST), IntType.INT, -1, literal);
+        setup.add(new AssignLiteral(constVar, literal));
+        return constVar;
+    }
+
+    private Var newTemp() {
+        return new Var(ir.getFunction(),
+                nameManager.getNewVarName(UNROLL_TEMP), IntType.INT, -1);
     }
 }
@@ -0,0 +1,165 @@
+package toyc.algorithm.optimization;
+
+import toyc.algorithm.analysis.defuse.DefUse;
+import toyc.algorithm.analysis.defuse.DefUseAnalysis;
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.analysis.loop.Loop;
+import toyc.algorithm.analysis.loop.LoopDetection;
+import toyc.algorithm.analysis.loop.LoopInfo;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.ConditionExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Goto;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.JumpStmt;
+import toyc.ir.stmt.Stmt;
+import toyc.ir.stmt.StmtListCopier;
+import toyc.language.type.IntType;
+import toyc.util.NumericSuffixNaming;
+import toyc.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Loop unswitching, which moves a loop-invariant test out of a loop.
+ * <p>
+ * For a loop which contains {@code if (c) goto T}, where {@code c} is
+ * loop-invariant, a copy of the loop, in which the test is replaced by
+ * {@code goto T}, is inserted before the loop, guarded by
+ * {@code if (!c) goto H}, where {@code H} is the header of the original
+ * loop, in which the test is removed. The branches which become
+ * unreachable in either loop are left to dead code elimination.
+ * <p>
+ * Each unswitching duplicates the statements of a loop, which are
+ * limited by {@code budget} in each function.
+ */
+public class LoopUnswitching extends Optimization {
+
+    public static final String ID = "loop-unswitch";
+
+    private static final String UNSWITCH_CONST = "%unswitchconst";
+
+    private final int budget;
+
+    private IR ir;
+
+    private CFG<Stmt> cfg;
+
+    private DefUse defUse;
+
+    private NumericSuffixNaming nameManager;
+
+    public LoopUnswitching(AlgorithmConfig config) {
+        super(config);
+        budget = getOptions().getInt("budget");
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        this.ir = ir;
+        cfg = ir.getResult(CFGBuilder.ID);
+        defUse = ir.getResult(DefUseAnalysis.ID);
+        nameManager = new NumericSuffixNaming(ir.getVars().stream()
+                .map(Var::getName)
+                .collect(Collectors.toSet()));
+        LoopInfo loops = ir.getResult(LoopDetection.ID);
+        IROperation operation = new IROperation(ir);
+        // the statements of the unswitched loops, which are not unswitched again
+        Set<Stmt> changed = Sets.newSet();
+        int remaining = budget;
+        List<Loop> outerFirst = loops.getLoops()
+                .stream()
+                .sorted(Comparator.comparingInt(loops::getDepth))
+                .toList();
+        for (Loop loop : outerFirst) {
+            List<Stmt> range = LoopRanges.getIndexRange(ir, loop);
+            if (range == null || range.size() > remaining
+                    || !Collections.disjoint(changed, range)
+                    || !LoopRanges.isSingleEntry(cfg, range)) {
+                continue;
+            }
+            If test = findInvariantTest(loop);
+            if (test != null) {
+                unswitch(operation, loop, range, test);
+                changed.addAll(range);
+                remaining -= range.size();
+            }
+        }
+        return operation.getIR();
+    }
+
+    /**
+     * @return the first test in {@code loop} whose operands are not
+     * defined in {@code loop}, or {@code null} if there is no such test.
+     * Tests of constants are left to constant folding.
+     */
+    @Nullable
+    private If findInvariantTest(Loop loop) {
+        return loop.body()
+                .stream()
+                .filter(stmt -> stmt instanceof If)
+                .map(stmt -> (If) stmt)
+                .filter(test -> {
+                    ConditionExp cond = test.getCondition();
+                    Var v1 = cond.getOperand1();
+                    Var v2 = cond.getOperand2();
+                    return !(v1.isConst() && v2.isConst())
+                            && isInvariant(loop, test, v1)
+                            && isInvariant(loop, test, v2);
+                })
+                .min(Comparator.comparingInt(Stmt::getIndex))
+                .orElse(null);
+    }
+
+    private boolean isInvariant(Loop loop, Stmt stmt, Var var) {
+        return var.isConst() ||
+                defUse.getDefs(stmt, var).stream().noneMatch(loop::contains);
+    }
+
+    private void unswitch(IROperation operation, Loop loop, List<Stmt> range, If test) {
+        // the copy in which the test is always true
+        List<Stmt> copy = new ArrayList<>(
+                StmtListCopier.copy(range, Map.of(), ir.getFunction()));
+        If testCopy = (If) copy.get(range.indexOf(test));
+        Goto gotoTarget = new Goto();
+        gotoTarget.setTarget(testCopy.getTarget());
+        copy.set(copy.indexOf(testCopy), gotoTarget);
+        copy.forEach(stmt -> {
+            if (stmt instanceof JumpStmt jump && jump.getTarget() == testCopy) {
+                jump.setTarget(gotoTarget);
+            }
+        });
+        // the guard, whose constant operands may be assigned in the loop
+        List<Stmt> stmts = new ArrayList<>();
+        ConditionExp cond = test.getCondition();
+        If guard = new If(new ConditionExp(cond.getOperator().negate(),
+                materialize(cond.getOperand1(), stmts),
+                materialize(cond.getOperand2(), stmts)));
+        guard.setTarget(loop.header());
+        stmts.add(guard);
+        stmts.addAll(copy);
+        operation.insertPreheader(loop.header(), Set.copyOf(range), stmts);
+        operation.remove(test);
+    }
+
+    private Var materialize(Var var, List<Stmt> stmts) {
+        if (var.isConst() && var.getConstValue() instanceof IntLiteral literal) {
+            Var constVar = new Var(ir.getFunction(),
+                    nameManager.getNewVarName(UNSWITCH_CONST), IntType.INT, -1, literal);
+            stmts.add(new AssignLiteral(constVar, literal));
+            return constVar;
+        }
+        return var;
+    }
+}
@@ -0,0 +1,309 @@
+package toyc.algorithm.optimization;
+
+import toyc.World;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.CallExp;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.Goto;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.JumpStmt;
+import toyc.ir.stmt.Return;
+import toyc.ir.stmt.Stmt;
+import toyc.ir.stmt.StmtListCopier;
+import toyc.language.Function;
+import toyc.language.Program;
+import toyc.util.NumericSuffixNaming;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Partial inlining of the fast paths of callees which begin with a guard.
+ * <p>
+ * A callee is a candidate if it begins with straight-line statements
+ * followed by a test {@code if (c) goto T}, one of whose successors leads
+ * to a {@link Return} without further tests or calls (the fast path). The
+ * rest of the callee (the slow path) is outlined into a new function
+ * {@code f.cold}, which takes the parameters and the variables defined
+ * before the test as arguments, assigns the constant variables defined
+ * before the test again, and starts from the other successor.
+ * <p>
+ * Each call to a candidate is replaced by copies of the statements before
+ * the test, the test and the fast path, where the slow path calls the
+ * outlined function. The copies have at most {@code max-size} statements.
+ */
+public class PartialInlining extends Optimization {
+
+    public static final String ID = "partial-inline";
+
+    private static final String COLD_SUFFIX = ".cold";
+
+    private final int maxSize;
+
+    /**
+     * The split callees, or {@code null} for functions which are not
+     * candidates. The callees are split once in each run, so that all
+     * calls use the same outlined function.
+     */
+    private final Map<Function, Split> splits = Maps.newMap();
+
+    public PartialInlining(AlgorithmConfig config) {
+        super(config);
+        maxSize = getOptions().getInt("max-size");
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        List<Call> calls = ir.calls()
+                .filter(call -> getSplit(call.getCallExp().getFunction()) != null)
+                .toList();
+        if (calls.isEmpty()) {
+            return ir;
+        }
+        IROperation operation = new IROperation(ir);
+        NumericSuffixNaming nameManager = new NumericSuffixNaming(ir.getVars()
+                .stream()
+                .map(Var::getName)
+                .collect(Collectors.toSet()));
+        for (Call call : calls) {
+            inlineFastPath(operation, nameManager, ir.getFunction(), call);
+        }
+        return operation.getIR();
+    }
+
+    /**
+     * The parts of a split callee.
+     *
+     * @param ir      the IR of the callee which is split
+     * @param inlined the statements before the test, the test and the
+     *                fast path, in the order of their indexes
+     * @param guard   the test
+     * @param fastOnTarget whether the fast path starts from the target
+     *                     of the test
+     * @param liveIns the variables passed to the outlined function
+     * @param cold    the outlined function
+     */
+    private record Split(IR ir, List<Stmt> inlined, If guard, boolean fastOnTarget,
+                         List<Var> liveIns, Function cold) {
+    }
+
+    @Nullable
+    private Split getSplit(Function callee) {
+        if (!splits.containsKey(callee)) {
+            splits.put(callee, split(callee));
+        }
+        return splits.get(callee);
+    }
+
+    /**
+     * @return the split {@code callee}, or {@code null} if it is not
+     * a candidate.
+     */
+    @Nullable
+    private Split split(Function callee) {
+        Program program = World.get().getProgram();
+        String coldName = callee.getName() + COLD_SUFFIX;
+        if (callee.getName().endsWith(COLD_SUFFIX) || program.hasFunction(coldName)) {
+            // each function is split once
+            return null;
+        }
+        IR ir = callee.getIR();
+        List<Stmt> stmts = ir.getStmts();
+        int guardIndex = 0;
+        while (guardIndex < stmts.size() && isStraightLine(stmts.get(guardIndex))) {
+            ++guardIndex;
+        }
+        if (guardIndex >= stmts.size() - 1
+                || !(stmts.get(guardIndex) instanceof If guard)) {
+            return null;
+        }
+        Set<Stmt> entry = new LinkedHashSet<>(stmts.subList(0, guardIndex + 1));
+        Stmt target = guard.getTarget();
+        Stmt next = stmts.get(guardIndex + 1);
+        Set<Stmt> fastPath = getFastPath(ir, target);
+        boolean fastOnTarget = fastPath != null;
+        if (fastPath == null) {
+            fastPath = getFastPath(ir, next);
+        } else if (getFastPath(ir, next) != null) {
+            // both paths are fast, thus the whole callee is small
+            return null;
+        }
+        if (fastPath == null || entry.size() + fastPath.size() > maxSize
+                || fastPath.contains(fastOnTarget ? next : target)
+                || fastPath.stream().anyMatch(entry::contains)) {
+            return null;
+        }
+        // the slow path may not return to the statements before the test
+        Set<Stmt> inlined = new LinkedHashSet<>(entry);
+        inlined.addAll(fastPath);
+        for (Stmt stmt : stmts) {
+            if (!entry.contains(stmt) && stmt instanceof JumpStmt jump
+                    && entry.contains(jump.getTarget())) {
+                return null;
+            }
+        }
+        // the variables which are available at the slow path
+        Set<Var> available = new LinkedHashSet<>(ir.getParams());
+        entry.forEach(stmt -> stmt.getDef().ifPresent(def -> {
+            if (def instanceof Var var) {
+                available.add(var);
+            }
+        }));
+        Set<Var> used = Sets.newHybridSet();
+        for (Stmt stmt : stmts) {
+            if (!entry.contains(stmt)) {
+                stmt.getUses().forEach(use -> {
+                    if (use instanceof Var var) {
+                        used.add(var);
+                    }
+                });
+            }
+        }
+        List<Var> liveIns = available.stream()
+                .filter(used::contains)
+                .filter(var -> !var.isConst())
+                .toList();
+        // constants are not passed, but their assignments are skipped
+        List<Var> liveConsts = available.stream()
+                .filter(used::contains)
+                .filter(Var::isConst)
+                .toList();
+        Stmt slowEntry = fastOnTarget ? next : target;
+        Function cold = outline(ir, coldName, liveIns, liveConsts, slowEntry);
+        program.addFunction(cold);
+        return new Split(ir, inlined.stream()
+                .sorted(Comparator.comparingInt(Stmt::getIndex))
+                .toList(), guard, fastOnTarget, liveIns, cold);
+    }
+
+    private static boolean isStraightLine(Stmt stmt) {
+        return !(stmt instanceof JumpStmt || stmt instanceof Call
+                || stmt instanceof Return);
+    }
+
+    /**
+     * @return the statements from {@code start} to a {@link Return},
+     * which are straight-line statements or gotos, or {@code null} if
+     * there are no such statements.
+     */
+    @Nullable
+    private Set<Stmt> getFastPath(IR ir, Stmt start) {
+        Set<Stmt> path = new LinkedHashSet<>();
+        Stmt stmt = start;
+        while (path.size() <= maxSize && path.add(stmt)) {
+            if (stmt instanceof Return) {
+                return path;
+            } else if (stmt instanceof Goto gotoStmt) {
+                stmt = gotoStmt.getTarget();
+            } else if (isStraightLine(stmt) && stmt.getIndex() + 1 < ir.getStmts().size()) {
+                stmt = ir.getStmt(stmt.getIndex() + 1);
+            } else {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the function which runs {@code ir} from {@code slowEntry},
+     * whose parameters are {@code liveIns}, after assigning the constant
+     * variables {@code liveConsts}.
+     */
+    private static Function outline(IR ir, String name, List<Var> liveIns,
+                                    List<Var> liveConsts, Stmt slowEntry) {
+        Function cold = new Function(name,
+                liveIns.stream().map(Var::getType).toList(),
+                ir.getFunction().getReturnType(),
+                null);
+        Map<Var, Var> varMapping = FunctionClones.copyVars(ir, cold);
+        List<Stmt> stmts = new ArrayList<>(
+                StmtListCopier.copy(ir.getStmts(), varMapping, cold));
+        Goto gotoSlow = new Goto();
+        gotoSlow.setTarget(stmts.get(slowEntry.getIndex()));
+        stmts.addFirst(gotoSlow);
+        for (Var var : liveConsts.reversed()) {
+            stmts.addFirst(new AssignLiteral(varMapping.get(var), var.getConstValue()));
+        }
+        FunctionClones.setIR(cold, liveIns.stream().map(varMapping::get).toList(), stmts);
+        return cold;
+    }
+
+    /**
+     * Replaces {@code call} by the copies of the statements before the
+     * test, the test and the fast path of its callee, where the slow path
+     * calls the outlined function.
+     */
+    private void inlineFastPath(IROperation operation, NumericSuffixNaming nameManager,
+                                Function caller, Call call) {
+        Split split = getSplit(call.getCallExp().getFunction());
+        IR calleeIR = split.ir();
+        Map<Var, Var> varMapping = Maps.newMap();
+        for (Var var : calleeIR.getVars()) {
+            varMapping.put(var, new Var(caller,
+                    nameManager.getNewVarName(var.getName()), var.getType(), -1,
+                    var.isConst() ? var.getConstValue() : null));
+        }
+        Stmt stmtAfterCall = operation.getNextStmt(call);
+        List<Stmt> copy = new ArrayList<>(
+                StmtListCopier.copy(split.inlined(), varMapping, caller));
+        If guardCopy = (If) copy.get(split.inlined().indexOf(split.guard()));
+        // the slow path, which continues after the call
+        List<Var> coldArgs = split.liveIns().stream().map(varMapping::get).toList();
+        Call coldCall = new Call(caller, new CallExp(split.cold(), coldArgs),
+                call.getResult());
+        Goto gotoAfter = new Goto();
+        gotoAfter.setTarget(stmtAfterCall);
+        if (split.fastOnTarget()) {
+            // the test falls through to the slow path
+            int index = copy.indexOf(guardCopy) + 1;
+            copy.add(index, coldCall);
+            copy.add(index + 1, gotoAfter);
+        } else {
+            guardCopy.setTarget(coldCall);
+            copy.add(coldCall);
+            copy.add(gotoAfter);
+        }
+        // the returns of the fast path continue after the call
+        for (int i = 0; i < copy.size(); ++i) {
+            if (copy.get(i) instanceof Return ret) {
+                Goto gotoReturn = new Goto();
+                gotoReturn.setTarget(stmtAfterCall);
+                Stmt replacement = gotoReturn;
+                copy.set(i, gotoReturn);
+                if (call.getResult() != null && ret.getValue() != null) {
+                    replacement = new Copy(call.getResult(), ret.getValue());
+                    copy.add(i, replacement);
+                }
+                for (Stmt stmt : copy) {
+                    if (stmt instanceof JumpStmt jump && jump.getTarget() == ret) {
+                        jump.setTarget(replacement);
+                    }
+                }
+            }
+        }
+        // the arguments are assigned to the copies of the parameters
+        List<Stmt> stmts = new ArrayList<>();
+        List<Var> args = call.getCallExp().getArgs();
+        for (int i = 0; i < args.size(); ++i) {
+            Var param = varMapping.get(calleeIR.getParam(i));
+            Var arg = args.get(i);
+            stmts.add(arg.isConst()
+                    ? new AssignLiteral(param, arg.getConstValue())
+                    : new Copy(param, arg));
+        }
+        stmts.addAll(copy);
+        operation.replace(call, stmts);
+    }
+}
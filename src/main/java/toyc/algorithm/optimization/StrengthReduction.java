@@ -0,0 +1,335 @@
+package toyc.algorithm.optimization;
+
+import toyc.algorithm.analysis.dataflow.analysis.DominatorAnalysis;
+import toyc.algorithm.analysis.dataflow.fact.NodeResult;
+import toyc.algorithm.analysis.dataflow.fact.SetFact;
+import toyc.algorithm.analysis.defuse.DefUse;
+import toyc.algorithm.analysis.defuse.DefUseAnalysis;
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.analysis.graph.cfg.CFGEdge;
+import toyc.algorithm.analysis.loop.InductionVariable;
+import toyc.algorithm.analysis.loop.InductionVariableAnalysis;
+import toyc.algorithm.analysis.loop.InductionVariables;
+import toyc.algorithm.analysis.loop.Loop;
+import toyc.algorithm.analysis.loop.LoopDetection;
+import toyc.algorithm.analysis.loop.LoopInfo;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.ConditionExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.Stmt;
+import toyc.language.type.IntType;
+import toyc.util.NumericSuffixNaming;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Strength reduction of induction variables, with linear function test
+ * replacement and elimination of dead induction variables.
+ * <p>
+ * For each derived induction variable {@code j = i * c} of a loop, where
+ * {@code i} is a basic induction variable with step {@code s}, a new
+ * temporary {@code t} is initialized to {@code i * c} in a preheader of
+ * the loop and updated by {@code t = t + s * c} right after each update
+ * of {@code i}, so that {@code t == i * c} throughout the loop and the
+ * multiplication is replaced by {@code j = t}.
+ * <p>
+ * Then a test {@code i < n} which runs in every iteration, with constant
+ * {@code n}, is replaced by {@code t < n * c}, if {@code c}, {@code s} and
+ * the initial value of {@code i} are constants, {@code c} and {@code s}
+ * are positive and {@code i * c} cannot overflow before the loop exits.
+ * At last, the update of {@code i} is removed if it has no other uses.
+ */
+public class StrengthReduction extends Optimization {
+
+    public static final String ID = "strength-reduction";
+
+    private static final String IV_TEMP = "%iv";
+
+    private static final String IV_CONST = "%ivconst";
+
+    private IR ir;
+
+    private CFG<Stmt> cfg;
+
+    private LoopInfo loops;
+
+    private DefUse defUse;
+
+    private NodeResult<Stmt, SetFact<Stmt>> dominators;
+
+    private NumericSuffixNaming nameManager;
+
+    public StrengthReduction(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        this.ir = ir;
+        cfg = ir.getResult(CFGBuilder.ID);
+        loops = ir.getResult(LoopDetection.ID);
+        defUse = ir.getResult(DefUseAnalysis.ID);
+        dominators = ir.getResult(DominatorAnalysis.ID);
+        InductionVariables ivs = ir.getResult(InductionVariableAnalysis.ID);
+        nameManager = new NumericSuffixNaming(ir.getVars().stream()
+                .map(Var::getName)
+                .collect(Collectors.toSet()));
+        IROperation operation = new IROperation(ir);
+        // statements which have been rewritten by outer loops
+        Set<Stmt> rewritten = Sets.newSet();
+        List<Loop> outerFirst = loops.getLoops()
+                .stream()
+                .sorted(Comparator.comparingInt(loops::getDepth))
+                .toList();
+        for (Loop loop : outerFirst) {
+            if (LoopRanges.canCreatePreheader(ir, loop)) {
+                Plan plan = new Plan();
+                reduce(loop, ivs.get(loop), rewritten, plan);
+                plan.apply(operation, loop);
+                rewritten.addAll(plan.replacements.keySet());
+                rewritten.addAll(plan.removals);
+            }
+        }
+        return operation.getIR();
+    }
+
+    /**
+     * The changes to a loop, which are applied after the loop is analyzed,
+     * as the header may be rewritten after the preheader is inserted.
+     */
+    private static class Plan {
+
+        private final List<Stmt> preheader = new ArrayList<>();
+
+        private final Map<Stmt, List<Stmt>> updates = Maps.newLinkedHashMap();
+
+        private final Map<Stmt, Stmt> replacements = Maps.newLinkedHashMap();
+
+        private final List<Stmt> removals = new ArrayList<>();
+
+        private void apply(IROperation operation, Loop loop) {
+            if (preheader.isEmpty()) {
+                return;
+            }
+            operation.insertPreheader(loop.header(), loop.body(), preheader);
+            updates.forEach((def, stmts) ->
+                    stmts.forEach(stmt -> operation.insertAfter(def, stmt)));
+            replacements.forEach(operation::replace);
+            removals.forEach(operation::remove);
+        }
+    }
+
+    private void reduce(Loop loop, List<InductionVariable> loopIVs,
+                        Set<Stmt> rewritten, Plan plan) {
+        Map<InductionVariable, List<Reduced>> reducedByBasic = Maps.newLinkedHashMap();
+        for (InductionVariable iv : loopIVs) {
+            if (iv.isBasic() || iv.op() != ArithmeticExp.Op.MUL
+                    || rewritten.contains(iv.def())
+                    || rewritten.contains(iv.basic().def())) {
+                continue;
+            }
+            InductionVariable basic = iv.basic();
+            Var factor = materialize(iv.operand(), plan);
+            Var temp = newTemp();
+            plan.preheader.add(new Binary(temp, new ArithmeticExp(
+                    ArithmeticExp.Op.MUL, basic.var(), factor)));
+            Var increment;
+            Integer step = basic.getConstantOperand();
+            Integer constFactor = iv.getConstantOperand();
+            if (step != null && constFactor != null) {
+                increment = newConst(step * constFactor, plan);
+            } else {
+                increment = newTemp();
+                plan.preheader.add(new Binary(increment, new ArithmeticExp(
+                        ArithmeticExp.Op.MUL, materialize(basic.operand(), plan), factor)));
+            }
+            plan.updates.computeIfAbsent(basic.def(), __ -> new ArrayList<>())
+                    .add(new Binary(temp, new ArithmeticExp(basic.op(), temp, increment)));
+            plan.replacements.put(iv.def(), new Copy(iv.var(), temp));
+            reducedByBasic.computeIfAbsent(basic, __ -> new ArrayList<>())
+                    .add(new Reduced(iv, temp));
+        }
+        reducedByBasic.forEach((basic, reduced) ->
+                replaceTest(loop, basic, reduced, plan));
+    }
+
+    private record Reduced(InductionVariable iv, Var temp) {
+    }
+
+    /**
+     * Replaces the test of {@code basic} by a test of a reduced temporary,
+     * and removes the update of {@code basic} if it becomes dead.
+     */
+    private void replaceTest(Loop loop, InductionVariable basic,
+                             List<Reduced> reduced, Plan plan) {
+        Integer step = basic.getStep();
+        Integer init = basic.initialValue();
+        if (step == null || step <= 0 || init == null
+                || loops.getLoopFor(basic.def()) != loop) {
+            return;
+        }
+        Reduced by = reduced.stream()
+                .filter(r -> {
+                    Integer factor = r.iv().getConstantOperand();
+                    return factor != null && factor > 0;
+                })
+                .findFirst()
+                .orElse(null);
+        if (by == null) {
+            return;
+        }
+        int factor = by.iv().getConstantOperand();
+        If test = findTest(loop, basic.var());
+        if (test == null) {
+            return;
+        }
+        ConditionExp cond = test.getCondition();
+        boolean ivFirst = cond.getOperand1() == basic.var();
+        Var bound = ivFirst ? cond.getOperand2() : cond.getOperand1();
+        if (!(bound.isConst() && bound.getConstValue() instanceof IntLiteral literal)) {
+            return;
+        }
+        ConditionExp.Op op = getContinueOp(loop, test, ivFirst);
+        if (op != ConditionExp.Op.LT && op != ConditionExp.Op.LE) {
+            return;
+        }
+        // the values of the induction variable at the test
+        long n = literal.getValue();
+        long max = Math.max(init, op == ConditionExp.Op.LT ? n - 1 : n) + step;
+        if (!fitsInt(max * factor) || !fitsInt((long) init * factor)
+                || !fitsInt(n * factor)) {
+            return;
+        }
+        Var newBound = newConst((int) (n * factor), plan);
+        ConditionExp newCond = ivFirst
+                ? new ConditionExp(cond.getOperator(), by.temp(), newBound)
+                : new ConditionExp(cond.getOperator(), newBound, by.temp());
+        If newTest = new If(newCond);
+        newTest.setTarget(test.getTarget());
+        plan.replacements.put(test, newTest);
+        // remove the update if it is only used by the rewritten statements
+        Set<Stmt> rewritten = Sets.newHybridSet();
+        rewritten.add(basic.def());
+        rewritten.add(test);
+        reduced.forEach(r -> rewritten.add(r.iv().def()));
+        if (rewritten.containsAll(defUse.getUses(basic.def()))) {
+            plan.removals.add(basic.def());
+        }
+    }
+
+    /**
+     * @return the only test of {@code iv} in {@code loop} against another
+     * variable, if it runs in every iteration, otherwise {@code null}.
+     */
+    @Nullable
+    private If findTest(Loop loop, Var iv) {
+        If test = null;
+        for (Stmt stmt : loop.body()) {
+            if (stmt instanceof If ifStmt && ifStmt.getCondition().getUses().contains(iv)) {
+                if (test != null) {
+                    return null;
+                }
+                test = ifStmt;
+            }
+        }
+        if (test == null || test.getCondition().getOperand1()
+                == test.getCondition().getOperand2()) {
+            return null;
+        }
+        for (Stmt tail : loop.tails()) {
+            SetFact<Stmt> doms = dominators.getOutFact(tail);
+            if (doms == null || !doms.contains(test)) {
+                return null;
+            }
+        }
+        return test;
+    }
+
+    /**
+     * @return the operator of the condition under which the loop continues
+     * after {@code test}, with the induction variable as the first operand,
+     * or {@code null} if both or neither branches stay in the loop.
+     */
+    @Nullable
+    private ConditionExp.Op getContinueOp(Loop loop, If test, boolean ivFirst) {
+        Boolean continueOnTrue = null;
+        for (CFGEdge<Stmt> edge : cfg.getOutEdgesOf(test)) {
+            if (loop.contains(edge.target())) {
+                boolean onTrue = edge.getKind() == CFGEdge.Kind.IF_TRUE;
+                if (continueOnTrue != null && continueOnTrue != onTrue) {
+                    return null;
+                }
+                continueOnTrue = onTrue;
+            }
+        }
+        if (continueOnTrue == null || cfg.getOutEdgesOf(test).stream()
+                .allMatch(edge -> loop.contains(edge.target()))) {
+            return null;
+        }
+        ConditionExp.Op op = test.getCondition().getOperator();
+        if (!ivFirst) {
+            op = switch (op) {
+                case LT -> ConditionExp.Op.GT;
+                case GT -> ConditionExp.Op.LT;
+                case LE -> ConditionExp.Op.GE;
+                case GE -> ConditionExp.Op.LE;
+                default -> op;
+            };
+        }
+        if (!continueOnTrue) {
+            op = switch (op) {
+                case EQ -> ConditionExp.Op.NE;
+                case NE -> ConditionExp.Op.EQ;
+                case LT -> ConditionExp.Op.GE;
+                case GE -> ConditionExp.Op.LT;
+                case GT -> ConditionExp.Op.LE;
+                case LE -> ConditionExp.Op.GT;
+            };
+        }
+        return op;
+    }
+
+    private static boolean fitsInt(long value) {
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Constants may be assigned in the loop, thus they are assigned
+     * again in the preheader before being used there.
+     */
+    private Var materialize(Var var, Plan plan) {
+        if (var.isConst() && var.getConstValue() instanceof IntLiteral literal) {
+            return newConst(literal.getValue(), plan);
+        }
+        return var;
+    }
+
+    private Var newConst(int value, Plan plan) {
+        IntLiteral literal = IntLiteral.get(value);
+        Var constVar = new Var(ir.getFunction(),
+                nameManager.getNewVarName(IV_CONST), IntType.INT, -1, literal);
+        plan.preheader.add(new AssignLiteral(constVar, literal));
+        return constVar;
+    }
+
+    private Var newTemp() {
+        return new Var(ir.getFunction(),
+                nameManager.getNewVarName(IV_TEMP), IntType.INT, -1);
+    }
+}
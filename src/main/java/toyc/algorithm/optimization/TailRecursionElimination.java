@@ -0,0 +1,122 @@
+package toyc.algorithm.optimization;
+
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.Goto;
+import toyc.ir.stmt.Nop;
+import toyc.ir.stmt.Return;
+import toyc.ir.stmt.Stmt;
+import toyc.util.NumericSuffixNaming;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Turns tail-recursive calls into loops.
+ * <p>
+ * A call of a function to itself is a tail call if it is followed, possibly
+ * through gotos and nops, by a {@link Return} which returns the result of
+ * the call (or nothing). Such a call is replaced by the assignments of the arguments
+ * to the parameters, and a jump to a new {@link Nop} at the start of the
+ * function. Arguments which are parameters themselves are saved in
+ * temporary variables first, as the parameters are assigned in parallel.
+ */
+public class TailRecursionElimination extends Optimization {
+
+    public static final String ID = "tail-recursion";
+
+    private static final String TAIL_TEMP = "%tailarg";
+
+    public TailRecursionElimination(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        List<Call> tailCalls = ir.calls()
+                .filter(call -> call.getCallExp().getFunction().equals(ir.getFunction())
+                        && isTailCall(ir, call))
+                .toList();
+        if (tailCalls.isEmpty()) {
+            return ir;
+        }
+        IROperation operation = new IROperation(ir);
+        NumericSuffixNaming nameManager = new NumericSuffixNaming(ir.getVars()
+                .stream()
+                .map(Var::getName)
+                .collect(Collectors.toSet()));
+        Nop entry = new Nop();
+        operation.insertBefore(ir.getStmts().getFirst(), entry);
+        for (Call call : tailCalls) {
+            operation.replace(call, jumpToEntry(ir, call, entry, nameManager));
+        }
+        return operation.getIR();
+    }
+
+    /**
+     * @return the statements which assign the arguments of self-recursive
+     * {@code call} to the parameters, and jump to {@code entry}.
+     */
+    static List<Stmt> jumpToEntry(IR ir, Call call, Stmt entry,
+                                  NumericSuffixNaming nameManager) {
+        List<Stmt> stmts = new ArrayList<>();
+        List<Var> params = ir.getParams();
+        List<Var> args = new ArrayList<>(call.getCallExp().getArgs());
+        for (int i = 0; i < args.size(); ++i) {
+            Var arg = args.get(i);
+            if (arg != params.get(i) && params.contains(arg)) {
+                Var temp = new Var(ir.getFunction(),
+                        nameManager.getNewVarName(TAIL_TEMP), arg.getType(), -1);
+                stmts.add(new Copy(temp, arg));
+                args.set(i, temp);
+            }
+        }
+        for (int i = 0; i < args.size(); ++i) {
+            Var arg = args.get(i);
+            if (arg.isConst()) {
+                stmts.add(new AssignLiteral(params.get(i), arg.getConstValue()));
+            } else if (arg != params.get(i)) {
+                stmts.add(new Copy(params.get(i), arg));
+            }
+        }
+        Goto gotoEntry = new Goto();
+        gotoEntry.setTarget(entry);
+        stmts.add(gotoEntry);
+        return stmts;
+    }
+
+    private static boolean isTailCall(IR ir, Call call) {
+        return getNextEffective(ir, call) instanceof Return ret
+                && (ret.getValue() == null || ret.getValue() == call.getResult());
+    }
+
+    /**
+     * @return the statement which runs after {@code stmt}, skipping gotos
+     * and nops, or {@code null} if there is no such statement.
+     */
+    @Nullable
+    static Stmt getNextEffective(IR ir, Stmt stmt) {
+        int next = stmt.getIndex() + 1;
+        if (next >= ir.getStmts().size()) {
+            return null;
+        }
+        Stmt curr = ir.getStmt(next);
+        // bound the statements skipped, as the gotos may form a cycle
+        for (int i = 0; i < ir.getStmts().size(); ++i) {
+            if (curr instanceof Goto gotoStmt) {
+                curr = gotoStmt.getTarget();
+            } else if (curr instanceof Nop && curr.getIndex() + 1 < ir.getStmts().size()) {
+                curr = ir.getStmt(curr.getIndex() + 1);
+            } else {
+                break;
+            }
+        }
+        return curr;
+    }
+}
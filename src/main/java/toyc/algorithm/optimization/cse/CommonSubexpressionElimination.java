@@ -0,0 +1,176 @@
+package toyc.algorithm.optimization.cse;
+
+import toyc.algorithm.analysis.dataflow.analysis.csd.CSEFact;
+import toyc.algorithm.analysis.dataflow.analysis.csd.CommonSubexpressionDetection;
+import toyc.algorithm.analysis.dataflow.fact.NodeResult;
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.optimization.IROperation;
+import toyc.algorithm.optimization.Optimization;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.BinaryExp;
+import toyc.ir.exp.Exp;
+import toyc.ir.exp.UnaryExp;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.Stmt;
+import toyc.ir.stmt.Unary;
+import toyc.language.type.IntType;
+import toyc.util.NumericSuffixNaming;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Global common subexpression elimination.
+ * <p>
+ * For each statement {@code x = e} where {@code e} is available (according
+ * to {@link CommonSubexpressionDetection}), the nearest computations of
+ * {@code e} on all paths reaching it are rewritten to {@code t = e; y = t},
+ * and the statement itself is rewritten to {@code x = t}, where {@code t}
+ * is a new temporary shared by all computations of {@code e}.
+ * <p>
+ * Only arithmetic, condition, negation and not expressions assigned to
+ * variables are eliminated; calls may have side effects, and conditions
+ * of {@code If} statements are cheaper to recompute than to reload.
+ */
+public class CommonSubexpressionElimination extends Optimization {
+
+    public static final String ID = "cse";
+
+    private static final String CSE_TEMP = "%cse";
+
+    public CommonSubexpressionElimination(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        NodeResult<Stmt, CSEFact> available =
+                ir.getResult(CommonSubexpressionDetection.ID);
+        CFG<Stmt> cfg = ir.getResult(CFGBuilder.ID);
+        // find redundant computations and the computations reaching them
+        Map<Stmt, Exp> redundant = Maps.newLinkedHashMap();
+        Set<Stmt> generators = Sets.newSet();
+        for (Stmt stmt : ir) {
+            Exp exp = getEliminableExp(stmt);
+            if (exp != null && available.getInFact(stmt).contains(exp)) {
+                Set<Stmt> gens = findGenerators(cfg, stmt, exp);
+                if (gens != null) {
+                    redundant.put(stmt, exp);
+                    generators.addAll(gens);
+                }
+            }
+        }
+        if (redundant.isEmpty()) {
+            return ir;
+        }
+        // rewrite the computations
+        IROperation operation = new IROperation(ir);
+        NumericSuffixNaming nameManager = new NumericSuffixNaming(
+                ir.getVars().stream()
+                        .map(Var::getName)
+                        .collect(Collectors.toSet()));
+        Map<Exp, Var> temps = Maps.newMap();
+        for (Stmt stmt : ir) {
+            Exp exp;
+            boolean isRedundant = redundant.containsKey(stmt);
+            if (isRedundant) {
+                exp = redundant.get(stmt);
+            } else if (generators.contains(stmt)) {
+                exp = getEliminableExp(stmt);
+            } else {
+                continue;
+            }
+            Var temp = temps.computeIfAbsent(exp, __ -> new Var(
+                    ir.getFunction(), nameManager.getNewVarName(CSE_TEMP),
+                    IntType.INT, -1));
+            Var lhs = (Var) stmt.getDef().orElseThrow();
+            if (isRedundant) {
+                // x = e -> x = t
+                operation.replace(stmt, new Copy(lhs, temp));
+            } else {
+                // y = e -> t = e; y = t
+                Stmt compute = stmt instanceof Binary binary
+                        ? new Binary(temp, binary.getRValue())
+                        : new Unary(temp, ((Unary) stmt).getRValue());
+                operation.replace(stmt, List.of(compute, new Copy(lhs, temp)));
+            }
+        }
+        return operation.getIR();
+    }
+
+    /**
+     * @return the expression computed by {@code stmt} which can be
+     * eliminated, or {@code null} if no such expression.
+     */
+    @Nullable
+    private static Exp getEliminableExp(Stmt stmt) {
+        if (stmt instanceof Binary binary) {
+            return binary.getRValue();
+        } else if (stmt instanceof Unary unary) {
+            return unary.getRValue();
+        }
+        return null;
+    }
+
+    /**
+     * Searches backward from {@code stmt} for the nearest computations of
+     * {@code exp} on all paths. This also verifies that {@code exp} is
+     * available at {@code stmt}, i.e., no path from the entry reaches
+     * {@code stmt} without computing {@code exp}, or redefines an operand
+     * of {@code exp} after its last computation.
+     *
+     * @return the nearest computations of {@code exp}, or {@code null}
+     * if {@code exp} is not available at {@code stmt}.
+     */
+    @Nullable
+    private static Set<Stmt> findGenerators(CFG<Stmt> cfg, Stmt stmt, Exp exp) {
+        Set<Var> operands = getOperands(exp);
+        Set<Stmt> generators = Sets.newHybridSet();
+        Set<Stmt> visited = Sets.newSet();
+        Deque<Stmt> workList = new ArrayDeque<>(cfg.getPredsOf(stmt));
+        while (!workList.isEmpty()) {
+            Stmt node = workList.pop();
+            if (!visited.add(node)) {
+                continue;
+            }
+            if (cfg.isEntry(node)) {
+                return null;
+            }
+            Var def = node.getDef()
+                    .filter(d -> d instanceof Var)
+                    .map(d -> (Var) d)
+                    .orElse(null);
+            boolean killed = def != null && operands.contains(def);
+            if (exp.equals(getEliminableExp(node)) && !killed) {
+                generators.add(node);
+            } else if (killed) {
+                return null;
+            } else {
+                workList.addAll(cfg.getPredsOf(node));
+            }
+        }
+        return generators;
+    }
+
+    private static Set<Var> getOperands(Exp exp) {
+        Set<Var> operands = Sets.newHybridSet();
+        if (exp instanceof BinaryExp binaryExp) {
+            operands.add(binaryExp.getOperand1());
+            operands.add(binaryExp.getOperand2());
+        } else if (exp instanceof UnaryExp unaryExp) {
+            operands.add(unaryExp.getOperand());
+        }
+        return operands;
+    }
+}
@@ -0,0 +1,452 @@
+package toyc.algorithm.optimization.gvn;
+
+import toyc.World;
+import toyc.algorithm.analysis.dataflow.analysis.DominatorAnalysis;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.CPFact;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.Evaluator;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.Value;
+import toyc.algorithm.analysis.dataflow.fact.NodeResult;
+import toyc.algorithm.analysis.dataflow.fact.SetFact;
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.analysis.graph.cfg.CFGEdge;
+import toyc.algorithm.analysis.sideeffect.SideEffectAnalysis;
+import toyc.algorithm.analysis.sideeffect.SideEffects;
+import toyc.algorithm.optimization.IROperation;
+import toyc.algorithm.optimization.Optimization;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.BinaryExp;
+import toyc.ir.exp.CallExp;
+import toyc.ir.exp.ConditionExp;
+import toyc.ir.exp.Exp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.UnaryExp;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.Goto;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.Stmt;
+import toyc.ir.stmt.Unary;
+import toyc.language.Function;
+import toyc.util.collection.CollectionUtils;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dominator-based global value numbering.
+ * <p>
+ * The statements are visited in a preorder walk of the dominator tree,
+ * which assigns value numbers to variables and expressions. Expressions
+ * are numbered by their operators and the numbers of their operands,
+ * so that equivalent expressions get the same number regardless of the
+ * names of their operands; copies propagate numbers, and constants are
+ * numbered by their values. The numbers of variables and the variables
+ * holding each number are kept in scoped tables, which are rolled back
+ * when the walk leaves a subtree.
+ * <p>
+ * As the IR is not in SSA form, the variables defined on the paths from
+ * the immediate dominator of a join statement to the statement get fresh
+ * numbers at the statement. The equality implied by the branch of an
+ * {@code If} on {@code ==} or {@code !=} is recorded for the statements
+ * dominated by the branch.
+ * <p>
+ * A computation whose number is held by a variable is replaced by a copy
+ * of the variable, a computation of a constant number is replaced by the
+ * constant, and an {@code If} whose condition has a known value is folded.
+ * Calls of functions which have no effects other than trapping or diverging
+ * (see {@link SideEffects#isDeterministic}) are numbered like computations.
+ */
+public class GlobalValueNumbering extends Optimization {
+
+    public static final String ID = "gvn";
+
+    private CFG<Stmt> cfg;
+
+    /**
+     * The effects of the functions, or {@code null} if they are unknown,
+     * in which case calls are not numbered.
+     */
+    private SideEffects sideEffects;
+
+    private IROperation operation;
+
+    private int valueCount;
+
+    /**
+     * Value numbers of expressions, which are the same in all scopes.
+     */
+    private final Map<ExpKey, Integer> expNumbers = Maps.newMap();
+
+    private final Map<Integer, Integer> constNumbers = Maps.newMap();
+
+    private final Map<Integer, Integer> numberConsts = Maps.newMap();
+
+    /**
+     * Value numbers of variables at the current statement.
+     */
+    private final Map<Var, Integer> varNumbers = Maps.newMap();
+
+    /**
+     * The variable holding each value number at the current statement.
+     */
+    private final Map<Integer, Var> leaders = Maps.newMap();
+
+    /**
+     * Undo actions of the updates to the scoped tables.
+     */
+    private final Deque<Runnable> undoLog = new ArrayDeque<>();
+
+    public GlobalValueNumbering(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        cfg = ir.getResult(CFGBuilder.ID);
+        sideEffects = World.get().hasResult(SideEffectAnalysis.ID)
+                ? World.get().getResult(SideEffectAnalysis.ID) : null;
+        NodeResult<Stmt, SetFact<Stmt>> dominators =
+                ir.getResult(DominatorAnalysis.ID);
+        operation = new IROperation(ir);
+        valueCount = 0;
+        expNumbers.clear();
+        constNumbers.clear();
+        numberConsts.clear();
+        varNumbers.clear();
+        leaders.clear();
+        undoLog.clear();
+        for (Var var : ir.getVars()) {
+            setNumber(var, newNumber());
+        }
+        Map<Stmt, Stmt> idoms = computeIdoms(dominators);
+        Map<Stmt, List<Stmt>> children = Maps.newMap();
+        idoms.forEach((node, idom) ->
+                children.computeIfAbsent(idom, __ -> new ArrayList<>()).add(node));
+        walk(idoms, children);
+        return operation.getIR();
+    }
+
+    /**
+     * Computes the immediate dominators of the reachable statements. The
+     * immediate dominator of a node is its strict dominator with the most
+     * dominators.
+     */
+    private Map<Stmt, Stmt> computeIdoms(
+            NodeResult<Stmt, SetFact<Stmt>> dominators) {
+        Map<Stmt, Stmt> idoms = Maps.newMap();
+        for (Stmt stmt : cfg.getIR()) {
+            SetFact<Stmt> doms = dominators.getOutFact(stmt);
+            if (doms == null || !doms.contains(cfg.getEntry())) {
+                continue; // unreachable
+            }
+            Stmt idom = null;
+            int idomSize = -1;
+            for (Stmt dom : doms) {
+                if (dom != stmt) {
+                    int size = cfg.isEntry(dom) ? 0 : dominators.getOutFact(dom).size();
+                    if (size > idomSize) {
+                        idom = dom;
+                        idomSize = size;
+                    }
+                }
+            }
+            idoms.put(stmt, idom);
+        }
+        return idoms;
+    }
+
+    private void walk(Map<Stmt, Stmt> idoms, Map<Stmt, List<Stmt>> children) {
+        record Frame(int mark, Iterator<Stmt> children) {
+        }
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(0, children.getOrDefault(
+                cfg.getEntry(), List.of()).iterator()));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.children().hasNext()) {
+                Stmt stmt = frame.children().next();
+                int mark = undoLog.size();
+                enter(stmt, idoms.get(stmt));
+                stack.push(new Frame(mark, children.getOrDefault(
+                        stmt, List.of()).iterator()));
+            } else {
+                stack.pop();
+                while (undoLog.size() > frame.mark()) {
+                    undoLog.pop().run();
+                }
+            }
+        }
+    }
+
+    private void enter(Stmt stmt, Stmt idom) {
+        Set<CFGEdge<Stmt>> inEdges = cfg.getInEdgesOf(stmt);
+        if (inEdges.size() > 1) {
+            killDefsBetween(idom, stmt);
+        } else if (inEdges.size() == 1) {
+            recordBranchEquality(CollectionUtils.getOne(inEdges));
+        }
+        if (stmt instanceof AssignLiteral assign
+                && assign.getRValue() instanceof IntLiteral literal) {
+            setNumber(assign.getLValue(), getConstNumber(literal.getValue()));
+        } else if (stmt instanceof Copy copy) {
+            setNumber(copy.getLValue(), getNumber(copy.getRValue()));
+        } else if (stmt instanceof Binary binary) {
+            numberComputation(stmt, binary.getLValue(), binary.getRValue());
+        } else if (stmt instanceof Unary unary) {
+            numberComputation(stmt, unary.getLValue(), unary.getRValue());
+        } else if (stmt instanceof If ifStmt) {
+            foldBranch(ifStmt);
+        } else if (stmt instanceof Call call && call.getResult() != null
+                && sideEffects != null
+                && sideEffects.isDeterministic(call.getCallExp().getFunction())) {
+            numberComputation(stmt, call.getResult(), call.getCallExp());
+        } else {
+            stmt.getDef().ifPresent(def -> {
+                if (def instanceof Var var) {
+                    setNumber(var, newNumber());
+                }
+            });
+        }
+    }
+
+    /**
+     * Gives fresh numbers to the variables defined on the paths from
+     * {@code idom} to join statement {@code stmt}, as their values at
+     * {@code stmt} may differ from the ones at {@code idom}.
+     */
+    private void killDefsBetween(Stmt idom, Stmt stmt) {
+        Set<Stmt> visited = Sets.newSet();
+        Deque<Stmt> workList = new ArrayDeque<>(cfg.getPredsOf(stmt));
+        while (!workList.isEmpty()) {
+            Stmt node = workList.pop();
+            if (node == idom || cfg.isEntry(node) || !visited.add(node)) {
+                continue;
+            }
+            node.getDef().ifPresent(def -> {
+                if (def instanceof Var var) {
+                    setNumber(var, newNumber());
+                }
+            });
+            workList.addAll(cfg.getPredsOf(node));
+        }
+    }
+
+    /**
+     * Records the equality of the operands of the condition of an
+     * {@code If}, if it holds on given edge.
+     */
+    private void recordBranchEquality(CFGEdge<Stmt> edge) {
+        if (edge.source() instanceof If ifStmt) {
+            ConditionExp cond = ifStmt.getCondition();
+            boolean equal = switch (edge.getKind()) {
+                case IF_TRUE -> cond.getOperator() == ConditionExp.Op.EQ;
+                case IF_FALSE -> cond.getOperator() == ConditionExp.Op.NE;
+                default -> false;
+            };
+            if (equal) {
+                Var v1 = cond.getOperand1();
+                Var v2 = cond.getOperand2();
+                if (numberConsts.containsKey(getNumber(v1))) {
+                    setNumber(v2, getNumber(v1));
+                } else {
+                    setNumber(v1, getNumber(v2));
+                }
+            }
+        }
+    }
+
+    private void numberComputation(Stmt stmt, Var lhs, Exp exp) {
+        int number = numberExp(exp);
+        Integer constant = numberConsts.get(number);
+        if (constant != null) {
+            operation.replace(stmt, new AssignLiteral(lhs, IntLiteral.get(constant)));
+        } else {
+            Var leader = getLeader(number);
+            if (leader == lhs) {
+                operation.remove(stmt);
+            } else if (leader != null) {
+                operation.replace(stmt, new Copy(lhs, leader));
+            }
+        }
+        setNumber(lhs, number);
+    }
+
+    /**
+     * Folds {@code If} statement whose condition has a known value.
+     */
+    private void foldBranch(If ifStmt) {
+        Integer value = numberConsts.get(numberExp(ifStmt.getCondition()));
+        if (value != null) {
+            if (value != 0) {
+                Goto jump = new Goto();
+                jump.setTarget(ifStmt.getTarget());
+                operation.replace(ifStmt, jump);
+            } else {
+                operation.remove(ifStmt);
+            }
+        }
+    }
+
+    private int numberExp(Exp exp) {
+        if (exp instanceof CallExp callExp) {
+            List<Integer> args = callExp.getArgs().stream().map(this::getNumber).toList();
+            return getExpNumber(new ExpKey(new CallKey(callExp.getFunction(), args), -1, -1));
+        } else if (exp instanceof BinaryExp binary) {
+            BinaryExp.Op op = binary.getOperator();
+            int n1 = getNumber(binary.getOperand1());
+            int n2 = getNumber(binary.getOperand2());
+            Integer constant = evaluate(binary, n1, n2);
+            if (constant != null) {
+                return getConstNumber(constant);
+            }
+            // canonicalize operands of commutative and mirrored operators
+            if (op == ConditionExp.Op.GT || op == ConditionExp.Op.GE) {
+                op = op == ConditionExp.Op.GT ? ConditionExp.Op.LT : ConditionExp.Op.LE;
+                int tmp = n1;
+                n1 = n2;
+                n2 = tmp;
+            } else if (isCommutative(op) && n1 > n2) {
+                int tmp = n1;
+                n1 = n2;
+                n2 = tmp;
+            }
+            return getExpNumber(new ExpKey(op, n1, n2));
+        } else {
+            UnaryExp unary = (UnaryExp) exp;
+            int n = getNumber(unary.getOperand());
+            Integer constant = numberConsts.get(n);
+            if (constant != null) {
+                Value value = evaluate(unary, List.of(unary.getOperand()),
+                        List.of(constant));
+                if (value.isConstant()) {
+                    return getConstNumber(value.getConstant());
+                }
+            }
+            return getExpNumber(new ExpKey(unary.getClass(), n, -1));
+        }
+    }
+
+    /**
+     * @return the value of {@code binary} when it is known from the
+     * numbers of its operands, otherwise {@code null}.
+     */
+    @Nullable
+    private Integer evaluate(BinaryExp binary, int n1, int n2) {
+        BinaryExp.Op op = binary.getOperator();
+        if (n1 == n2) {
+            if (op == ConditionExp.Op.EQ || op == ConditionExp.Op.LE
+                    || op == ConditionExp.Op.GE) {
+                return 1;
+            } else if (op == ConditionExp.Op.NE || op == ConditionExp.Op.LT
+                    || op == ConditionExp.Op.GT || op == ArithmeticExp.Op.SUB) {
+                return 0;
+            }
+        }
+        Integer c1 = numberConsts.get(n1);
+        Integer c2 = numberConsts.get(n2);
+        if (c1 == null || c2 == null) {
+            return null;
+        }
+        Value value = evaluate(binary,
+                List.of(binary.getOperand1(), binary.getOperand2()),
+                List.of(c1, c2));
+        return value.isConstant() ? value.getConstant() : null;
+    }
+
+    /**
+     * Evaluates {@code exp} by {@link Evaluator} with given constant
+     * values of its operands.
+     */
+    private static Value evaluate(Exp exp, List<Var> operands, List<Integer> values) {
+        CPFact fact = new CPFact();
+        for (int i = 0; i < operands.size(); ++i) {
+            fact.update(operands.get(i), Value.makeConstant(values.get(i)));
+        }
+        return Evaluator.evaluate(exp, fact);
+    }
+
+    private static boolean isCommutative(BinaryExp.Op op) {
+        return op == ArithmeticExp.Op.ADD || op == ArithmeticExp.Op.MUL
+                || op == ConditionExp.Op.EQ || op == ConditionExp.Op.NE;
+    }
+
+    private int newNumber() {
+        return valueCount++;
+    }
+
+    private int getConstNumber(int constant) {
+        return constNumbers.computeIfAbsent(constant, c -> {
+            int number = newNumber();
+            numberConsts.put(number, c);
+            return number;
+        });
+    }
+
+    private int getExpNumber(ExpKey key) {
+        return expNumbers.computeIfAbsent(key, __ -> newNumber());
+    }
+
+    private int getNumber(Var var) {
+        if (var.isConst() && var.getConstValue() instanceof IntLiteral literal) {
+            return getConstNumber(literal.getValue());
+        }
+        Integer number = varNumbers.get(var);
+        if (number == null) {
+            // variables not in the IR, e.g., introduced by other passes
+            number = newNumber();
+            varNumbers.put(var, number);
+        }
+        return number;
+    }
+
+    /**
+     * @return the variable holding given number at the current statement,
+     * or {@code null} if no such variable.
+     */
+    @Nullable
+    private Var getLeader(int number) {
+        Var leader = leaders.get(number);
+        return leader != null && Integer.valueOf(number).equals(varNumbers.get(leader))
+                ? leader : null;
+    }
+
+    private void setNumber(Var var, int number) {
+        put(varNumbers, var, number);
+        if (getLeader(number) == null) {
+            put(leaders, number, var);
+        }
+    }
+
+    private <K, V> void put(Map<K, V> map, K key, V value) {
+        V old = map.put(key, value);
+        undoLog.push(old == null ? () -> map.remove(key) : () -> map.put(key, old));
+    }
+
+    /**
+     * Key of expressions, consisting of the operator and the value
+     * numbers of the operands.
+     */
+    private record ExpKey(Object op, int n1, int n2) {
+    }
+
+    /**
+     * Operator of call expressions, consisting of the callee and the
+     * value numbers of the arguments.
+     */
+    private record CallKey(Function function, List<Integer> args) {
+    }
+}
@@ -0,0 +1,355 @@
+package toyc.algorithm.optimization.pre;
+
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGEdge;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.BinaryExp;
+import toyc.ir.exp.Exp;
+import toyc.ir.exp.UnaryExp;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Stmt;
+import toyc.ir.stmt.Unary;
+import toyc.util.collection.Maps;
+import toyc.util.collection.RegularBitSet;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lazy code motion on the statement-level CFG of a function.
+ * <p>
+ * The analysis runs on a flow graph which consists of the CFG nodes and
+ * one extra node on each edge entering a join node, so that computations
+ * can be placed on the edges. The CFG nodes keep their indexes in the flow
+ * graph, and the node of the i-th split edge has index {@code N + i},
+ * where {@code N} is the number of CFG nodes.
+ * <p>
+ * The placement follows the four passes of lazy code motion:
+ * anticipated expressions, available expressions (assuming the earliest
+ * placement), postponable expressions and used expressions. It yields the
+ * latest safe points to compute the expressions and the computations which
+ * can read the result from a temporary instead.
+ */
+class LazyCodeMotion {
+
+    private final CFG<Stmt> cfg;
+
+    private final int cfgNodeCount;
+
+    private final int entry;
+
+    private final int exit;
+
+    /**
+     * The CFG edges split by the extra nodes of the flow graph.
+     */
+    private final List<CFGEdge<Stmt>> splitEdges = new ArrayList<>();
+
+    private final List<List<Integer>> preds = new ArrayList<>();
+
+    private final List<List<Integer>> succs = new ArrayList<>();
+
+    private final List<Exp> exps = new ArrayList<>();
+
+    private final Map<Exp, Integer> expIds = Maps.newMap();
+
+    private final Map<Var, RegularBitSet> killIds = Maps.newMap();
+
+    private final RegularBitSet all = new RegularBitSet();
+
+    private RegularBitSet[] use;
+
+    private RegularBitSet[] kill;
+
+    private RegularBitSet[] latest;
+
+    private RegularBitSet[] usedOut;
+
+    LazyCodeMotion(CFG<Stmt> cfg) {
+        this.cfg = cfg;
+        this.cfgNodeCount = cfg.getNumberOfNodes();
+        this.entry = cfg.getIndex(cfg.getEntry());
+        this.exit = cfg.getIndex(cfg.getExit());
+        buildFlowGraph();
+        buildLocalSets();
+        solve();
+    }
+
+    /**
+     * @return the expression which can be moved by lazy code motion in
+     * {@code stmt}, or {@code null} if no such expression. Division and
+     * remainder are excluded, as computing them on a path where they were
+     * not computed may trap.
+     */
+    @Nullable
+    static Exp getMovableExp(Stmt stmt) {
+        if (stmt instanceof Binary binary) {
+            BinaryExp exp = binary.getRValue();
+            if (exp instanceof ArithmeticExp arith &&
+                    (arith.getOperator() == ArithmeticExp.Op.DIV ||
+                            arith.getOperator() == ArithmeticExp.Op.REM)) {
+                return null;
+            }
+            return exp;
+        } else if (stmt instanceof Unary unary) {
+            return unary.getRValue();
+        }
+        return null;
+    }
+
+    private void buildFlowGraph() {
+        for (int i = 0; i < cfgNodeCount; ++i) {
+            preds.add(new ArrayList<>());
+            succs.add(new ArrayList<>());
+        }
+        for (int i = 0; i < cfgNodeCount; ++i) {
+            for (CFGEdge<Stmt> edge : cfg.getOutEdgesOf(cfg.getNode(i))) {
+                Stmt target = edge.target();
+                int t = cfg.getIndex(target);
+                if (!cfg.isExit(target) && cfg.getInEdgesOf(target).size() > 1) {
+                    int node = cfgNodeCount + splitEdges.size();
+                    splitEdges.add(edge);
+                    preds.add(new ArrayList<>());
+                    succs.add(new ArrayList<>());
+                    addEdge(i, node);
+                    addEdge(node, t);
+                } else {
+                    addEdge(i, t);
+                }
+            }
+        }
+    }
+
+    private void addEdge(int source, int target) {
+        succs.get(source).add(target);
+        preds.get(target).add(source);
+    }
+
+    private void buildLocalSets() {
+        int size = preds.size();
+        use = newSets(size, false);
+        kill = newSets(size, false);
+        for (int i = 0; i < cfgNodeCount; ++i) {
+            Exp exp = getMovableExp(cfg.getNode(i));
+            if (exp != null) {
+                use[i].set(getId(exp));
+            }
+        }
+        for (int i = 0; i < cfgNodeCount; ++i) {
+            RegularBitSet killed = cfg.getNode(i).getDef()
+                    .filter(def -> def instanceof Var)
+                    .map(killIds::get)
+                    .orElse(null);
+            if (killed != null) {
+                kill[i].or(killed);
+            }
+        }
+    }
+
+    private int getId(Exp exp) {
+        Integer id = expIds.get(exp);
+        if (id == null) {
+            id = exps.size();
+            exps.add(exp);
+            expIds.put(exp, id);
+            all.set(id);
+            List<Var> operands = exp instanceof BinaryExp binaryExp
+                    ? List.of(binaryExp.getOperand1(), binaryExp.getOperand2())
+                    : List.of(((UnaryExp) exp).getOperand());
+            for (Var operand : operands) {
+                killIds.computeIfAbsent(operand, __ -> new RegularBitSet())
+                        .set(id);
+            }
+        }
+        return id;
+    }
+
+    private void solve() {
+        int size = preds.size();
+        // anticipated expressions (backward, must)
+        RegularBitSet[] antIn = newSets(size, true);
+        antIn[exit].clear();
+        boolean changed;
+        do {
+            changed = false;
+            for (int n = size - 1; n >= 0; --n) {
+                if (n == exit) {
+                    continue;
+                }
+                RegularBitSet in = meet(succs.get(n), antIn, true);
+                in.andNot(kill[n]);
+                in.or(use[n]);
+                changed |= update(antIn, n, in);
+            }
+        } while (changed);
+        // available expressions (forward, must), assuming that the
+        // anticipated expressions are computed at the earliest points
+        RegularBitSet[] avIn = newSets(size, true);
+        RegularBitSet[] avOut = newSets(size, true);
+        avIn[entry].clear();
+        avOut[entry].clear();
+        do {
+            changed = false;
+            for (int n = 0; n < size; ++n) {
+                if (n == entry) {
+                    continue;
+                }
+                RegularBitSet in = meet(preds.get(n), avOut, true);
+                RegularBitSet out = in.copy();
+                out.or(antIn[n]);
+                out.andNot(kill[n]);
+                changed |= update(avIn, n, in);
+                changed |= update(avOut, n, out);
+            }
+        } while (changed);
+        RegularBitSet[] earliest = new RegularBitSet[size];
+        for (int n = 0; n < size; ++n) {
+            earliest[n] = antIn[n].copy();
+            earliest[n].andNot(avIn[n]);
+        }
+        earliest[entry].clear();
+        // postponable expressions (forward, must)
+        RegularBitSet[] ppIn = newSets(size, true);
+        RegularBitSet[] ppOut = newSets(size, true);
+        ppIn[entry].clear();
+        ppOut[entry].clear();
+        do {
+            changed = false;
+            for (int n = 0; n < size; ++n) {
+                if (n == entry) {
+                    continue;
+                }
+                RegularBitSet in = meet(preds.get(n), ppOut, true);
+                RegularBitSet out = in.copy();
+                out.or(earliest[n]);
+                out.andNot(use[n]);
+                changed |= update(ppIn, n, in);
+                changed |= update(ppOut, n, out);
+            }
+        } while (changed);
+        // latest placement points: an expression is placed at a node
+        // if it cannot be postponed to all successors, or it is used
+        RegularBitSet[] frontier = new RegularBitSet[size];
+        for (int n = 0; n < size; ++n) {
+            frontier[n] = earliest[n].copy();
+            frontier[n].or(ppIn[n]);
+        }
+        latest = new RegularBitSet[size];
+        for (int n = 0; n < size; ++n) {
+            RegularBitSet notPostponable = all.copy();
+            notPostponable.andNot(meet(succs.get(n), frontier, true));
+            notPostponable.or(use[n]);
+            latest[n] = frontier[n].copy();
+            latest[n].and(notPostponable);
+        }
+        // used expressions (backward, may)
+        RegularBitSet[] usedIn = newSets(size, false);
+        usedOut = newSets(size, false);
+        do {
+            changed = false;
+            for (int n = size - 1; n >= 0; --n) {
+                if (n == exit) {
+                    continue;
+                }
+                RegularBitSet out = meet(succs.get(n), usedIn, false);
+                RegularBitSet in = out.copy();
+                in.or(use[n]);
+                in.andNot(latest[n]);
+                changed |= update(usedOut, n, out);
+                changed |= update(usedIn, n, in);
+            }
+        } while (changed);
+    }
+
+    /**
+     * Meets the facts of given neighbors. The result is empty for nodes
+     * without neighbors, i.e., nothing is assumed at dead ends.
+     */
+    private RegularBitSet meet(List<Integer> neighbors, RegularBitSet[] facts,
+                               boolean intersect) {
+        if (neighbors.isEmpty()) {
+            return new RegularBitSet();
+        }
+        RegularBitSet result = facts[neighbors.getFirst()].copy();
+        for (int neighbor : neighbors) {
+            if (intersect) {
+                result.and(facts[neighbor]);
+            } else {
+                result.or(facts[neighbor]);
+            }
+        }
+        return result;
+    }
+
+    private static boolean update(RegularBitSet[] facts, int node,
+                                  RegularBitSet fact) {
+        if (fact.equals(facts[node])) {
+            return false;
+        }
+        facts[node] = fact;
+        return true;
+    }
+
+    private RegularBitSet[] newSets(int size, boolean full) {
+        RegularBitSet[] sets = new RegularBitSet[size];
+        for (int i = 0; i < size; ++i) {
+            sets[i] = full ? all.copy() : new RegularBitSet();
+        }
+        return sets;
+    }
+
+    // ---------- results ----------
+
+    /**
+     * @return number of nodes in the flow graph.
+     */
+    int getNumberOfNodes() {
+        return preds.size();
+    }
+
+    /**
+     * @return the CFG node of given flow graph node, or {@code null}
+     * if the node is on a split edge.
+     */
+    @Nullable
+    Stmt getStmt(int node) {
+        return node < cfgNodeCount ? cfg.getNode(node) : null;
+    }
+
+    /**
+     * @return the CFG edge split by given flow graph node.
+     */
+    CFGEdge<Stmt> getSplitEdge(int node) {
+        return splitEdges.get(node - cfgNodeCount);
+    }
+
+    Exp getExp(int id) {
+        return exps.get(id);
+    }
+
+    /**
+     * @return ids of the expressions to compute at the start of given node.
+     */
+    RegularBitSet getInsertions(int node) {
+        RegularBitSet insertions = latest[node].copy();
+        insertions.and(usedOut[node]);
+        return insertions;
+    }
+
+    /**
+     * @return {@code true} if the computation at given node can be replaced
+     * by reading the temporary of its expression.
+     */
+    boolean isReplaceable(int node) {
+        if (use[node].isEmpty()) {
+            return false;
+        }
+        RegularBitSet replaced = all.copy();
+        replaced.andNot(latest[node]);
+        replaced.or(usedOut[node]);
+        return replaced.intersects(use[node]);
+    }
+}
@@ -0,0 +1,118 @@
+package toyc.algorithm.optimization.pre;
+
+import toyc.algorithm.analysis.graph.cfg.CFG;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.analysis.graph.cfg.CFGEdge;
+import toyc.algorithm.optimization.IROperation;
+import toyc.algorithm.optimization.Optimization;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.exp.BinaryExp;
+import toyc.ir.exp.Exp;
+import toyc.ir.exp.UnaryExp;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.Stmt;
+import toyc.ir.stmt.Unary;
+import toyc.language.type.IntType;
+import toyc.util.AnalysisException;
+import toyc.util.NumericSuffixNaming;
+import toyc.util.collection.Maps;
+import toyc.util.collection.RegularBitSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Partial redundancy elimination by lazy code motion.
+ * <p>
+ * Each expression {@code e} chosen by {@link LazyCodeMotion} gets a new
+ * temporary {@code t}. The computations {@code t = e} are inserted at the
+ * latest points which make {@code e} available wherever it is (partially)
+ * redundant, and the redundant computations {@code x = e} are rewritten to
+ * {@code x = t}. Computations placed on an edge entering a join statement
+ * are inserted on the edge according to its {@link CFGEdge.Kind}; the edge
+ * of a jump to its target is split by a new block if necessary.
+ * <p>
+ * This also hoists loop-invariant expressions out of loops, as the edge
+ * entering a loop header from outside of the loop is split.
+ */
+public class PartialRedundancyElimination extends Optimization {
+
+    public static final String ID = "pre";
+
+    private static final String PRE_TEMP = "%pre";
+
+    public PartialRedundancyElimination(AlgorithmConfig config) {
+        super(config);
+    }
+
+    @Override
+    public IR optimize(IR ir) {
+        CFG<Stmt> cfg = ir.getResult(CFGBuilder.ID);
+        LazyCodeMotion lcm = new LazyCodeMotion(cfg);
+        NumericSuffixNaming nameManager = new NumericSuffixNaming(
+                ir.getVars().stream()
+                        .map(Var::getName)
+                        .collect(Collectors.toSet()));
+        Map<Exp, Var> temps = Maps.newMap();
+        IROperation operation = new IROperation(ir);
+        boolean changed = false;
+        // insert computations; the ones on the targets of jumps are
+        // collected first, as each split edge gets a single new block
+        Map<If, List<Stmt>> splitJumps = Maps.newLinkedHashMap();
+        for (int node = 0; node < lcm.getNumberOfNodes(); ++node) {
+            RegularBitSet insertions = lcm.getInsertions(node);
+            for (int id = insertions.nextSetBit(0); id >= 0;
+                 id = insertions.nextSetBit(id + 1)) {
+                Exp exp = lcm.getExp(id);
+                Var temp = temps.computeIfAbsent(exp, __ -> new Var(
+                        ir.getFunction(), nameManager.getNewVarName(PRE_TEMP),
+                        IntType.INT, -1));
+                Stmt compute = newCompute(temp, exp);
+                Stmt stmt = lcm.getStmt(node);
+                if (stmt != null) {
+                    operation.prepend(stmt, compute);
+                } else {
+                    CFGEdge<Stmt> edge = lcm.getSplitEdge(node);
+                    switch (edge.getKind()) {
+                        case ENTRY -> operation.insertBefore(edge.target(), compute);
+                        case FALL_THROUGH, IF_FALSE ->
+                                operation.insertAfter(edge.source(), compute);
+                        case GOTO -> operation.prepend(edge.source(), compute);
+                        case IF_TRUE -> splitJumps.computeIfAbsent(
+                                (If) edge.source(), __ -> new ArrayList<>())
+                                .add(compute);
+                        default -> throw new AnalysisException(
+                                "Cannot insert computation on " + edge);
+                    }
+                }
+                changed = true;
+            }
+        }
+        splitJumps.forEach(operation::splitJump);
+        // replace redundant computations
+        for (int node = 0; node < lcm.getNumberOfNodes(); ++node) {
+            if (lcm.isReplaceable(node)) {
+                Stmt stmt = lcm.getStmt(node);
+                Var temp = temps.get(LazyCodeMotion.getMovableExp(stmt));
+                if (temp != null) {
+                    Var lhs = (Var) stmt.getDef().orElseThrow();
+                    operation.replace(stmt, new Copy(lhs, temp));
+                    changed = true;
+                }
+            }
+        }
+        return changed ? operation.getIR() : ir;
+    }
+
+    private static Stmt newCompute(Var temp, Exp exp) {
+        return exp instanceof BinaryExp binaryExp
+                ? new Binary(temp, binaryExp)
+                : new Unary(temp, (UnaryExp) exp);
+    }
+}
@@ -96,11 +96,24 @@ public class RISCV32Generator implements AssemblyGenerator {
         
         // --- Function Body ---
         // Generate code for each statement using visitor pattern
-        StmtCodeGenerator codeGen = new StmtCodeGenerator(builder, allocator, functionExitLabel);
+        Runnable epilogue = () -> generateEpilogue(builder, stackSize, totalStackSize, savedRegs);
+        StmtCodeGenerator codeGen = new StmtCodeGenerator(builder, allocator, functionExitLabel, epilogue);
         codeGen.generateCode(ir.getStmts()); // 使用新的generateCode方法
 
         // --- Epilogue ---
         builder.label(functionExitLabel);
+        epilogue.run();
+        builder.ret();
+
+        return builder.toString();
+    }
+
+    /**
+     * Restores the saved registers and deallocates the stack frame,
+     * before returning or jumping to the callee of a tail call.
+     */
+    private static void generateEpilogue(RISCV32AsmBuilder builder, int stackSize,
+                                         int totalStackSize, Set<String> savedRegs) {
         if (totalStackSize > 0 || !savedRegs.isEmpty()) {
             builder.comment("Function epilogue - restore registers and deallocate stack");
             int saveOffset = stackSize;
@@ -113,9 +126,6 @@ public class RISCV32Generator implements AssemblyGenerator {
                 builder.addi("sp", "sp", String.valueOf(totalStackSize));
             }
         }
-        builder.ret();
-
-        return builder.toString();
     }
 
     /**
@@ -163,13 +173,16 @@ public class RISCV32Generator implements AssemblyGenerator {
         private final RegisterAllocator allocator;
         private final Map<Stmt, String> stmtLabels;
         private final String functionExitLabel;
+        private final Runnable epilogue;
         private int labelCounter = 0;
 
-        public StmtCodeGenerator(RISCV32AsmBuilder builder, RegisterAllocator allocator, String functionExitLabel) {
+        public StmtCodeGenerator(RISCV32AsmBuilder builder, RegisterAllocator allocator,
+                                 String functionExitLabel, Runnable epilogue) {
             this.builder = builder;
             this.allocator = allocator;
             this.stmtLabels = new HashMap<>();
             this.functionExitLabel = functionExitLabel;
+            this.epilogue = epilogue;
         }
 
         /**
@@ -202,14 +215,20 @@ public class RISCV32Generator implements AssemblyGenerator {
             preprocessLabels(stmts);
 
             // 生成代码
-            for (Stmt stmt : stmts) {
+            for (int i = 0; i < stmts.size(); i++) {
+                Stmt stmt = stmts.get(i);
                 // 如果这个语句有标签，先输出标签
                 if (stmtLabels.containsKey(stmt)) {
                     builder.label(stmtLabels.get(stmt));
                 }
                 
                 // 生成语句代码
-                stmt.accept(this);
+                if (stmt instanceof Call call && i + 1 < stmts.size()
+                        && isTailCall(call, stmts.get(i + 1))) {
+                    generateTailCall(call);
+                } else {
+                    stmt.accept(this);
+                }
             }
             // 如果函数末尾没有return语句，添加一个跳转到退出点
             // 这确保所有执行路径都通过统一的退出点
@@ -368,6 +387,34 @@ public class RISCV32Generator implements AssemblyGenerator {
             return null;
         }
 
+        /**
+         * A call is a tail call if it is followed by a return of its
+         * result (or of nothing), and all its arguments are passed in
+         * registers, so that the callee can reuse the stack of the caller.
+         */
+        private static boolean isTailCall(Call call, Stmt next) {
+            return next instanceof Return ret
+                    && (ret.getValue() == null || ret.getValue() == call.getResult())
+                    && call.getCallExp().getArgCount() <= 8;
+        }
+
+        /**
+         * 尾调用：加载参数后恢复寄存器并释放栈帧，然后直接跳转到被调函数，
+         * 被调函数返回时直接返回到当前函数的调用者
+         */
+        private void generateTailCall(Call stmt) {
+            CallExp callExp = stmt.getCallExp();
+            for (int i = 0; i < callExp.getArgCount(); i++) {
+                String srcReg = loadOperand(callExp.getArg(i));
+                String argReg = "a" + i;
+                if (!srcReg.equals(argReg)) {
+                    builder.mv(argReg, srcReg);
+                }
+            }
+            epilogue.run();
+            builder.j(callExp.getFunction().getName());
+        }
+
         @Override
         public Void visit(Return stmt) {
             if (stmt.getValue() != null) {
@@ -1,9 +1,11 @@
 package toyc.ir;
 
+import toyc.ir.exp.IntLiteral;
 import toyc.ir.exp.Var;
 import toyc.ir.stmt.Return;
 import toyc.ir.stmt.Stmt;
 import toyc.language.Function;
+import toyc.language.type.IntType;
 import toyc.language.type.Type;
 import toyc.language.type.VoidType;
 
@@ -25,6 +27,8 @@ public class IRBuildHelper {
 
     private static final String RETURN = "%return";
 
+    private static final String CONST = "%const";
+
     private final Function function;
 
     private final List<Var> params;
@@ -45,6 +49,11 @@ public class IRBuildHelper {
      */
     private int tempCounter = 0;
 
+    /**
+     * Counter for naming constant variables.
+     */
+    private int constCounter = 0;
+
     public IRBuildHelper(Function function) {
         this.function = function;
         // build this variable
@@ -83,6 +92,17 @@ public class IRBuildHelper {
         return newVar(TEMP + tempCounter++, type);
     }
 
+    /**
+     * @return a new constant variable holding given literal. The client code
+     * is expected to assign the literal to it, as the frontend does.
+     */
+    public Var newConstVar(IntLiteral literal) {
+        Var var = new Var(function, CONST + constCounter++, IntType.INT,
+                varCounter++, literal);
+        vars.add(var);
+        return var;
+    }
+
     /**
      * @return a new return statement of the IR being built.
      */
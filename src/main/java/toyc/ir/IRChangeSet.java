@@ -0,0 +1,163 @@
+package toyc.ir;
+
+import toyc.ir.stmt.Stmt;
+import toyc.util.collection.Maps;
+import toyc.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Statements changed when an IR is transformed into a new one.
+ * <p>
+ * A change set is recorded by {@link toyc.algorithm.optimization.IROperation}
+ * and stored in the new IR under {@link #KEY}, so that analyses can update
+ * the results of the base IR instead of recomputing them from scratch.
+ * Statements that are not changed are shared by the base IR and the new IR.
+ */
+public class IRChangeSet {
+
+    public static final String KEY = "ir-changes";
+
+    /**
+     * Max number of consecutive change sets that are reachable from an IR.
+     * Older change sets are dropped, so that the base IRs (and the results
+     * stored in them) can be garbage-collected.
+     */
+    private static final int MAX_HISTORY = 8;
+
+    private final IR base;
+
+    private final Set<Stmt> inserted = Sets.newSet();
+
+    private final Set<Stmt> removed = Sets.newSet();
+
+    private final Map<Stmt, List<Stmt>> replaced = Maps.newLinkedHashMap();
+
+    /**
+     * Unchanged statements whose control-flow neighbors changed.
+     */
+    private final Set<Stmt> touched = Sets.newSet();
+
+    public IRChangeSet(IR base) {
+        this.base = base;
+    }
+
+    /**
+     * @return the IR before the changes.
+     */
+    public IR getBase() {
+        return base;
+    }
+
+    public void recordInsert(Stmt stmt) {
+        inserted.add(stmt);
+    }
+
+    public void recordRemove(Stmt stmt) {
+        removed.add(stmt);
+    }
+
+    public void recordReplace(Stmt stmt, List<Stmt> newStmts) {
+        replaced.put(stmt, newStmts);
+    }
+
+    /**
+     * Records that the predecessors or successors of {@code stmt} changed.
+     */
+    public void recordTouch(@Nullable Stmt stmt) {
+        if (stmt != null) {
+            touched.add(stmt);
+        }
+    }
+
+    public Set<Stmt> getInsertedStmts() {
+        return Collections.unmodifiableSet(inserted);
+    }
+
+    public Set<Stmt> getRemovedStmts() {
+        return Collections.unmodifiableSet(removed);
+    }
+
+    /**
+     * @return map from each replaced statement to its replacements.
+     */
+    public Map<Stmt, List<Stmt>> getReplacedStmts() {
+        return Collections.unmodifiableMap(replaced);
+    }
+
+    /**
+     * @return the statements whose facts may differ from the ones in the
+     * base IR, i.e., inserted statements, replacements, and statements
+     * adjacent to removed statements or whose jump targets changed.
+     * Some of them may have been removed by later changes.
+     */
+    public Set<Stmt> getAffectedStmts() {
+        Set<Stmt> affected = Sets.newSet(inserted);
+        replaced.values().forEach(affected::addAll);
+        affected.addAll(touched);
+        return affected;
+    }
+
+    /**
+     * @return {@code true} if nothing changed.
+     */
+    public boolean isEmpty() {
+        return inserted.isEmpty() && removed.isEmpty()
+                && replaced.isEmpty() && touched.isEmpty();
+    }
+
+    /**
+     * Stores this change set in {@code ir}, which must be the result
+     * of applying the changes to the base IR.
+     */
+    public void attachTo(IR ir) {
+        ir.storeResult(KEY, this);
+        // drop the change sets beyond the history limit
+        IR curr = base;
+        for (int i = 1; i < MAX_HISTORY; ++i) {
+            IRChangeSet changes = curr.getResult(KEY);
+            if (changes == null) {
+                return;
+            }
+            curr = changes.base;
+        }
+        curr.clearResult(KEY);
+    }
+
+    /**
+     * @return the changes between {@code ir} and its nearest previous
+     * version which holds the result of given key, or {@code null}
+     * if no such version is recorded.
+     */
+    @Nullable
+    public static IRChangeSet since(IR ir, String key) {
+        IRChangeSet result = null;
+        IRChangeSet changes = ir.getResult(KEY);
+        while (changes != null) {
+            result = result == null ? changes : changes.followedBy(result);
+            if (changes.base.hasResult(key)) {
+                return result;
+            }
+            changes = changes.base.getResult(KEY);
+        }
+        return null;
+    }
+
+    /**
+     * @return the change set of applying this and then {@code next}.
+     */
+    private IRChangeSet followedBy(IRChangeSet next) {
+        IRChangeSet result = new IRChangeSet(base);
+        for (IRChangeSet changes : List.of(this, next)) {
+            result.inserted.addAll(changes.inserted);
+            result.removed.addAll(changes.removed);
+            result.replaced.putAll(changes.replaced);
+            result.touched.addAll(changes.touched);
+        }
+        return result;
+    }
+}
@@ -133,6 +133,20 @@ public class MutableIR {
         return null; // Current statement not found
     }
 
+    /**
+     * Get the previous statement before the specified statement.
+     */
+    public Stmt getPrevStmt(Stmt currentStmt) {
+        Stmt prev = null;
+        for (Stmt stmt : stmts) {
+            if (stmt == currentStmt) {
+                return prev;
+            }
+            prev = stmt;
+        }
+        return null; // Current statement not found
+    }
+
     /**
      * Get the predecessors that jump to the specified statement.
      */
@@ -24,6 +24,21 @@ public class ConditionExp extends AbstractBinaryExp {
             this.symbol = symbol;
         }
 
+        /**
+         * @return the operator {@code op} such that {@code a this b}
+         * iff {@code !(a op b)}.
+         */
+        public Op negate() {
+            return switch (this) {
+                case EQ -> NE;
+                case NE -> EQ;
+                case LT -> GE;
+                case GE -> LT;
+                case GT -> LE;
+                case LE -> GT;
+            };
+        }
+
         @Override
         public String toString() {
             return symbol;
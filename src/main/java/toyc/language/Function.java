@@ -15,12 +15,12 @@ import java.util.List;
 public class Function {
     private final String name;
 
-    private final List<Type> paramTypes;
+    private List<Type> paramTypes;
 
-    private final Type returnType;
+    private Type returnType;
 
     @Nullable
-    private final List<String> paramNames;
+    private List<String> paramNames;
 
     private transient IR ir;
 
@@ -74,6 +74,19 @@ public class Function {
         this.ir = ir;
     }
 
+    /**
+     * Sets the signature of this function, e.g., after removing its
+     * unused parameters. The calls and the IR of this function must be
+     * updated accordingly.
+     * This method should only be used in Optimization
+     */
+    public void setSignature(List<Type> paramTypes, Type returnType,
+                             @Nullable List<String> paramNames) {
+        this.paramTypes = List.copyOf(paramTypes);
+        this.returnType = returnType;
+        this.paramNames = paramNames;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -1,5 +1,6 @@
 package toyc.language;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.LinkedHashMap;
@@ -12,7 +13,7 @@ public class Program {
     private final Function mainFunction;
 
     public Program(List<Function> functions) {
-        this.functions = List.copyOf(functions);
+        this.functions = new ArrayList<>(functions);
         this.functionMap = new LinkedHashMap<>();
         Function main = null;
         
@@ -26,6 +27,29 @@ public class Program {
         this.mainFunction = main;
     }
 
+    /**
+     * Adds a function created by optimizations, e.g., an outlined function.
+     */
+    public void addFunction(Function function) {
+        if (functionMap.containsKey(function.getName())) {
+            throw new IllegalArgumentException(
+                    "Function " + function.getName() + " already exists");
+        }
+        functions.add(function);
+        functionMap.put(function.getName(), function);
+    }
+
+    /**
+     * Removes a function which is never called, e.g., an unreachable function.
+     */
+    public void removeFunction(Function function) {
+        if (function == mainFunction) {
+            throw new IllegalArgumentException("Main function cannot be removed");
+        }
+        functions.remove(function);
+        functionMap.remove(function.getName());
+    }
+
     public Stream<Function> allFunctions() {
         return functions.stream();
     }
@@ -38,6 +38,19 @@ public final class Maps {
         return new LinkedHashMap<>();
     }
 
+    /**
+     * @return a map which keeps at most {@code maxSize} entries, and
+     * evicts the least-recently accessed entry when it is full.
+     */
+    public static <K, V> Map<K, V> newLRUMap(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
     public static <K extends Comparable<K>, V> Map<K, V> newOrderedMap() {
         return new TreeMap<>();
     }
@@ -58,6 +71,14 @@ public final class Maps {
         return new HybridHashMap<>(map);
     }
 
+    public static <K, V> Map<K, V> newPersistentMap() {
+        return new PersistentHashMap<>();
+    }
+
+    public static <K, V> Map<K, V> newPersistentMap(Map<K, V> map) {
+        return new PersistentHashMap<>(map);
+    }
+
     public static <K, V> ConcurrentMap<K, V> newConcurrentMap() {
         return new ConcurrentHashMap<>();
     }
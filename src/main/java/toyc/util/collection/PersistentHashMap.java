@@ -0,0 +1,572 @@
+package toyc.util.collection;
+
+import toyc.util.Copyable;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Hash map backed by a persistent hash array mapped trie (HAMT).
+ * <p>
+ * The trie nodes are never modified after creation: each update copies
+ * only the nodes on the path from the root to the affected entry, and
+ * shares all other nodes with the previous version. As a result,
+ * {@link #copy()} takes O(1) time, and a copy and its origin share
+ * all structure until either of them is updated.
+ * <p>
+ * This map is designed for data-flow facts, which are frequently copied
+ * and then updated at a few keys. Keys added to this map cannot be null.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V>
+        implements Copyable<PersistentHashMap<K, V>>, Serializable {
+
+    private static final String NULL_KEY = "PersistentHashMap does not permit null keys";
+
+    /**
+     * Number of hash bits consumed by each level of the trie.
+     */
+    private static final int BITS = 5;
+
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * Marker for absent values, as null is a legal value.
+     */
+    private static final Object NOT_FOUND = new Object();
+
+    /**
+     * Root of the trie. Null if this map is empty.
+     */
+    private Node root;
+
+    private int size;
+
+    /**
+     * Whether the last put/remove found an existing mapping.
+     * Used to pass results out of the recursive node operations
+     * without allocating a result object per update.
+     */
+    private transient boolean found;
+
+    /**
+     * The value replaced or removed by the last put/remove.
+     */
+    private transient Object oldValue;
+
+    /**
+     * Constructs a new empty persistent map.
+     */
+    public PersistentHashMap() {
+    }
+
+    /**
+     * Constructs a new persistent map from the given map. If the given map
+     * is also a {@link PersistentHashMap}, the construction takes O(1) time.
+     */
+    public PersistentHashMap(Map<K, V> m) {
+        if (m instanceof PersistentHashMap<K, V> pm) {
+            root = pm.root;
+            size = pm.size;
+        } else {
+            putAll(m);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != NOT_FOUND;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Object v = find(key);
+        return v == NOT_FOUND ? null : (V) v;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        Object v = find(key);
+        return v == NOT_FOUND ? defaultValue : (V) v;
+    }
+
+    private Object find(Object key) {
+        if (key == null || root == null) {
+            return NOT_FOUND;
+        }
+        return root.find(key, hash(key), 0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(@Nonnull K key, V value) {
+        Objects.requireNonNull(key, NULL_KEY);
+        found = false;
+        oldValue = null;
+        int hash = hash(key);
+        root = root == null
+                ? new BitmapNode(bit(hash, 0), new Object[]{ key, value })
+                : root.put(key, hash, value, 0, this);
+        if (!found) {
+            ++size;
+        }
+        V old = (V) oldValue;
+        oldValue = null;
+        return old;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        if (key == null || root == null) {
+            return null;
+        }
+        found = false;
+        oldValue = null;
+        root = root.remove(key, hash(key), 0, this);
+        if (found) {
+            --size;
+        }
+        V old = (V) oldValue;
+        oldValue = null;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * Sets the content of this map to the same as the given map in O(1) time.
+     */
+    public void setTo(PersistentHashMap<K, V> other) {
+        root = other.root;
+        size = other.size;
+    }
+
+    /**
+     * Creates and returns a copy of this map in O(1) time.
+     * The copy shares all trie nodes with this map.
+     */
+    @Override
+    public PersistentHashMap<K, V> copy() {
+        return new PersistentHashMap<>(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof PersistentHashMap<?, ?> that && root == that.root) {
+            // shared structure implies equal contents
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        // follows the contract of Map.hashCode(), which cannot
+        // rely on MapEntry.hashCode()
+        int h = 0;
+        for (Map.Entry<K, V> e : entrySet()) {
+            h += Objects.hashCode(e.getKey()) ^ Objects.hashCode(e.getValue());
+        }
+        return h;
+    }
+
+    @Nonnull
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Nonnull
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Entry<?, ?> e)) {
+                    return false;
+                }
+                Object v = find(e.getKey());
+                return v != NOT_FOUND && Objects.equals(v, e.getValue());
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (contains(o)) {
+                    PersistentHashMap.this.remove(((Entry<?, ?>) o).getKey());
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public void clear() {
+                PersistentHashMap.this.clear();
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static Object[] cloneAndSet(Object[] array, int i, Object a) {
+        Object[] clone = array.clone();
+        clone[i] = a;
+        return clone;
+    }
+
+    private static Object[] cloneAndSet(Object[] array, int i, Object a,
+                                        int j, Object b) {
+        Object[] clone = array.clone();
+        clone[i] = a;
+        clone[j] = b;
+        return clone;
+    }
+
+    /**
+     * Removes the key-value pair at index {@code 2 * i} of the given array.
+     */
+    private static Object[] removePair(Object[] array, int i) {
+        Object[] result = new Object[array.length - 2];
+        System.arraycopy(array, 0, result, 0, 2 * i);
+        System.arraycopy(array, 2 * (i + 1), result, 2 * i,
+                result.length - 2 * i);
+        return result;
+    }
+
+    /**
+     * Creates a node holding two entries whose keys are different.
+     */
+    private static Node createNode(int shift, Object k1, Object v1,
+                                   int h2, Object k2, Object v2) {
+        int h1 = hash(k1);
+        if (h1 == h2) {
+            return new CollisionNode(h1, new Object[]{ k1, v1, k2, v2 });
+        }
+        int b1 = bit(h1, shift);
+        int b2 = bit(h2, shift);
+        if (b1 == b2) {
+            Node child = createNode(shift + BITS, k1, v1, h2, k2, v2);
+            return new BitmapNode(b1, new Object[]{ null, child });
+        }
+        // keep entries ordered by their bit positions
+        Object[] array = Integer.compareUnsigned(b1, b2) < 0
+                ? new Object[]{ k1, v1, k2, v2 }
+                : new Object[]{ k2, v2, k1, v1 };
+        return new BitmapNode(b1 | b2, array);
+    }
+
+    /**
+     * Immutable trie node. The array stores key-value pairs as consecutive
+     * elements; a null key means that the value slot holds a child node.
+     */
+    private abstract static class Node implements Serializable {
+
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object find(Object key, int hash, int shift);
+
+        /**
+         * @return the updated node, or this node if nothing changed.
+         */
+        abstract Node put(Object key, int hash, Object value, int shift,
+                          PersistentHashMap<?, ?> map);
+
+        /**
+         * @return the updated node, this node if nothing changed,
+         * or null if the node becomes empty.
+         */
+        abstract Node remove(Object key, int hash, int shift,
+                             PersistentHashMap<?, ?> map);
+    }
+
+    private static final class BitmapNode extends Node {
+
+        private final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return NOT_FOUND;
+            }
+            int i = index(bit);
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null) {
+                return ((Node) v).find(key, hash, shift + BITS);
+            }
+            return key.equals(k) ? v : NOT_FOUND;
+        }
+
+        @Override
+        Node put(Object key, int hash, Object value, int shift,
+                 PersistentHashMap<?, ?> map) {
+            int bit = bit(hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, 2 * i);
+                newArray[2 * i] = key;
+                newArray[2 * i + 1] = value;
+                System.arraycopy(array, 2 * i, newArray, 2 * (i + 1),
+                        array.length - 2 * i);
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null) {
+                Node child = (Node) v;
+                Node newChild = child.put(key, hash, value, shift + BITS, map);
+                return newChild == child ? this
+                        : new BitmapNode(bitmap, cloneAndSet(array, 2 * i + 1, newChild));
+            }
+            if (key.equals(k)) {
+                map.found = true;
+                map.oldValue = v;
+                return v == value ? this
+                        : new BitmapNode(bitmap, cloneAndSet(array, 2 * i + 1, value));
+            }
+            Node child = createNode(shift + BITS, k, v, hash, key, value);
+            return new BitmapNode(bitmap,
+                    cloneAndSet(array, 2 * i, null, 2 * i + 1, child));
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift,
+                    PersistentHashMap<?, ?> map) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = index(bit);
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null) {
+                Node child = (Node) v;
+                Node newChild = child.remove(key, hash, shift + BITS, map);
+                if (newChild == child) {
+                    return this;
+                } else if (newChild != null) {
+                    return new BitmapNode(bitmap, cloneAndSet(array, 2 * i + 1, newChild));
+                }
+            } else if (key.equals(k)) {
+                map.found = true;
+                map.oldValue = v;
+            } else {
+                return this;
+            }
+            // the pair at i should be dropped
+            return bitmap == bit ? null
+                    : new BitmapNode(bitmap ^ bit, removePair(array, i));
+        }
+    }
+
+    /**
+     * Node holding entries whose keys have the same full hash.
+     */
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i / 2;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift) {
+            if (hash != this.hash) {
+                return NOT_FOUND;
+            }
+            int i = indexOf(key);
+            return i < 0 ? NOT_FOUND : array[2 * i + 1];
+        }
+
+        @Override
+        Node put(Object key, int hash, Object value, int shift,
+                 PersistentHashMap<?, ?> map) {
+            if (hash != this.hash) {
+                // nest this node in a bitmap node and retry
+                return new BitmapNode(bit(this.hash, shift), new Object[]{ null, this })
+                        .put(key, hash, value, shift, map);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                map.found = true;
+                map.oldValue = array[2 * i + 1];
+                return array[2 * i + 1] == value ? this
+                        : new CollisionNode(hash, cloneAndSet(array, 2 * i + 1, value));
+            }
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift,
+                    PersistentHashMap<?, ?> map) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            if (i < 0) {
+                return this;
+            }
+            map.found = true;
+            map.oldValue = array[2 * i + 1];
+            return array.length == 2 ? null
+                    : new CollisionNode(hash, removePair(array, i));
+        }
+    }
+
+    /**
+     * Depth-first iterator over the trie. As trie nodes are immutable,
+     * the iterator walks a snapshot and is unaffected by removals
+     * through {@link #remove()}.
+     */
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+
+        /**
+         * Stack of node arrays and the positions to visit in them.
+         * The depth of a 32-bit hash trie is at most 7, plus one level
+         * for collision nodes.
+         */
+        private final Object[][] arrays = new Object[8][];
+
+        private final int[] positions = new int[8];
+
+        private int depth = -1;
+
+        private Entry<K, V> next;
+
+        private Entry<K, V> last;
+
+        private EntryIterator() {
+            if (root != null) {
+                arrays[++depth] = root.array;
+            }
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int pos = positions[depth];
+                if (pos >= array.length) {
+                    positions[depth--] = 0;
+                    continue;
+                }
+                positions[depth] = pos + 2;
+                Object k = array[pos];
+                Object v = array[pos + 1];
+                if (k == null) {
+                    arrays[++depth] = ((Node) v).array;
+                    positions[depth] = 0;
+                } else {
+                    next = new WriteThroughEntry((K) k, (V) v);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            advance();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            PersistentHashMap.this.remove(last.getKey());
+            last = null;
+        }
+    }
+
+    /**
+     * Entry whose {@link #setValue(Object)} writes through to the map.
+     */
+    private final class WriteThroughEntry extends MapEntry<K, V> {
+
+        private WriteThroughEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package toyc.util.collection;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Hash set backed by a {@link PersistentHashMap}, so that
+ * {@link #copy()} takes O(1) time and copies share structure.
+ * <p>
+ * Elements added to this set cannot be null.
+ *
+ * @param <E> type of elements
+ */
+public final class PersistentHashSet<E> extends AbstractSetEx<E>
+        implements Serializable {
+
+    private final PersistentHashMap<E, Boolean> map;
+
+    /**
+     * Constructs a new empty persistent set.
+     */
+    public PersistentHashSet() {
+        map = new PersistentHashMap<>();
+    }
+
+    /**
+     * Constructs a new persistent set from the given collection. If the given
+     * collection is also a {@link PersistentHashSet}, the construction
+     * takes O(1) time.
+     */
+    public PersistentHashSet(Collection<E> c) {
+        if (c instanceof PersistentHashSet<E> s) {
+            map = s.map.copy();
+        } else {
+            map = new PersistentHashMap<>();
+            addAll(c);
+        }
+    }
+
+    @Override
+    public boolean add(E e) {
+        return map.put(e, Boolean.TRUE) == null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return map.remove(o) != null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return map.containsKey(o);
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<Map.Entry<E, Boolean>> it = map.entrySet().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return it.next().getKey();
+            }
+
+            @Override
+            public void remove() {
+                it.remove();
+            }
+        };
+    }
+
+    /**
+     * Sets the content of this set to the same as the given set in O(1) time.
+     */
+    public void setTo(PersistentHashSet<E> other) {
+        map.setTo(other.map);
+    }
+
+    @Override
+    public PersistentHashSet<E> copy() {
+        return new PersistentHashSet<>(this);
+    }
+
+    @Override
+    protected SetEx<E> newSet() {
+        return new PersistentHashSet<>();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof PersistentHashSet<?> that) {
+            return map.equals(that.map);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
@@ -56,6 +56,14 @@ public final class Sets {
         return new HybridLinkedHashSet<>();
     }
 
+    public static <E> Set<E> newPersistentSet() {
+        return new PersistentHashSet<>();
+    }
+
+    public static <E> Set<E> newPersistentSet(Collection<E> c) {
+        return new PersistentHashSet<>(c);
+    }
+
     public static <E> Set<E> newConcurrentSet() {
         return ConcurrentHashMap.newKeySet();
     }
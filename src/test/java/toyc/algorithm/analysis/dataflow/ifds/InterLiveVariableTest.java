@@ -0,0 +1,115 @@
+package toyc.algorithm.analysis.dataflow.ifds;
+
+import org.junit.jupiter.api.Test;
+import toyc.World;
+import toyc.algorithm.analysis.dataflow.fact.DataflowResult;
+import toyc.algorithm.analysis.dataflow.fact.SetFact;
+import toyc.algorithm.analysis.graph.callgraph.CallGraphBuilder;
+import toyc.algorithm.analysis.graph.callgraph.ToyCCallGraphBuilder;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.analysis.graph.icfg.ICFGBuilder;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.IRBuildHelper;
+import toyc.ir.exp.CallExp;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.Stmt;
+import toyc.language.Function;
+import toyc.language.Program;
+import toyc.language.type.IntType;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link InterLiveVariable} keeps the returned variables of
+ * a function live only if the result of some call to it is live.
+ */
+public class InterLiveVariableTest {
+
+    /**
+     * Analyzes
+     * <pre>
+     * int id(int p) { return p; }
+     * int drop(int p) { return p; }
+     * int main(int x) {
+     * 0: a = id(x)
+     * 1: b = id(x)
+     * 2: c = drop(x)
+     * 3: %return = a
+     * 4: return %return
+     * }
+     * </pre>
+     */
+    @Test
+    void testMultipleCalls() {
+        Function id = newIdentity("id");
+        Function drop = newIdentity("drop");
+        Function main = new Function("main", List.of(IntType.INT), IntType.INT,
+                List.of("x"));
+        IRBuildHelper helper = new IRBuildHelper(main);
+        Var x = helper.getParam(0);
+        Var a = helper.newTempVar(IntType.INT);
+        Var b = helper.newTempVar(IntType.INT);
+        Var c = helper.newTempVar(IntType.INT);
+        Call callA = new Call(main, new CallExp(id, List.of(x)), a);
+        Call callB = new Call(main, new CallExp(id, List.of(x)), b);
+        Call callC = new Call(main, new CallExp(drop, List.of(x)), c);
+        main.setIR(helper.build(List.of(callA, callB, callC,
+                new Copy(helper.getReturnVar(), a), helper.newReturn())));
+
+        DataflowResult<Stmt, SetFact<Var>> result = analyze(main, id, drop);
+        assertTrue(result.getOutFact(callA).contains(a), "a is live");
+        assertTrue(result.getOutFact(callB).contains(a), "a is live across b = id(x)");
+        assertFalse(result.getOutFact(callB).contains(b), "b is dead");
+        assertFalse(result.getOutFact(callC).contains(c), "c is dead");
+        assertTrue(isResultLive(id, result), "result of id is live for a = id(x)");
+        assertFalse(isResultLive(drop, result), "result of drop is dead");
+    }
+
+    /**
+     * @return {@code int name(int p) { return p; }}.
+     */
+    private static Function newIdentity(String name) {
+        Function function = new Function(name, List.of(IntType.INT),
+                IntType.INT, List.of("p"));
+        IRBuildHelper helper = new IRBuildHelper(function);
+        function.setIR(helper.build(List.of(
+                new Copy(helper.getReturnVar(), helper.getParam(0)),
+                helper.newReturn())));
+        return function;
+    }
+
+    /**
+     * @return whether the returned variable of {@code function} is live
+     * after it is assigned.
+     */
+    private static boolean isResultLive(
+            Function function, DataflowResult<Stmt, SetFact<Var>> result) {
+        IR ir = function.getIR();
+        return result.getOutFact(ir.getStmt(0))
+                .contains(ir.getReturnVars().iterator().next());
+    }
+
+    private static DataflowResult<Stmt, SetFact<Var>> analyze(Function... functions) {
+        World world = new World();
+        World.set(world);
+        world.setProgram(new Program(List.of(functions)));
+        world.setMainFunction(functions[0]);
+        CFGBuilder cfgBuilder = new CFGBuilder(
+                AlgorithmConfig.of(CFGBuilder.ID, "dump", false));
+        for (Function function : functions) {
+            IR ir = function.getIR();
+            ir.storeResult(CFGBuilder.ID, cfgBuilder.analyze(ir));
+        }
+        world.storeResult(CallGraphBuilder.ID, new ToyCCallGraphBuilder().build());
+        world.storeResult(ICFGBuilder.ID, new ICFGBuilder(
+                AlgorithmConfig.of(ICFGBuilder.ID, "dump", false)).analyze());
+        return new InterLiveVariable(
+                AlgorithmConfig.of(InterLiveVariable.ID)).analyze();
+    }
+}
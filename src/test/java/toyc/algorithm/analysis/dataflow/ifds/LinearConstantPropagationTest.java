@@ -0,0 +1,113 @@
+package toyc.algorithm.analysis.dataflow.ifds;
+
+import org.junit.jupiter.api.Test;
+import toyc.World;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.CPFact;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.Value;
+import toyc.algorithm.analysis.dataflow.fact.DataflowResult;
+import toyc.algorithm.analysis.graph.callgraph.CallGraphBuilder;
+import toyc.algorithm.analysis.graph.callgraph.ToyCCallGraphBuilder;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.analysis.graph.icfg.ICFGBuilder;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.IRBuildHelper;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.CallExp;
+import toyc.ir.exp.ConditionExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.Stmt;
+import toyc.language.Function;
+import toyc.language.Program;
+import toyc.language.type.IntType;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that {@link LinearConstantPropagation} propagates the constants
+ * of each call through the shared summary of the callee.
+ */
+public class LinearConstantPropagationTest {
+
+    /**
+     * Analyzes
+     * <pre>
+     * int inc(int p) { return p + 1; }
+     * int main() {
+     * 0: one = 1
+     * 1: five = 5
+     * 2: if (one > five) goto 4
+     * 3: a = inc(one)
+     * 4: b = inc(five)
+     * 5: d = inc(b)
+     * 6: %return = d
+     * 7: return %return
+     * }
+     * </pre>
+     * where the return site of the call at 3 has two predecessors.
+     */
+    @Test
+    void testMultipleCalls() {
+        Function inc = new Function("inc", List.of(IntType.INT), IntType.INT,
+                List.of("p"));
+        IRBuildHelper incHelper = new IRBuildHelper(inc);
+        Var c = incHelper.newConstVar(IntLiteral.get(1));
+        Stmt add = new Binary(incHelper.getReturnVar(), new ArithmeticExp(
+                ArithmeticExp.Op.ADD, incHelper.getParam(0), c));
+        inc.setIR(incHelper.build(List.of(new AssignLiteral(c, IntLiteral.get(1)),
+                add, incHelper.newReturn())));
+        Function main = new Function("main", List.of(), IntType.INT, List.of());
+        IRBuildHelper helper = new IRBuildHelper(main);
+        Var one = helper.newConstVar(IntLiteral.get(1));
+        Var five = helper.newConstVar(IntLiteral.get(5));
+        Var a = helper.newTempVar(IntType.INT);
+        Var b = helper.newTempVar(IntType.INT);
+        Var d = helper.newTempVar(IntType.INT);
+        If test = new If(new ConditionExp(ConditionExp.Op.GT, one, five));
+        Call callA = new Call(main, new CallExp(inc, List.of(one)), a);
+        Call callB = new Call(main, new CallExp(inc, List.of(five)), b);
+        Call callD = new Call(main, new CallExp(inc, List.of(b)), d);
+        test.setTarget(callB);
+        main.setIR(helper.build(List.of(new AssignLiteral(one, IntLiteral.get(1)),
+                new AssignLiteral(five, IntLiteral.get(5)), test,
+                callA, callB, callD, new Copy(helper.getReturnVar(), d),
+                helper.newReturn())));
+
+        DataflowResult<Stmt, CPFact> result = analyze(main, inc);
+        assertEquals(Value.makeConstant(2), result.getOutFact(callA).get(a),
+                "a after the call with a confluent return site");
+        assertEquals(Value.makeConstant(6), result.getOutFact(callB).get(b),
+                "b after inc(5)");
+        assertEquals(Value.makeConstant(7), result.getOutFact(callD).get(d),
+                "d after inc(b)");
+        assertEquals(Value.getNAC(), result.getOutFact(add)
+                        .get(incHelper.getReturnVar()),
+                "result of inc over all calls");
+    }
+
+    private static DataflowResult<Stmt, CPFact> analyze(Function... functions) {
+        World world = new World();
+        World.set(world);
+        world.setProgram(new Program(List.of(functions)));
+        world.setMainFunction(functions[0]);
+        CFGBuilder cfgBuilder = new CFGBuilder(
+                AlgorithmConfig.of(CFGBuilder.ID, "dump", false));
+        for (Function function : functions) {
+            IR ir = function.getIR();
+            ir.storeResult(CFGBuilder.ID, cfgBuilder.analyze(ir));
+        }
+        world.storeResult(CallGraphBuilder.ID, new ToyCCallGraphBuilder().build());
+        world.storeResult(ICFGBuilder.ID, new ICFGBuilder(
+                AlgorithmConfig.of(ICFGBuilder.ID, "dump", false)).analyze());
+        return new LinearConstantPropagation(
+                AlgorithmConfig.of(LinearConstantPropagation.ID)).analyze();
+    }
+}
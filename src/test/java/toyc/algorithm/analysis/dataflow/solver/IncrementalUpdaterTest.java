@@ -0,0 +1,176 @@
+package toyc.algorithm.analysis.dataflow.solver;
+
+import org.junit.jupiter.api.Test;
+import toyc.algorithm.analysis.dataflow.analysis.AnalysisDriver;
+import toyc.algorithm.analysis.dataflow.analysis.LiveVariable;
+import toyc.algorithm.analysis.dataflow.analysis.ReachingDefinition;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import toyc.algorithm.analysis.dataflow.fact.DataflowResult;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.optimization.IROperation;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.IRBuildHelper;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.ConditionExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.Goto;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.Stmt;
+import toyc.language.Function;
+import toyc.language.type.IntType;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the results updated by {@link IncrementalUpdater} after
+ * IR changes are the same as the results solved from scratch.
+ */
+public class IncrementalUpdaterTest {
+
+    private static final List<String> ANALYSES = List.of(
+            ConstantPropagation.ID, ReachingDefinition.ID, LiveVariable.ID);
+
+    private static final CFGBuilder CFG_BUILDER = new CFGBuilder(
+            AlgorithmConfig.of(CFGBuilder.ID, "dump", false));
+
+    /**
+     * Replaces the loop exit test {@code if (s > one) goto 10} by
+     * {@code goto 10}, so that statement 8 loses its predecessor.
+     */
+    private static final UnaryOperator<IR> FOLD_BRANCH = ir -> {
+        IROperation operation = new IROperation(ir);
+        Goto jump = new Goto();
+        jump.setTarget(ir.getStmt(10));
+        operation.replace(ir.getStmt(7), jump);
+        return operation.getIR();
+    };
+
+    /**
+     * Removes {@code s = s + i} from the loop, and inserts
+     * {@code one = 2} before {@code i = i + one}.
+     */
+    private static final UnaryOperator<IR> INSERT_AND_REMOVE = ir -> {
+        IROperation operation = new IROperation(ir);
+        Var one = ((AssignLiteral) ir.getStmt(1)).getLValue();
+        operation.remove(ir.getStmt(4));
+        operation.insertBefore(ir.getStmt(5),
+                new AssignLiteral(one, IntLiteral.get(2)));
+        return operation.getIR();
+    };
+
+    @Test
+    void testBranchFold() {
+        assertSameAsFromScratch(List.of(FOLD_BRANCH));
+    }
+
+    @Test
+    void testInsertAndRemove() {
+        assertSameAsFromScratch(List.of(INSERT_AND_REMOVE));
+    }
+
+    @Test
+    void testRepeatedUpdates() {
+        // the second update reuses the facts kept by the first one
+        assertSameAsFromScratch(List.of(INSERT_AND_REMOVE, FOLD_BRANCH));
+    }
+
+    /**
+     * Applies {@code edits} one after another, and checks the result of
+     * each analysis updated after each edit.
+     */
+    private static void assertSameAsFromScratch(List<UnaryOperator<IR>> edits) {
+        for (String id : ANALYSES) {
+            AnalysisDriver<Stmt, ?> incremental = newDriver(id, true);
+            AnalysisDriver<Stmt, ?> fromScratch = newDriver(id, false);
+            IR ir = buildIR();
+            analyze(ir, incremental);
+            for (UnaryOperator<IR> edit : edits) {
+                ir = edit.apply(ir);
+                DataflowResult<Stmt, ?> actual = analyze(ir, incremental);
+                DataflowResult<Stmt, ?> expected = fromScratch.analyze(ir);
+                for (Stmt stmt : ir) {
+                    assertEquals(expected.getInFact(stmt), actual.getInFact(stmt),
+                            id + ": in fact of " + stmt);
+                    assertEquals(expected.getOutFact(stmt), actual.getOutFact(stmt),
+                            id + ": out fact of " + stmt);
+                }
+            }
+        }
+    }
+
+    private static AnalysisDriver<Stmt, ?> newDriver(String id, boolean incremental) {
+        AlgorithmConfig config = AlgorithmConfig.of(id, "incremental", incremental,
+                "strongly", false, "edge-refine", true, "lean-result", false);
+        return switch (id) {
+            case ConstantPropagation.ID -> new ConstantPropagation(config);
+            case ReachingDefinition.ID -> new ReachingDefinition(config);
+            case LiveVariable.ID -> new LiveVariable(config);
+            default -> throw new IllegalArgumentException(id);
+        };
+    }
+
+    private static DataflowResult<Stmt, ?> analyze(IR ir, AnalysisDriver<Stmt, ?> driver) {
+        ir.storeResult(CFGBuilder.ID, CFG_BUILDER.analyze(ir));
+        DataflowResult<Stmt, ?> result = driver.analyze(ir);
+        ir.storeResult(driver.getId(), result);
+        return result;
+    }
+
+    /**
+     * Builds the IR of
+     * <pre>
+     * 0:  i = 0
+     * 1:  one = 1
+     * 2:  s = 0
+     * 3:  if (i >= p) goto 7
+     * 4:  s = s + i
+     * 5:  i = i + one
+     * 6:  goto 3
+     * 7:  if (s > one) goto 10
+     * 8:  %return = s
+     * 9:  goto 11
+     * 10: %return = one
+     * 11: return %return
+     * </pre>
+     */
+    private static IR buildIR() {
+        Function function = new Function("f",
+                List.of(IntType.INT), IntType.INT, List.of("p"));
+        IRBuildHelper helper = new IRBuildHelper(function);
+        Var p = helper.getParam(0);
+        Var ret = helper.getReturnVar();
+        Var i = helper.newTempVar(IntType.INT);
+        Var one = helper.newTempVar(IntType.INT);
+        Var s = helper.newTempVar(IntType.INT);
+        If loopTest = new If(new ConditionExp(ConditionExp.Op.GE, i, p));
+        Goto backEdge = new Goto();
+        If exitTest = new If(new ConditionExp(ConditionExp.Op.GT, s, one));
+        Goto join = new Goto();
+        List<Stmt> stmts = List.of(
+                new AssignLiteral(i, IntLiteral.get(0)),
+                new AssignLiteral(one, IntLiteral.get(1)),
+                new AssignLiteral(s, IntLiteral.get(0)),
+                loopTest,
+                new Binary(s, new ArithmeticExp(ArithmeticExp.Op.ADD, s, i)),
+                new Binary(i, new ArithmeticExp(ArithmeticExp.Op.ADD, i, one)),
+                backEdge,
+                exitTest,
+                new Copy(ret, s),
+                join,
+                new Copy(ret, one),
+                helper.newReturn());
+        loopTest.setTarget(stmts.get(7));
+        backEdge.setTarget(stmts.get(3));
+        exitTest.setTarget(stmts.get(10));
+        join.setTarget(stmts.get(11));
+        return helper.build(stmts);
+    }
+}
@@ -0,0 +1,155 @@
+package toyc.algorithm.analysis.inline;
+
+import org.junit.jupiter.api.Test;
+import toyc.World;
+import toyc.algorithm.analysis.FunctionAnalysis;
+import toyc.algorithm.analysis.dataflow.analysis.DominatorAnalysis;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.analysis.loop.LoopDetection;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.IRBuildHelper;
+import toyc.ir.exp.CallExp;
+import toyc.ir.exp.ConditionExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.Goto;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.Stmt;
+import toyc.language.Function;
+import toyc.language.Program;
+import toyc.language.type.IntType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the cost model of {@link FunctionInliningDetection} with
+ * {@code threshold} 24, {@code const-arg-bonus} 8 and {@code loop-factor} 2.
+ */
+public class FunctionInliningDetectionTest {
+
+    @Test
+    void testThreshold() {
+        Function small = newCallee("small", 24);
+        Function large = newCallee("large", 25);
+        Function main = new Function("main", List.of(), IntType.INT, List.of());
+        IRBuildHelper helper = new IRBuildHelper(main);
+        Var x = helper.newTempVar(IntType.INT);
+        Call toSmall = new Call(main, new CallExp(small, List.of(x)), x);
+        Call toLarge = new Call(main, new CallExp(large, List.of(x)), x);
+        main.setIR(helper.build(List.of(new AssignLiteral(x, IntLiteral.get(0)),
+                toSmall, toLarge, new Copy(helper.getReturnVar(), x),
+                helper.newReturn())));
+        setProgram(main, small, large);
+        assertEquals(Set.of(toSmall), detect(main, 1000), "inlined calls");
+    }
+
+    @Test
+    void testConstArgBonus() {
+        Function callee = newCallee("callee", 30);
+        Function main = new Function("main", List.of(), IntType.INT, List.of());
+        IRBuildHelper helper = new IRBuildHelper(main);
+        Var c = helper.newConstVar(IntLiteral.get(1));
+        Var x = helper.newTempVar(IntType.INT);
+        Call withConst = new Call(main, new CallExp(callee, List.of(c)), x);
+        Call withVar = new Call(main, new CallExp(callee, List.of(x)), x);
+        main.setIR(helper.build(List.of(new AssignLiteral(c, IntLiteral.get(1)),
+                withConst, withVar, new Copy(helper.getReturnVar(), x),
+                helper.newReturn())));
+        setProgram(main, callee);
+        // 30 <= 24 + 8 for the constant argument
+        assertEquals(Set.of(withConst), detect(main, 1000), "inlined calls");
+    }
+
+    @Test
+    void testLoopFactor() {
+        Function callee = newCallee("callee", 40);
+        Function main = new Function("main", List.of(), IntType.INT, List.of());
+        IRBuildHelper helper = new IRBuildHelper(main);
+        Var x = helper.newTempVar(IntType.INT);
+        Call outside = new Call(main, new CallExp(callee, List.of(x)), x);
+        Call inside = new Call(main, new CallExp(callee, List.of(x)), x);
+        If test = new If(new ConditionExp(ConditionExp.Op.GT, x, x));
+        Goto back = new Goto();
+        Stmt exit = new Copy(helper.getReturnVar(), x);
+        back.setTarget(test);
+        test.setTarget(exit);
+        main.setIR(helper.build(List.of(new AssignLiteral(x, IntLiteral.get(0)),
+                outside, test, inside, back, exit, helper.newReturn())));
+        setProgram(main, callee);
+        detectLoops(main.getIR());
+        // 40 <= 24 * 2 for the loop containing the call
+        assertEquals(Set.of(inside), detect(main, 1000), "inlined calls");
+    }
+
+    @Test
+    void testProgramGrowth() {
+        Function callee = newCallee("callee", 20);
+        Function main = new Function("main", List.of(), IntType.INT, List.of());
+        IRBuildHelper helper = new IRBuildHelper(main);
+        Var x = helper.newTempVar(IntType.INT);
+        Call first = new Call(main, new CallExp(callee, List.of(x)), x);
+        Call second = new Call(main, new CallExp(callee, List.of(x)), x);
+        main.setIR(helper.build(List.of(new AssignLiteral(x, IntLiteral.get(0)),
+                first, second, new Copy(helper.getReturnVar(), x),
+                helper.newReturn())));
+        setProgram(main, callee);
+        assertEquals(Set.of(first, second), detect(main, 1000),
+                "inlined calls without program limit");
+        // the program may grow by at least threshold statements, which
+        // allows inlining only one call
+        assertEquals(Set.of(first), detect(main, 0),
+                "inlined calls with program limit");
+    }
+
+    /**
+     * @return a function of {@code size} statements, which returns its
+     * parameter.
+     */
+    private static Function newCallee(String name, int size) {
+        Function callee = new Function(name, List.of(IntType.INT), IntType.INT,
+                List.of("p"));
+        IRBuildHelper helper = new IRBuildHelper(callee);
+        List<Stmt> stmts = new ArrayList<>();
+        for (int i = 0; i < size - 1; ++i) {
+            stmts.add(new Copy(helper.getReturnVar(), helper.getParam(0)));
+        }
+        stmts.add(helper.newReturn());
+        callee.setIR(helper.build(stmts));
+        return callee;
+    }
+
+    private static void setProgram(Function main, Function... callees) {
+        List<Function> functions = new ArrayList<>(List.of(main));
+        functions.addAll(List.of(callees));
+        World world = new World();
+        World.set(world);
+        world.setProgram(new Program(functions));
+        world.setMainFunction(main);
+    }
+
+    private static void detectLoops(IR ir) {
+        List<FunctionAnalysis<?>> analyses = List.of(
+                new CFGBuilder(AlgorithmConfig.of(CFGBuilder.ID, "dump", false)),
+                new DominatorAnalysis(AlgorithmConfig.of(DominatorAnalysis.ID,
+                        "lean-result", false)),
+                new LoopDetection(AlgorithmConfig.of(LoopDetection.ID)));
+        analyses.forEach(analysis -> ir.storeResult(analysis.getId(),
+                analysis.analyze(ir)));
+    }
+
+    private static Set<Call> detect(Function main, int programGrowth) {
+        FunctionInliningDetection detection = new FunctionInliningDetection(
+                AlgorithmConfig.of(FunctionInliningDetection.ID,
+                        "threshold", 24, "const-arg-bonus", 8, "loop-factor", 2,
+                        "caller-growth", 1000, "program-growth", programGrowth));
+        return detection.analyze(main.getIR());
+    }
+}
@@ -0,0 +1,154 @@
+package toyc.algorithm.analysis.sideeffect;
+
+import org.junit.jupiter.api.Test;
+import toyc.World;
+import toyc.algorithm.analysis.sideeffect.SideEffects.Effect;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IRBuildHelper;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.CallExp;
+import toyc.ir.exp.ConditionExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.Stmt;
+import toyc.language.Function;
+import toyc.language.Program;
+import toyc.language.type.IntType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the effects computed by {@link SideEffectAnalysis} for functions
+ * of one parameter {@code p}.
+ */
+public class SideEffectAnalysisTest {
+
+    @Test
+    void testPure() {
+        // return p / 2;
+        Function f = newFunction("f");
+        IRBuildHelper helper = new IRBuildHelper(f);
+        Var two = helper.newConstVar(IntLiteral.get(2));
+        build(f, helper, List.of(new AssignLiteral(two, IntLiteral.get(2)),
+                divide(helper, two)));
+        assertEquals(Set.of(), analyze(f).getEffects(f), "effects of f");
+    }
+
+    @Test
+    void testNonConstantDivisor() {
+        // return p / p;
+        Function f = newFunction("f");
+        IRBuildHelper helper = new IRBuildHelper(f);
+        build(f, helper, List.of(divide(helper, helper.getParam(0))));
+        assertEquals(Set.of(Effect.MAY_TRAP), analyze(f).getEffects(f),
+                "effects of f");
+    }
+
+    @Test
+    void testLoop() {
+        // 0: %return = p
+        // 1: if (p > p) goto 0
+        Function f = newFunction("f");
+        IRBuildHelper helper = new IRBuildHelper(f);
+        Var p = helper.getParam(0);
+        Stmt body = new Copy(helper.getReturnVar(), p);
+        If test = new If(new ConditionExp(ConditionExp.Op.GT, p, p));
+        test.setTarget(body);
+        build(f, helper, List.of(body, test));
+        assertEquals(Set.of(Effect.DIVERGES), analyze(f).getEffects(f),
+                "effects of f");
+    }
+
+    @Test
+    void testRecursion() {
+        // return f(p);
+        Function f = newFunction("f");
+        IRBuildHelper helper = new IRBuildHelper(f);
+        build(f, helper, List.of(call(f, helper, f)));
+        assertEquals(Set.of(Effect.DIVERGES), analyze(f).getEffects(f),
+                "effects of f");
+    }
+
+    @Test
+    void testPropagation() {
+        // div: return p / p;
+        // mid: return div(p);
+        // even: return odd(p);
+        // odd: return even(p) + mid(p);
+        // top: return even(p);
+        Function div = newFunction("div");
+        IRBuildHelper divHelper = new IRBuildHelper(div);
+        build(div, divHelper, List.of(divide(divHelper, divHelper.getParam(0))));
+        Function mid = newFunction("mid");
+        IRBuildHelper midHelper = new IRBuildHelper(mid);
+        build(mid, midHelper, List.of(call(mid, midHelper, div)));
+        Function even = newFunction("even");
+        Function odd = newFunction("odd");
+        IRBuildHelper evenHelper = new IRBuildHelper(even);
+        build(even, evenHelper, List.of(call(even, evenHelper, odd)));
+        IRBuildHelper oddHelper = new IRBuildHelper(odd);
+        Var r = oddHelper.newTempVar(IntType.INT);
+        build(odd, oddHelper, List.of(
+                new Call(odd, new CallExp(even, List.of(oddHelper.getParam(0))), r),
+                call(odd, oddHelper, mid),
+                new Binary(oddHelper.getReturnVar(), new ArithmeticExp(
+                        ArithmeticExp.Op.ADD, r, oddHelper.getReturnVar()))));
+        Function top = newFunction("top");
+        IRBuildHelper topHelper = new IRBuildHelper(top);
+        build(top, topHelper, List.of(call(top, topHelper, even)));
+
+        SideEffects effects = analyze(top, even, odd, mid, div);
+        Set<Effect> expected = Set.of(Effect.MAY_TRAP, Effect.DIVERGES);
+        assertEquals(Set.of(Effect.MAY_TRAP), effects.getEffects(mid),
+                "effects of mid");
+        assertEquals(expected, effects.getEffects(even), "effects of even");
+        assertEquals(expected, effects.getEffects(odd), "effects of odd");
+        assertEquals(expected, effects.getEffects(top), "effects of top");
+    }
+
+    private static Function newFunction(String name) {
+        return new Function(name, List.of(IntType.INT), IntType.INT,
+                List.of("p"));
+    }
+
+    private static void build(Function function, IRBuildHelper helper,
+                              List<Stmt> body) {
+        List<Stmt> stmts = new ArrayList<>(body);
+        stmts.add(helper.newReturn());
+        function.setIR(helper.build(stmts));
+    }
+
+    /**
+     * @return {@code %return = p / divisor}.
+     */
+    private static Stmt divide(IRBuildHelper helper, Var divisor) {
+        return new Binary(helper.getReturnVar(), new ArithmeticExp(
+                ArithmeticExp.Op.DIV, helper.getParam(0), divisor));
+    }
+
+    /**
+     * @return {@code %return = callee(p)}.
+     */
+    private static Stmt call(Function caller, IRBuildHelper helper,
+                             Function callee) {
+        return new Call(caller, new CallExp(callee, List.of(helper.getParam(0))),
+                helper.getReturnVar());
+    }
+
+    private static SideEffects analyze(Function... functions) {
+        World world = new World();
+        World.set(world);
+        world.setProgram(new Program(List.of(functions)));
+        return new SideEffectAnalysis(AlgorithmConfig.of(SideEffectAnalysis.ID))
+                .analyze();
+    }
+}
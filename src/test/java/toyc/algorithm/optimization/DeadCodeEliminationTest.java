@@ -0,0 +1,89 @@
+package toyc.algorithm.optimization;
+
+import org.junit.jupiter.api.Test;
+import toyc.World;
+import toyc.algorithm.analysis.FunctionAnalysis;
+import toyc.algorithm.analysis.dataflow.analysis.LiveVariable;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import toyc.algorithm.analysis.deadcode.DeadCodeDetection;
+import toyc.algorithm.analysis.graph.cfg.CFGBuilder;
+import toyc.algorithm.analysis.sideeffect.SideEffectAnalysis;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.IRBuildHelper;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.CallExp;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Copy;
+import toyc.language.Function;
+import toyc.language.Program;
+import toyc.language.type.IntType;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that {@link DeadCodeElimination} removes the calls with unused
+ * results only if their callees are pure.
+ */
+public class DeadCodeEliminationTest {
+
+    @Test
+    void testUnusedCalls() {
+        // int pure(int p) { return p; }
+        Function pure = new Function("pure", List.of(IntType.INT), IntType.INT,
+                List.of("p"));
+        IRBuildHelper pureHelper = new IRBuildHelper(pure);
+        pure.setIR(pureHelper.build(List.of(
+                new Copy(pureHelper.getReturnVar(), pureHelper.getParam(0)),
+                pureHelper.newReturn())));
+        // int impure(int p) { return p / p; }
+        Function impure = new Function("impure", List.of(IntType.INT),
+                IntType.INT, List.of("p"));
+        IRBuildHelper impureHelper = new IRBuildHelper(impure);
+        Var p = impureHelper.getParam(0);
+        impure.setIR(impureHelper.build(List.of(
+                new Binary(impureHelper.getReturnVar(),
+                        new ArithmeticExp(ArithmeticExp.Op.DIV, p, p)),
+                impureHelper.newReturn())));
+        // int main(int x) { pure(x); impure(x); return x; }
+        Function main = new Function("main", List.of(IntType.INT), IntType.INT,
+                List.of("x"));
+        IRBuildHelper helper = new IRBuildHelper(main);
+        Var x = helper.getParam(0);
+        Call toPure = new Call(main, new CallExp(pure, List.of(x)),
+                helper.newTempVar(IntType.INT));
+        Call toImpure = new Call(main, new CallExp(impure, List.of(x)),
+                helper.newTempVar(IntType.INT));
+        main.setIR(helper.build(List.of(toPure, toImpure,
+                new Copy(helper.getReturnVar(), x), helper.newReturn())));
+        World world = new World();
+        World.set(world);
+        world.setProgram(new Program(List.of(main, pure, impure)));
+        world.setMainFunction(main);
+        world.storeResult(SideEffectAnalysis.ID, new SideEffectAnalysis(
+                AlgorithmConfig.of(SideEffectAnalysis.ID)).analyze());
+
+        IR ir = main.getIR();
+        List<FunctionAnalysis<?>> analyses = List.of(
+                new CFGBuilder(AlgorithmConfig.of(CFGBuilder.ID, "dump", false)),
+                new ConstantPropagation(AlgorithmConfig.of(ConstantPropagation.ID,
+                        "lean-result", false, "edge-refine", true,
+                        "incremental", false)),
+                new LiveVariable(AlgorithmConfig.of(LiveVariable.ID,
+                        "strongly", true, "incremental", false)),
+                new DeadCodeDetection(AlgorithmConfig.of(DeadCodeDetection.ID)));
+        analyses.forEach(analysis -> ir.storeResult(analysis.getId(),
+                analysis.analyze(ir)));
+        IR optimized = new DeadCodeElimination(
+                AlgorithmConfig.of(DeadCodeElimination.ID)).optimize(ir);
+
+        assertEquals(List.of(impure), optimized.calls()
+                        .map(call -> call.getCallExp().getFunction())
+                        .toList(),
+                "callees of remaining calls");
+    }
+}
@@ -0,0 +1,85 @@
+package toyc.algorithm.optimization;
+
+import org.junit.jupiter.api.Test;
+import toyc.World;
+import toyc.algorithm.analysis.graph.callgraph.CallGraphs;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.IRBuildHelper;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.CallExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Call;
+import toyc.language.Function;
+import toyc.language.Program;
+import toyc.language.type.IntType;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link FunctionSpecialization} clones a callee for each
+ * signature of its calls, redirects the calls to the clones, and that
+ * the clones are emitted, i.e., are reachable in a rebuilt call graph.
+ */
+public class FunctionSpecializationTest {
+
+    @Test
+    void testTwoSignatures() {
+        // int f(int p) { return p * p; }
+        Function f = new Function("f", List.of(IntType.INT), IntType.INT,
+                List.of("p"));
+        IRBuildHelper fHelper = new IRBuildHelper(f);
+        Var p = fHelper.getParam(0);
+        f.setIR(fHelper.build(List.of(
+                new Binary(fHelper.getReturnVar(),
+                        new ArithmeticExp(ArithmeticExp.Op.MUL, p, p)),
+                fHelper.newReturn())));
+        // int main() { return f(1) + f(2); }
+        Function main = new Function("main", List.of(), IntType.INT, List.of());
+        IRBuildHelper helper = new IRBuildHelper(main);
+        Var one = helper.newConstVar(IntLiteral.get(1));
+        Var two = helper.newConstVar(IntLiteral.get(2));
+        Var r1 = helper.newTempVar(IntType.INT);
+        Var r2 = helper.newTempVar(IntType.INT);
+        main.setIR(helper.build(List.of(
+                new AssignLiteral(one, IntLiteral.get(1)),
+                new AssignLiteral(two, IntLiteral.get(2)),
+                new Call(main, new CallExp(f, List.of(one)), r1),
+                new Call(main, new CallExp(f, List.of(two)), r2),
+                new Binary(helper.getReturnVar(),
+                        new ArithmeticExp(ArithmeticExp.Op.ADD, r1, r2)),
+                helper.newReturn())));
+        World world = new World();
+        World.set(world);
+        world.setProgram(new Program(List.of(main, f)));
+        world.setMainFunction(main);
+
+        FunctionSpecialization specialization = new FunctionSpecialization(
+                AlgorithmConfig.of(FunctionSpecialization.ID,
+                        "max-size", 128, "max-clones", 4));
+        IR ir = specialization.optimize(main.getIR());
+        main.setIR(ir);
+
+        Program program = world.getProgram();
+        Function clone1 = program.getFunction("f.spec.0_1").orElseThrow();
+        Function clone2 = program.getFunction("f.spec.0_2").orElseThrow();
+        assertEquals(List.of(clone1, clone2),
+                ir.calls().map(call -> call.getCallExp().getFunction()).toList(),
+                "calls redirected to clones");
+        AssignLiteral assign = (AssignLiteral) clone2.getIR().getStmt(0);
+        assertEquals(clone2.getIR().getParam(0), assign.getLValue(),
+                "clone assigns its parameter");
+        assertEquals(IntLiteral.get(2), assign.getRValue(),
+                "clone assigns the constant argument");
+        List<Function> emitted = CallGraphs.getReachableFunctions();
+        assertTrue(emitted.contains(clone1) && emitted.contains(clone2),
+                "clones are emitted");
+        assertTrue(!emitted.contains(f), "original callee is not emitted");
+    }
+}
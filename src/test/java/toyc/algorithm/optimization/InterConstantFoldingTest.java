@@ -0,0 +1,146 @@
+package toyc.algorithm.optimization;
+
+import org.junit.jupiter.api.Test;
+import toyc.World;
+import toyc.algorithm.analysis.dataflow.analysis.constprop.Value;
+import toyc.algorithm.analysis.dataflow.inter.InterSparseConstantPropagation;
+import toyc.algorithm.analysis.dataflow.inter.SCCPResult;
+import toyc.config.AlgorithmConfig;
+import toyc.ir.IR;
+import toyc.ir.IRBuildHelper;
+import toyc.ir.exp.ArithmeticExp;
+import toyc.ir.exp.CallExp;
+import toyc.ir.exp.ConditionExp;
+import toyc.ir.exp.IntLiteral;
+import toyc.ir.exp.Var;
+import toyc.ir.stmt.AssignLiteral;
+import toyc.ir.stmt.Binary;
+import toyc.ir.stmt.Call;
+import toyc.ir.stmt.Copy;
+import toyc.ir.stmt.If;
+import toyc.ir.stmt.Stmt;
+import toyc.language.Function;
+import toyc.language.Program;
+import toyc.language.type.IntType;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the results of {@link InterSparseConstantPropagation} and their
+ * application by {@link InterConstantFolding}.
+ */
+public class InterConstantFoldingTest {
+
+    /**
+     * Optimizes
+     * <pre>
+     * int square(int p) { return p * p; }
+     * int seven() { return 7; }
+     * int dead(int p) { return p; }
+     * int main() {
+     * 0:  three = 3
+     * 1:  zero = 0
+     * 2:  if (zero > three) goto 9
+     * 3:  a = square(three)
+     * 4:  b = square(three)
+     * 5:  s = seven()
+     * 6:  t = a + b
+     * 7:  %return = t + s
+     * 8:  return %return
+     * 9:  d = dead(three)
+     * 10: %return = d
+     * 11: return %return
+     * }
+     * </pre>
+     */
+    @Test
+    void testFolding() {
+        Function square = new Function("square", List.of(IntType.INT),
+                IntType.INT, List.of("p"));
+        IRBuildHelper squareHelper = new IRBuildHelper(square);
+        Var p = squareHelper.getParam(0);
+        square.setIR(squareHelper.build(List.of(
+                new Binary(squareHelper.getReturnVar(),
+                        new ArithmeticExp(ArithmeticExp.Op.MUL, p, p)),
+                squareHelper.newReturn())));
+        Function seven = new Function("seven", List.of(), IntType.INT, List.of());
+        IRBuildHelper sevenHelper = new IRBuildHelper(seven);
+        seven.setIR(sevenHelper.build(List.of(
+                new AssignLiteral(sevenHelper.getReturnVar(), IntLiteral.get(7)),
+                sevenHelper.newReturn())));
+        Function dead = new Function("dead", List.of(IntType.INT), IntType.INT,
+                List.of("p"));
+        IRBuildHelper deadHelper = new IRBuildHelper(dead);
+        dead.setIR(deadHelper.build(List.of(
+                new Copy(deadHelper.getReturnVar(), deadHelper.getParam(0)),
+                deadHelper.newReturn())));
+        Function main = new Function("main", List.of(), IntType.INT, List.of());
+        IRBuildHelper helper = new IRBuildHelper(main);
+        Var three = helper.newConstVar(IntLiteral.get(3));
+        Var zero = helper.newConstVar(IntLiteral.get(0));
+        Var a = helper.newTempVar(IntType.INT);
+        Var b = helper.newTempVar(IntType.INT);
+        Var s = helper.newTempVar(IntType.INT);
+        Var t = helper.newTempVar(IntType.INT);
+        Var d = helper.newTempVar(IntType.INT);
+        If test = new If(new ConditionExp(ConditionExp.Op.GT, zero, three));
+        Call callDead = new Call(main, new CallExp(dead, List.of(three)), d);
+        test.setTarget(callDead);
+        main.setIR(helper.build(List.of(
+                new AssignLiteral(three, IntLiteral.get(3)),
+                new AssignLiteral(zero, IntLiteral.get(0)),
+                test,
+                new Call(main, new CallExp(square, List.of(three)), a),
+                new Call(main, new CallExp(square, List.of(three)), b),
+                new Call(main, new CallExp(seven, List.of()), s),
+                new Binary(t, new ArithmeticExp(ArithmeticExp.Op.ADD, a, b)),
+                new Binary(helper.getReturnVar(),
+                        new ArithmeticExp(ArithmeticExp.Op.ADD, t, s)),
+                helper.newReturn(),
+                callDead,
+                new Copy(helper.getReturnVar(), d),
+                helper.newReturn())));
+        World world = new World();
+        World.set(world);
+        world.setProgram(new Program(List.of(main, square, seven, dead)));
+        world.setMainFunction(main);
+
+        SCCPResult result = new InterSparseConstantPropagation(
+                AlgorithmConfig.of(InterSparseConstantPropagation.ID)).analyze();
+        assertEquals(Value.makeConstant(3), result.getValue(p),
+                "parameter of square");
+        assertEquals(Value.makeConstant(7), result.getReturnValue(seven),
+                "result of seven");
+        assertFalse(result.isReachable(dead), "dead is unreachable");
+
+        world.storeResult(InterSparseConstantPropagation.ID, result);
+        InterConstantFolding folding = new InterConstantFolding(
+                AlgorithmConfig.of(InterConstantFolding.ID));
+        for (Function function : List.of(main, square, seven)) {
+            function.setIR(folding.optimize(function.getIR()));
+        }
+        Program program = world.getProgram();
+        assertEquals(List.of(main, square, seven), program.allFunctions().toList(),
+                "functions after folding");
+        assertTrue(isAssignment(square.getIR().getStmt(0), p, 3),
+                "square starts with p = 3");
+        IR ir = main.getIR();
+        assertEquals(List.of(square, square, seven), ir.calls()
+                        .map(call -> call.getCallExp().getFunction())
+                        .toList(),
+                "callees in main");
+        Call callSeven = ir.calls().toList().get(2);
+        assertTrue(isAssignment(ir.getStmt(callSeven.getIndex() + 1), s, 7),
+                "s = seven() is followed by s = 7");
+    }
+
+    private static boolean isAssignment(Stmt stmt, Var var, int value) {
+        return stmt instanceof AssignLiteral assign
+                && assign.getLValue() == var
+                && assign.getRValue().equals(IntLiteral.get(value));
+    }
+}